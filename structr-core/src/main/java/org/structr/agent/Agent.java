@@ -83,42 +83,7 @@ public abstract class Agent extends Thread implements StatusInfo {
 
 				lastStartTime = System.nanoTime();
 
-				ReturnValue ret = null;
-
-				// only execute process if Service layer is ready
-				// (and not shutting down right now)
-				if (Services.getInstance().isInitialized()) {
-
-					if (createEnclosingTransaction()) {
-
-						try (final Tx tx = StructrApp.getInstance().tx()) {
-
-							ret = processTask(currentTask);
-							tx.success();
-
-						} catch (Throwable t) {
-
-							// someone killed us or the task processing failed..
-							// Log this!!
-							logger.log(Level.SEVERE, "Processing task {0} failed. Maybe someone killed us?", currentTask.getType());
-							t.printStackTrace();
-						}
-						
-					} else {
-
-						try {
-
-							ret = processTask(currentTask);
-
-						} catch (Throwable t) {
-
-							// someone killed us or the task processing failed..
-							// Log this!!
-							logger.log(Level.SEVERE, "Processing task {0} failed. Maybe someone killed us?", currentTask.getType());
-							t.printStackTrace();
-						}
-					}
-				}
+				final ReturnValue ret = executeTask(currentTask);
 
 				if (ret != null) {
 
@@ -158,6 +123,53 @@ public abstract class Agent extends Thread implements StatusInfo {
 		agentService.notifyAgentStop(this);
 	}
 
+	/**
+	 * Executes the given task in the calling thread, in an enclosing
+	 * transaction if this agent requests one. This method is used by the
+	 * {@link AgentService} to run tasks on its worker pool.
+	 *
+	 * @param task
+	 * @return the return value of {@link #processTask}, or null if the task
+	 * could not be processed
+	 */
+	public final ReturnValue executeTask(final Task task) {
+
+		ReturnValue ret = null;
+
+		currentTask = task;
+
+		// only execute process if Service layer is ready
+		// (and not shutting down right now)
+		if (Services.getInstance().isInitialized()) {
+
+			if (createEnclosingTransaction()) {
+
+				try (final Tx tx = StructrApp.getInstance().tx()) {
+
+					ret = processTask(task);
+					tx.success();
+
+				} catch (Throwable t) {
+
+					logger.log(Level.SEVERE, "Processing task " + task.getType() + " failed", t);
+				}
+
+			} else {
+
+				try {
+
+					ret = processTask(task);
+
+				} catch (Throwable t) {
+
+					logger.log(Level.SEVERE, "Processing task " + task.getType() + " failed", t);
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	public final boolean assignTask(Task task) {
 
 		// TODO: do type check here
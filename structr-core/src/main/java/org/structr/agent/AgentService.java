@@ -18,12 +18,6 @@
  */
 package org.structr.agent;
 
-import org.structr.core.Command;
-import org.structr.core.RunnableService;
-import org.structr.core.Services;
-
-//~--- JDK imports ------------------------------------------------------------
-
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -31,72 +25,111 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.common.StructrConf;
+import org.structr.core.Command;
+import org.structr.core.Metrics;
+import org.structr.core.RunnableService;
+import org.structr.core.Services;
 import org.structr.schema.ConfigurationProvider;
 
-//~--- classes ----------------------------------------------------------------
-
 /**
  * The agent service main class.
- * 
+ *
+ * Tasks are executed on a shared pool of worker threads. Each task type has
+ * its own concurrency limit, tasks that exceed the limit wait in a per-type
+ * queue ordered by priority and submission order, so that a flood of tasks
+ * of one type cannot starve the others. Unless a limit is configured for a
+ * task type, it can use all threads but one. Tasks with a delay, and tasks whose
+ * agent asked for a retry, are held in a delay queue until they are due.
+ * Nothing in this service polls, all threads block until there is work.
+ *
  * @author Christian Morgner
  */
 public class AgentService extends Thread implements RunnableService {
 
-	private static final Logger logger = Logger.getLogger(AgentService.class.getName());
-
-	//~--- fields ---------------------------------------------------------
-
-	private int maxAgents                               = 4;    // TODO: make configurable
-	private final Map<Class, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Map<Class, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                 = new ConcurrentLinkedQueue<>();
-	private Set<Class> supportedCommands                = null;
-	private boolean run                                 = false;
-
-	//~--- constructors ---------------------------------------------------
+	private static final Logger logger                        = Logger.getLogger(AgentService.class.getName());
+
+	public static final String AGENT_THREADS                  = "agentservice.threads";
+	public static final String AGENT_MAX_AGENTS               = "agentservice.maxagents";
+	public static final String AGENT_RETRIES                  = "agentservice.retries";
+	public static final String AGENT_RETRY_DELAY              = "agentservice.retrydelay";
+
+	private final Map<Class, List<Agent>> runningAgents       = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Class, Class> agentClassCache           = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Class, TaskTypeQueue> taskTypeQueues    = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Task, Agent> activeAgents               = new ConcurrentHashMap<>();
+	private final Set<Task> waitingTasks                      = Collections.newSetFromMap(new ConcurrentHashMap<Task, Boolean>());
+	private final DelayQueue<DelayedTask> delayedTasks        = new DelayQueue<>();
+	private final AtomicLong sequence                         = new AtomicLong();
+	private final StructrConf config                          = new StructrConf();
+	private ThreadPoolExecutor executor                       = null;
+	private Set<Class> supportedCommands                      = null;
+	private int maxAgents                                     = 4;
+	private int maxRetries                                    = 3;
+	private long retryDelay                                   = 1000;
+	private volatile boolean run                              = false;
 
 	public AgentService() {
 
 		super("AgentService");
 		supportedCommands = new LinkedHashSet<>();
 		supportedCommands.add(ProcessTaskCommand.class);
-	}
 
-	//~--- methods --------------------------------------------------------
+		setDaemon(true);
+	}
 
 	public void processTask(Task task) {
-
-		synchronized (taskQueue) {
-
-			taskQueue.add(task);
-			logger.log(Level.FINE, "Task {0} added to task queue", task);
-		}
+		processTask(task, null);
 	}
 
-	public Agent findAgentForTask(Task task) {
+	/**
+	 * Schedules the given task and runs the given callback when the task
+	 * is finished, i.e. when it was processed, discarded or did not succeed
+	 * within the configured number of retries.
+	 *
+	 * @param task
+	 * @param callback the callback, or null
+	 */
+	public void processTask(final Task task, final Runnable callback) {
 
-		List<Agent> agents = getRunningAgentsForTask(task.getClass());
+		waitingTasks.add(task);
 
-		synchronized (agents) {
+		final long delay = task.getDelay(TimeUnit.MILLISECONDS);
+		if (delay > 0) {
 
-			for (Agent agent : agents) {
+			// hold back until the task is due
+			delayedTasks.add(new DelayedTask(task, 0, delay, callback));
 
-				if (agent.getTaskQueue().contains(task)) {
-					return (agent);
-				}
-			}
+		} else {
+
+			dispatch(new ScheduledTask(task, 0, callback));
 		}
 
-		return (null);
+		logger.log(Level.FINE, "Task {0} added to task queue", task);
+	}
+
+	public Agent findAgentForTask(Task task) {
+		return activeAgents.get(task);
 	}
 
+	/**
+	 * Moves delayed tasks and retries to their task type queue as soon as
+	 * they are due.
+	 */
 	@Override
 	public void run() {
 
@@ -104,14 +137,16 @@ public class AgentService extends Thread implements RunnableService {
 
 		while (run) {
 
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
-				
-				assignNextAgentForTask(nextTask);
-			}
+			try {
+
+				final DelayedTask delayedTask = delayedTasks.take();
 
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
+				dispatch(new ScheduledTask(delayedTask.task, delayedTask.attempt, delayedTask.callback));
+
+			} catch (InterruptedException iex) {
+
+				// stopService() interrupts us
+			}
 		}
 	}
 
@@ -137,13 +172,13 @@ public class AgentService extends Thread implements RunnableService {
 
 		final ConfigurationProvider configuration = Services.getInstance().getConfigurationProvider();
 		if (configuration != null) {
-			
+
 			return configuration.getAgents();
 		}
-		
+
 		return Collections.emptyMap();
 	}
-	
+
 	// <editor-fold defaultstate="collapsed" desc="interface RunnableService">
 	@Override
 	public void injectArguments(Command command) {
@@ -151,7 +186,58 @@ public class AgentService extends Thread implements RunnableService {
 	}
 
 	@Override
-	public void initialize(final StructrConf config) {}
+	public void initialize(final StructrConf config) {
+
+		// Default config
+		this.config.setProperty(AGENT_THREADS,     Integer.toString(Runtime.getRuntime().availableProcessors()));
+		this.config.setProperty(AGENT_MAX_AGENTS,  "4");
+		this.config.setProperty(AGENT_RETRIES,     "3");
+		this.config.setProperty(AGENT_RETRY_DELAY, "1000");
+
+		Services.mergeConfiguration(this.config, config);
+
+		final int threads      = Math.max(1, parseInt(this.config.getProperty(AGENT_THREADS), 4));
+		final int defaultLimit = Math.max(1, parseInt(this.config.getProperty(AGENT_MAX_AGENTS), 4));
+
+		// a single task type must not occupy all threads
+		maxAgents  = Math.max(1, Math.min(defaultLimit, threads - 1));
+		maxRetries = Math.max(0, parseInt(this.config.getProperty(AGENT_RETRIES), 3));
+		retryDelay = Math.max(0, parseInt(this.config.getProperty(AGENT_RETRY_DELAY), 1000));
+
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+				final Thread thread = new Thread(runnable, "AgentWorker-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
+		if (maxAgents < defaultLimit) {
+			logger.log(Level.INFO, "Limiting the number of agents per task type to {0} for {1} threads", new Object[] { maxAgents, threads });
+		}
+
+		Metrics.gauge("agents.queued", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return waitingTasks.size();
+			}
+		});
+
+		Metrics.gauge("agents.active", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return activeAgents.size();
+			}
+		});
+	}
 
 	@Override
 	public void shutdown() {}
@@ -165,7 +251,26 @@ public class AgentService extends Thread implements RunnableService {
 
 	@Override
 	public void stopService() {
+
 		run = false;
+
+		this.interrupt();
+
+		if (executor != null) {
+
+			executor.shutdownNow();
+
+			try {
+				executor.awaitTermination(10, TimeUnit.SECONDS);
+
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		delayedTasks.clear();
+		taskTypeQueues.clear();
+		waitingTasks.clear();
 	}
 
 	@Override
@@ -176,58 +281,150 @@ public class AgentService extends Thread implements RunnableService {
 	// </editor-fold>
 
 	// <editor-fold defaultstate="collapsed" desc="private methods">
-	private void assignNextAgentForTask(Task nextTask) {
+	/**
+	 * Submits the given task to the worker pool if the concurrency limit of
+	 * its type allows it, or adds it to the pending queue of its type.
+	 */
+	private void dispatch(final ScheduledTask scheduledTask) {
 
-		Class taskClass    = nextTask.getClass();
-		List<Agent> agents = getRunningAgentsForTask(taskClass);
+		final TaskTypeQueue queue = getTaskTypeQueue(scheduledTask.task.getClass());
 
-		// need to synchronize on agents
-		synchronized (agents) {
+		synchronized (queue) {
 
-			// find next free agent (agents should be sorted by load, so one
-			// of the first should do..
-			for (Agent agent : agents) {
+			if (queue.running >= queue.limit) {
 
-				if (agent.assignTask(nextTask)) {
+				queue.pending.add(scheduledTask);
+				return;
+			}
 
-					// ok, task is assigned
-					logger.log(Level.FINE, "Task assigned to agent {0}", agent.getName());
+			queue.running++;
+		}
 
-					return;
-				}
+		submit(scheduledTask);
+	}
+
+	/**
+	 * Called by a worker when a task has finished, hands the slot of the
+	 * task type to the next pending task of the same type, if any.
+	 */
+	private void release(final Class taskClass) {
+
+		final TaskTypeQueue queue = getTaskTypeQueue(taskClass);
+		ScheduledTask next        = null;
+
+		synchronized (queue) {
+
+			next = queue.pending.poll();
+			if (next == null) {
+
+				queue.running--;
+				return;
 			}
 		}
 
-		// FIXME: find better solution for hard limit here!
-		if (agents.size() < maxAgents) {
+		// slot is passed on to the next task, which is queued behind the
+		// tasks of other types that were submitted while it was pending
+		next.seq = sequence.incrementAndGet();
+
+		submit(next);
+	}
 
-			// if we get here, task was not assigned to any agent, need to
-			// create a new one.
-			Agent agent = createAgent(nextTask);
+	private void submit(final ScheduledTask scheduledTask) {
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
-				agent.start();
-			} else {
+		try {
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
-				}
+			executor.execute(scheduledTask);
+
+		} catch (RejectedExecutionException rex) {
+
+			// service is shutting down
+			waitingTasks.remove(scheduledTask.task);
+			logger.log(Level.FINE, "Task {0} rejected, service is shutting down", scheduledTask.task);
+
+			complete(scheduledTask.callback);
+		}
+	}
+
+	private void execute(final ScheduledTask scheduledTask) {
+
+		final Task task       = scheduledTask.task;
+		final Class taskClass = task.getClass();
+		ReturnValue ret       = null;
+
+		waitingTasks.remove(task);
+		Metrics.timer("agents.wait").updateSince(scheduledTask.queuedAt);
+
+		try {
+
+			final Agent agent = createAgent(task);
+			if (agent == null) {
+
+				logger.log(Level.WARNING, "No agent found for task {0}, discarding", task.getType());
+				complete(scheduledTask.callback);
+
+				return;
 			}
-		} else {
 
-			logger.log(Level.FINE, "Overall agents limit reached, re-queueing task");
+			final long t0 = System.nanoTime();
+
+			activeAgents.put(task, agent);
+			notifyAgentStart(agent);
+
+			try {
+
+				ret = agent.executeTask(task);
+
+			} finally {
+
+				notifyAgentStop(agent);
+				activeAgents.remove(task);
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
+				Metrics.timer("agents.run").updateSince(t0);
+				Metrics.timer("agents.run." + taskClass.getSimpleName()).updateSince(t0);
+			}
+
+		} finally {
+
+			release(taskClass);
+		}
+
+		if (ret == ReturnValue.Retry) {
+
+			final int attempt = scheduledTask.attempt + 1;
+			if (attempt <= maxRetries) {
+
+				Metrics.counter("agents.retried").incrementAndGet();
+				waitingTasks.add(task);
+
+				// exponential backoff
+				delayedTasks.add(new DelayedTask(task, attempt, retryDelay << (attempt - 1), scheduledTask.callback));
+
+				return;
+			}
+
+			Metrics.counter("agents.failed").incrementAndGet();
+			logger.log(Level.WARNING, "Task {0} failed after {1} retries, discarding", new Object[] { task.getType(), maxRetries });
+		}
+
+		complete(scheduledTask.callback);
+	}
+
+	private void complete(final Runnable callback) {
+
+		if (callback != null) {
+
+			try {
+				callback.run();
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Exception in task callback", t);
 			}
 		}
 	}
 
 	/**
-	 * Creates a new agent for the given Task. Note that the agent must be
-	 * started manually after creation.
+	 * Creates a new agent for the given Task.
 	 *
 	 * @param forTask
 	 * @return a new agent for the given task
@@ -248,7 +445,7 @@ public class AgentService extends Thread implements RunnableService {
 
 		} catch (Exception ex) {
 
-			// TODO: handle exception etc..
+			logger.log(Level.WARNING, "Unable to create agent for task " + forTask.getType(), ex);
 		}
 
 		return (agent);
@@ -265,7 +462,7 @@ public class AgentService extends Thread implements RunnableService {
 		if (agentClass == null) {
 
 			Map<String, Class<? extends Agent>> agentClassesMap = getAgents();
-			
+
 			if (agentClassesMap != null) {
 
 				for (Entry<String, Class<? extends Agent>> classEntry : agentClassesMap.entrySet()) {
@@ -292,13 +489,48 @@ public class AgentService extends Thread implements RunnableService {
 
 			try {
 				agent = (Agent) agentClass.newInstance();
-				
+
 			} catch (Throwable ignore) {}
 		}
 
 		return (agent);
 	}
 
+	private TaskTypeQueue getTaskTypeQueue(final Class taskClass) {
+
+		TaskTypeQueue queue = taskTypeQueues.get(taskClass);
+		if (queue == null) {
+
+			synchronized (taskTypeQueues) {
+
+				queue = taskTypeQueues.get(taskClass);
+				if (queue == null) {
+
+					// per-type limit, e.g. agentservice.maxagents.CronTestTask = 1
+					final String limit = config.getProperty(AGENT_MAX_AGENTS + "." + taskClass.getSimpleName());
+
+					queue = new TaskTypeQueue(limit != null ? Math.max(1, parseInt(limit, maxAgents)) : maxAgents);
+					taskTypeQueues.put(taskClass, queue);
+				}
+			}
+		}
+
+		return queue;
+	}
+
+	private int parseInt(final String value, final int defaultValue) {
+
+		try {
+			return Integer.parseInt(value.trim());
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to parse value {0}, using default of {1}", new Object[] { value, defaultValue });
+		}
+
+		return defaultValue;
+	}
+
 	// </editor-fold>
 
 	//~--- get methods ----------------------------------------------------
@@ -308,7 +540,7 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return
 	 */
 	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+		return Collections.unmodifiableSet(waitingTasks);
 	}
 
 	/**
@@ -325,10 +557,15 @@ public class AgentService extends Thread implements RunnableService {
 
 		if (agents == null) {
 
-			agents = Collections.synchronizedList(new LinkedList<Agent>());
+			synchronized (runningAgents) {
 
-			// Hashtable is synchronized
-			runningAgents.put(taskClass, agents);
+				agents = runningAgents.get(taskClass);
+				if (agents == null) {
+
+					agents = Collections.synchronizedList(new LinkedList<Agent>());
+					runningAgents.put(taskClass, agents);
+				}
+			}
 		}
 
 		return (agents);
@@ -339,4 +576,84 @@ public class AgentService extends Thread implements RunnableService {
 		return (this.run);
 	}
 
+	// ----- nested classes -----
+	/**
+	 * Pending tasks and number of running tasks of a single task type.
+	 */
+	private static class TaskTypeQueue {
+
+		private final PriorityQueue<ScheduledTask> pending = new PriorityQueue<>();
+		private int running                                = 0;
+		private int limit                                  = 0;
+
+		public TaskTypeQueue(final int limit) {
+			this.limit = limit;
+		}
+	}
+
+	/**
+	 * A task that is ready to run, ordered by priority (highest first) and
+	 * submission order.
+	 */
+	private class ScheduledTask implements Runnable, Comparable<ScheduledTask> {
+
+		private final long queuedAt = System.nanoTime();
+		private long seq            = sequence.incrementAndGet();
+		private Runnable callback   = null;
+		private Task task           = null;
+		private int attempt         = 0;
+
+		public ScheduledTask(final Task task, final int attempt, final Runnable callback) {
+
+			this.callback = callback;
+			this.task     = task;
+			this.attempt  = attempt;
+		}
+
+		@Override
+		public void run() {
+			execute(this);
+		}
+
+		@Override
+		public int compareTo(final ScheduledTask other) {
+
+			final int priorityComparison = Integer.compare(other.task.priority(), task.priority());
+			if (priorityComparison != 0) {
+
+				return priorityComparison;
+			}
+
+			return Long.compare(seq, other.seq);
+		}
+	}
+
+	/**
+	 * A task that waits in the delay queue.
+	 */
+	private static class DelayedTask implements Delayed {
+
+		private Runnable callback = null;
+		private long dueAt        = 0L;
+		private Task task         = null;
+		private int attempt       = 0;
+
+		public DelayedTask(final Task task, final int attempt, final long delayMillis, final Runnable callback) {
+
+			this.dueAt    = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+			this.callback = callback;
+			this.task     = task;
+			this.attempt  = attempt;
+		}
+
+		@Override
+		public long getDelay(final TimeUnit unit) {
+			return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(final Delayed other) {
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
 }
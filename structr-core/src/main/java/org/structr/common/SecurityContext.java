@@ -20,6 +20,7 @@ package org.structr.common;
 
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
+import org.structr.core.Metrics;
 import org.structr.core.auth.Authenticator;
 import org.structr.core.entity.*;
 import org.structr.core.entity.Principal;
@@ -29,6 +30,7 @@ import org.structr.core.entity.SuperUser;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -54,6 +56,29 @@ public class SecurityContext {
 	private static final Logger logger                   = Logger.getLogger(SecurityContext.class.getName());
 	private static final Map<String, Long> resourceFlags = new LinkedHashMap<>();
 	private static final Pattern customViewPattern       = Pattern.compile(".*properties=([a-zA-Z_,]+)");
+	private static final AtomicLong securityGeneration   = new AtomicLong(0);
+	private static final AtomicLong accessCacheHits      = Metrics.counter("cache.access.hits");
+	private static final AtomicLong accessCacheMisses    = Metrics.counter("cache.access.misses");
+	private static final int MAX_ACCESS_CACHE_SIZE       = 10000;
+	private static final int MAX_INVALIDATIONS           = 1000;
+
+	// recent changes of permissions and group memberships, in the order of their generation
+	private static final Deque<Invalidation> invalidations = new ArrayDeque<>();
+
+	static {
+
+		Metrics.gauge("cache.access.hitRatio", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+
+				final long hits  = accessCacheHits.get();
+				final long total = hits + accessCacheMisses.get();
+
+				return total > 0 ? (double)hits / (double)total : 0.0;
+			}
+		});
+	}
 
 	//~--- fields ---------------------------------------------------------
 
@@ -65,6 +90,12 @@ public class SecurityContext {
 	private HttpServletRequest request     = null;
 	private Set<String> customView         = null;
 
+	// access decisions and principal ancestries, entries of modified nodes and principals are
+	// removed when the security generation changes
+	private Map<String, Boolean> accessCache            = SecurityContext.<Boolean>createAccessCache();
+	private Map<String, Set<Principal>> ancestorCache   = SecurityContext.<Set<Principal>>createAccessCache();
+	private volatile long accessCacheGeneration         = securityGeneration.get();
+
 	//~--- constructors ---------------------------------------------------
 
 	private SecurityContext() {}
@@ -369,6 +400,112 @@ public class SecurityContext {
 			return false;
 		}
 
+		final String cacheKey = getAccessCacheKey(node, permission, user);
+		if (cacheKey != null) {
+
+			validateAccessCache();
+
+			final Boolean cachedDecision = accessCache.get(cacheKey);
+			if (cachedDecision != null) {
+
+				accessCacheHits.incrementAndGet();
+				return cachedDecision;
+			}
+
+			accessCacheMisses.incrementAndGet();
+		}
+
+		final boolean allowed = isAllowedWithoutCache(node, permission, user);
+
+		if (cacheKey != null) {
+			accessCache.put(cacheKey, allowed);
+		}
+
+		return allowed;
+	}
+
+	/**
+	 * Returns all direct and indirect parents of the given principal. The
+	 * result is computed only once per principal and cached until the
+	 * next change of group memberships, ownerships or security
+	 * relationships.
+	 *
+	 * @param principal
+	 * @return the ancestors of the given principal
+	 */
+	public Set<Principal> getAncestors(final Principal principal) {
+
+		final String uuid = principal.getUuid();
+		if (uuid == null) {
+
+			return collectAncestors(principal);
+		}
+
+		validateAccessCache();
+
+		Set<Principal> ancestors = ancestorCache.get(uuid);
+		if (ancestors == null) {
+
+			ancestors = collectAncestors(principal);
+			ancestorCache.put(uuid, ancestors);
+		}
+
+		return ancestors;
+	}
+
+	/**
+	 * Invalidates the cached access decisions and principal ancestries
+	 * of all security contexts.
+	 */
+	public static void invalidateAccessCaches() {
+		addInvalidation(null, false);
+	}
+
+	/**
+	 * Invalidates the cached access decisions for the node with the given
+	 * uuid in all security contexts. This method is called by the
+	 * modification queue whenever the owner or the security relationships
+	 * of a node are modified.
+	 *
+	 * @param uuid
+	 */
+	public static void invalidateAccessCachesForNode(final String uuid) {
+		addInvalidation(uuid, false);
+	}
+
+	/**
+	 * Invalidates the cached ancestries and access decisions of the given
+	 * principal and of all principals that are members of it, directly or
+	 * indirectly, in all security contexts. This method is called by the
+	 * modification queue whenever group memberships are modified.
+	 *
+	 * @param uuid
+	 */
+	public static void invalidateAccessCachesForPrincipal(final String uuid) {
+		addInvalidation(uuid, true);
+	}
+
+	public static Set<Principal> collectAncestors(final Principal principal) {
+
+		final Set<Principal> ancestors   = new LinkedHashSet<>();
+		final LinkedList<Principal> todo = new LinkedList<>(principal.getParents());
+
+		while (!todo.isEmpty()) {
+
+			final Principal parent = todo.removeFirst();
+
+			// avoid endless loops for circular group memberships
+			if (!parent.equals(principal) && ancestors.add(parent)) {
+
+				todo.addAll(parent.getParents());
+			}
+		}
+
+		return Collections.unmodifiableSet(ancestors);
+	}
+
+	private boolean isAllowedWithoutCache(final AccessControllable node, final Permission permission, final Principal user) {
+
 		Principal owner = node.getOwnerNode();
 
 		// owner is always allowed to do anything with its nodes
@@ -381,6 +518,162 @@ public class SecurityContext {
 
 	}
 
+	private void validateAccessCache() {
+
+		if (accessCacheGeneration == securityGeneration.get()) {
+			return;
+		}
+
+		final Set<String> nodes      = new HashSet<>();
+		final Set<String> principals = new HashSet<>();
+		boolean clearAll             = false;
+		long currentGeneration       = 0L;
+
+		synchronized (invalidations) {
+
+			currentGeneration = securityGeneration.get();
+
+			final Invalidation oldest = invalidations.peekFirst();
+
+			// changes since the last validation are not known any more
+			if (oldest == null || oldest.generation > accessCacheGeneration + 1) {
+
+				clearAll = true;
+
+			} else {
+
+				for (final Invalidation invalidation : invalidations) {
+
+					if (invalidation.generation > accessCacheGeneration) {
+
+						if (invalidation.uuid == null) {
+
+							clearAll = true;
+
+						} else if (invalidation.principal) {
+
+							principals.add(invalidation.uuid);
+
+						} else {
+
+							nodes.add(invalidation.uuid);
+						}
+					}
+				}
+			}
+		}
+
+		if (clearAll) {
+
+			accessCache.clear();
+			ancestorCache.clear();
+
+		} else {
+
+			final Set<String> users = getAffectedUsers(principals);
+
+			synchronized (accessCache) {
+
+				final Iterator<String> keys = accessCache.keySet().iterator();
+				while (keys.hasNext()) {
+
+					final String[] parts = keys.next().split(":", 3);
+
+					if (nodes.contains(parts[1]) || users.contains(parts[0])) {
+						keys.remove();
+					}
+				}
+			}
+
+			ancestorCache.keySet().removeAll(users);
+		}
+
+		accessCacheGeneration = currentGeneration;
+	}
+
+	/**
+	 * Returns the uuids of the given principals and of all users whose
+	 * cached decisions may depend on them. Users with access decisions
+	 * but without cached ancestors are included, because it is unknown
+	 * whether they are members of the given principals.
+	 */
+	private Set<String> getAffectedUsers(final Set<String> principals) {
+
+		final Set<String> users = new HashSet<>(principals);
+
+		if (principals.isEmpty()) {
+			return users;
+		}
+
+		synchronized (ancestorCache) {
+
+			for (final Map.Entry<String, Set<Principal>> entry : ancestorCache.entrySet()) {
+
+				for (final Principal ancestor : entry.getValue()) {
+
+					if (principals.contains(ancestor.getUuid())) {
+
+						users.add(entry.getKey());
+						break;
+					}
+				}
+			}
+		}
+
+		synchronized (accessCache) {
+
+			for (final String key : accessCache.keySet()) {
+
+				final String userId = key.substring(0, key.indexOf(':'));
+				if (!ancestorCache.containsKey(userId)) {
+
+					users.add(userId);
+				}
+			}
+		}
+
+		return users;
+	}
+
+	private static void addInvalidation(final String uuid, final boolean principal) {
+
+		synchronized (invalidations) {
+
+			invalidations.addLast(new Invalidation(securityGeneration.incrementAndGet(), uuid, principal));
+
+			if (invalidations.size() > MAX_INVALIDATIONS) {
+				invalidations.removeFirst();
+			}
+		}
+	}
+
+	private static <T> Map<String, T> createAccessCache() {
+
+		return Collections.synchronizedMap(new LinkedHashMap<String, T>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, T> eldest) {
+				return size() > MAX_ACCESS_CACHE_SIZE;
+			}
+		});
+	}
+
+	private String getAccessCacheKey(final AccessControllable node, final Permission permission, final Principal user) {
+
+		if (node instanceof GraphObject) {
+
+			final String nodeId = ((GraphObject)node).getUuid();
+			final String userId = user.getUuid();
+
+			if (nodeId != null && userId != null) {
+
+				return userId.concat(":").concat(nodeId).concat(":").concat(permission.name());
+			}
+		}
+
+		return null;
+	}
+
 	public boolean isVisible(AccessControllable node) {
 
 		switch (accessMode) {
@@ -583,6 +876,20 @@ public class SecurityContext {
 	}
 
 	// ----- nested classes -----
+	private static class Invalidation {
+
+		private final long generation;
+		private final String uuid;
+		private final boolean principal;
+
+		public Invalidation(final long generation, final String uuid, final boolean principal) {
+
+			this.generation = generation;
+			this.uuid       = uuid;
+			this.principal  = principal;
+		}
+	}
+
 	private static class SuperUserSecurityContext extends SecurityContext {
 
 		public SuperUserSecurityContext(HttpServletRequest request) {
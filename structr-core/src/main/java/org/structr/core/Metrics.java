@@ -0,0 +1,336 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry for runtime metrics of the core layer. Metrics are identified by
+ * dotted names like "tx.commit" or "query.keyword" and come in three kinds:
+ * counters, timers that record count, total, average and maximum duration,
+ * and gauges that read their value from an existing component on demand.
+ *
+ * A snapshot of all metrics is available through {@link #getSnapshot()},
+ * and as attributes of the "org.structr:type=Metrics" MBean once
+ * {@link #registerMBean()} has been called.
+ *
+ * @author Christian Morgner
+ */
+public class Metrics {
+
+	private static final Logger logger                              = Logger.getLogger(Metrics.class.getName());
+	private static final String MBEAN_NAME                          = "org.structr:type=Metrics";
+
+	private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Timer> timers        = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Gauge> gauges        = new ConcurrentHashMap<>();
+
+	public static AtomicLong counter(final String name) {
+
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+
+			final AtomicLong newCounter = new AtomicLong();
+
+			counter = counters.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+
+		return counter;
+	}
+
+	public static Timer timer(final String name) {
+
+		Timer timer = timers.get(name);
+		if (timer == null) {
+
+			final Timer newTimer = new Timer();
+
+			timer = timers.putIfAbsent(name, newTimer);
+			if (timer == null) {
+				timer = newTimer;
+			}
+		}
+
+		return timer;
+	}
+
+	public static void gauge(final String name, final Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Resets all counters and timers, gauges are not affected.
+	 */
+	public static void reset() {
+
+		for (final AtomicLong counter : counters.values()) {
+			counter.set(0L);
+		}
+
+		for (final Timer timer : timers.values()) {
+			timer.reset();
+		}
+	}
+
+	/**
+	 * Returns the current values of all metrics, sorted by name. Timers
+	 * are expanded into count, totalTime, averageTime and maxTime values,
+	 * all times are in milliseconds.
+	 *
+	 * @return the metric values
+	 */
+	public static Map<String, Object> getSnapshot() {
+
+		final Map<String, Object> snapshot = new TreeMap<>();
+
+		for (final Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().get());
+		}
+
+		for (final Map.Entry<String, Timer> entry : timers.entrySet()) {
+
+			final String name = entry.getKey();
+			final Timer timer = entry.getValue();
+
+			snapshot.put(name.concat(".count"), timer.getCount());
+			snapshot.put(name.concat(".totalTime"), timer.getTotalTime());
+			snapshot.put(name.concat(".averageTime"), timer.getAverageTime());
+			snapshot.put(name.concat(".maxTime"), timer.getMaxTime());
+		}
+
+		for (final Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+
+			try {
+				snapshot.put(entry.getKey(), entry.getValue().getValue());
+
+			} catch (Throwable t) {
+				logger.log(Level.FINE, "Unable to read gauge {0}: {1}", new Object[] { entry.getKey(), t.getMessage() });
+			}
+		}
+
+		return snapshot;
+	}
+
+	public static void registerMBean() {
+
+		try {
+
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name    = new ObjectName(MBEAN_NAME);
+
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MetricsMBean(), name);
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to register metrics MBean: {0}", t.getMessage());
+		}
+	}
+
+	public static void unregisterMBean() {
+
+		try {
+
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name    = new ObjectName(MBEAN_NAME);
+
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to unregister metrics MBean: {0}", t.getMessage());
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A value that is read from a component when a snapshot is taken.
+	 */
+	public static interface Gauge {
+
+		public Object getValue();
+	}
+
+	/**
+	 * Records the number and duration of events.
+	 */
+	public static class Timer {
+
+		private final AtomicLong count      = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos   = new AtomicLong();
+
+		/**
+		 * Records an event that started at the given
+		 * value of {@link System#nanoTime()}.
+		 *
+		 * @param startNanos
+		 */
+		public void updateSince(final long startNanos) {
+			update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+		}
+
+		public void update(final long duration, final TimeUnit unit) {
+
+			final long nanos = unit.toNanos(duration);
+
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+
+			long max = maxNanos.get();
+			while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+				max = maxNanos.get();
+			}
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public double getTotalTime() {
+			return toMillis(totalNanos.get());
+		}
+
+		public double getAverageTime() {
+
+			final long c = count.get();
+
+			return c > 0 ? toMillis(totalNanos.get()) / c : 0.0;
+		}
+
+		public double getMaxTime() {
+			return toMillis(maxNanos.get());
+		}
+
+		private void reset() {
+
+			count.set(0L);
+			totalNanos.set(0L);
+			maxNanos.set(0L);
+		}
+
+		private double toMillis(final long nanos) {
+			return nanos / 1000000.0;
+		}
+	}
+
+	private static class MetricsMBean implements DynamicMBean {
+
+		@Override
+		public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+
+			final Object value = getSnapshot().get(attribute);
+			if (value == null) {
+
+				throw new AttributeNotFoundException(attribute);
+			}
+
+			return value;
+		}
+
+		@Override
+		public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Metrics are read-only");
+		}
+
+		@Override
+		public AttributeList getAttributes(final String[] attributes) {
+
+			final Map<String, Object> snapshot = getSnapshot();
+			final AttributeList list           = new AttributeList();
+
+			for (final String name : attributes) {
+
+				final Object value = snapshot.get(name);
+				if (value != null) {
+
+					list.add(new Attribute(name, value));
+				}
+			}
+
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(final AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+
+			if ("reset".equals(actionName)) {
+				reset();
+			}
+
+			return null;
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+
+			final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+
+			for (final Map.Entry<String, Object> entry : getSnapshot().entrySet()) {
+
+				final Object value = entry.getValue();
+				final String type  = value != null ? value.getClass().getName() : Object.class.getName();
+
+				attributes.add(new MBeanAttributeInfo(entry.getKey(), type, entry.getKey(), true, false, false));
+			}
+
+			final MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Resets all counters and timers", null, "void", MBeanOperationInfo.ACTION);
+
+			return new MBeanInfo(
+				Metrics.class.getName(),
+				"Structr runtime metrics",
+				attributes.toArray(new MBeanAttributeInfo[0]),
+				null,
+				new MBeanOperationInfo[] { reset },
+				new MBeanNotificationInfo[0]
+			);
+		}
+	}
+}
@@ -18,7 +18,9 @@
  */
 package org.structr.core;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -37,6 +39,7 @@ public class Result<T extends GraphObject> {
 	private boolean hasPartialContent = false;
 	private String propertyView       = null;
 	private List<T> results           = null;
+	private Iterable<T> lazyResults   = null;
       
 	private String searchString       = null;
 	private String queryTime          = null;
@@ -58,6 +61,24 @@ public class Result<T extends GraphObject> {
 		this.resultCount      = (rawResultCount != null ? rawResultCount : (results != null ? results.size() : 0));
 	}
 	
+	/**
+	 * Creates a result whose elements are instantiated on demand while
+	 * iterating over the given source. The source is materialized into
+	 * a list when {@link #getResults()} is called, so callers that can
+	 * process the elements one by one should use {@link #getLazyResults()}
+	 * instead.
+	 *
+	 * @param lazyResults
+	 * @param isCollection
+	 * @param isPrimitiveArray
+	 */
+	public Result(final Iterable<T> lazyResults, final boolean isCollection, final boolean isPrimitiveArray) {
+
+		this.isCollection     = isCollection;
+		this.isPrimitiveArray = isPrimitiveArray;
+		this.lazyResults      = lazyResults;
+	}
+
 	public Result(T singleResult, final boolean isPrimitiveArray) {
 		
 		this.isCollection     = false;
@@ -73,14 +94,49 @@ public class Result<T extends GraphObject> {
 	}
 
 	public T get(final int i) {
-		return results.get(i);
+		return getResults().get(i);
 	}
 	
 	public boolean isEmpty() {
-		return results == null || results.isEmpty();
+
+		final List<T> list = getResults();
+
+		return list == null || list.isEmpty();
 	}
 	
 	public List<T> getResults() {
+
+		if (results == null && lazyResults != null) {
+
+			results = new ArrayList<>();
+
+			for (final T obj : lazyResults) {
+				results.add(obj);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return whether the elements of this result have not been instantiated yet
+	 */
+	public boolean isLazy() {
+		return results == null && lazyResults != null;
+	}
+
+	/**
+	 * Returns the elements of this result without materializing them
+	 * into a list.
+	 *
+	 * @return the elements of this result
+	 */
+	public Iterable<T> getLazyResults() {
+
+		if (isLazy()) {
+			return lazyResults;
+		}
+
 		return results;
 	}
 
@@ -113,6 +169,20 @@ public class Result<T extends GraphObject> {
 		if (resultCount != null) {
 			return resultCount;
 		}
+
+		if (isLazy()) {
+
+			// count the elements without keeping them in memory
+			int count = 0;
+
+			for (final Iterator<T> it = lazyResults.iterator(); it.hasNext(); it.next()) {
+				count++;
+			}
+
+			resultCount = count;
+
+			return resultCount;
+		}
 		
 		return size();
 	}
@@ -178,7 +248,7 @@ public class Result<T extends GraphObject> {
 	}
 	
 	public int size() {
-		return !isEmpty() ? results.size() : 0;
+		return !isEmpty() ? getResults().size() : 0;
 	}
 	
 	public void setHasPartialContent(boolean hasPartialContent) {
@@ -93,12 +93,16 @@ public class Services {
 	public static final String TMP_PATH                      = "tmp.path";
 	public static final String UDP_PORT                      = "udp.port";
 	public static final String JSON_INDENTATION              = "json.indentation";
+	public static final String JSON_BULK_BATCH_SIZE          = "json.bulk.batchsize";
+	public static final String JSON_BULK_RETRIES             = "json.bulk.retries";
 	public static final String GEOCODING_PROVIDER            = "geocoding.provider";
 	public static final String GEOCODING_LANGUAGE            = "geocoding.language";
 	public static final String GEOCODING_APIKEY              = "geocoding.apikey";
 	public static final String CONFIGURATION                 = "configuration.provider";
 	public static final String TESTING                       = "testing";
 	public static final String MIGRATION_KEY                 = "NodeService.migration";
+	public static final String TX_LISTENERS_ASYNC            = "transaction.listeners.async";
+	public static final String TX_LISTENERS_QUEUE_SIZE       = "transaction.listeners.queue.size";
 
 	// singleton instance
 	private static Services singletonInstance = null;
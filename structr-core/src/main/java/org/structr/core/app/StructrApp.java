@@ -25,6 +25,8 @@ import java.util.Map;
 import java.util.logging.Logger;
 import org.apache.commons.lang3.StringUtils;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Command;
@@ -40,10 +42,13 @@ import org.structr.core.graph.CreateRelationshipCommand;
 import org.structr.core.graph.CypherQueryCommand;
 import org.structr.core.graph.DeleteNodeCommand;
 import org.structr.core.graph.DeleteRelationshipCommand;
+import org.structr.core.graph.EntityCache;
 import org.structr.core.graph.GraphDatabaseCommand;
 import org.structr.core.graph.MaintenanceCommand;
 import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeService;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchNodeCommand;
@@ -120,8 +125,29 @@ public class StructrApp implements App {
 	@Override
 	public NodeInterface get(final String uuid) throws FrameworkException {
 
+		final EntityCache entityCache = NodeService.getEntityCache();
+		final Long nodeId             = entityCache.get(uuid);
+
+		if (nodeId != null) {
+
+			final Node node = getNodeWithUuid(nodeId, uuid);
+			if (node != null) {
+
+				return (NodeInterface)new NodeFactory(securityContext, true, false).instantiate(node);
+			}
+
+			// stale entry
+			entityCache.remove(uuid);
+		}
+
 		final Query<NodeInterface> query = command(SearchNodeCommand.class);
-		return query.uuid(uuid).includeDeletedAndHidden().getFirst();
+		final NodeInterface result       = query.uuid(uuid).includeDeletedAndHidden().getFirst();
+
+		if (result != null) {
+			entityCache.put(uuid, result.getId());
+		}
+
+		return result;
 	}
 
 	@Override
@@ -245,6 +271,25 @@ public class StructrApp implements App {
 		return Services.getInstance().command(securityContext, GraphDatabaseCommand.class).execute();
 	}
 	
+	// ----- private methods -----
+	private Node getNodeWithUuid(final long nodeId, final String uuid) {
+
+		try {
+
+			final Node node = getGraphDatabaseService().getNodeById(nodeId);
+
+			// database ids are reused, so the node must be verified
+			if (uuid.equals(node.getProperty(GraphObject.id.dbName(), null))) {
+				return node;
+			}
+
+		} catch (NotFoundException | IllegalStateException ignore) {
+			// node was deleted or is not visible in this transaction
+		}
+
+		return null;
+	}
+
 	// ----- public static methods ----
 	/**
 	 * Constructs a new stateful App instance, initialized with the given
@@ -19,6 +19,8 @@
 package org.structr.core.entity;
 
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -61,6 +63,34 @@ public abstract class AbstractEndpoint {
 	}
 	
 	// ----- protected methods -----
+	/**
+	 * Returns the relationships of the given type between two nodes,
+	 * following only the relationships of the node given first. Callers
+	 * should pass the node with fewer relationships of the given type
+	 * first, so that only the affected relationships are read.
+	 *
+	 * @param from the node to traverse from
+	 * @param to the node at the other end
+	 * @param relationshipType the relationship type
+	 * @param direction the direction of the relationships, seen from <code>from</code>
+	 *
+	 * @return a list of relationships, which is empty if the nodes are not connected
+	 */
+	protected List<Relationship> getRelationshipsBetween(final Node from, final Node to, final RelationshipType relationshipType, final Direction direction) {
+
+		final List<Relationship> rels = new LinkedList<>();
+		final long otherId            = to.getId();
+
+		for (final Relationship rel : from.getRelationships(direction, relationshipType)) {
+
+			if (rel.getOtherNode(from).getId() == otherId) {
+				rels.add(rel);
+			}
+		}
+
+		return rels;
+	}
+
 	/**
 	 * Loads a PropertyMap from the current security context that was previously stored
 	 * there by one of the Notions that was executed before this relationship creation.
@@ -48,9 +48,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -105,6 +105,7 @@ import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.action.ActionContext;
+import org.structr.schema.action.ExpressionParser;
 import org.structr.schema.action.Function;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
@@ -186,10 +187,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 
 
 	private static final Logger logger = Logger.getLogger(AbstractNode.class.getName());
-	private static final ThreadLocalMatcher threadLocalTemplateMatcher = new ThreadLocalMatcher("\\$\\{[^}]*\\}");
-	private static final ThreadLocalMatcher threadLocalFunctionMatcher = new ThreadLocalMatcher("([a-zA-Z0-9_]+)\\((.*)\\)");
 	private static final ThreadLocalMatcher threadLocalDoubleMatcher   = new ThreadLocalMatcher(regexDouble);
 	protected static final Map<String, Function<Object, Object>> functions = new LinkedHashMap<>();
+	protected static final ExpressionParser expressionParser               = new ExpressionParser(functions);
 
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type);
@@ -968,21 +968,29 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 			return true;
 		}
 
-		Security r = getSecurityRelationship(principal);
+		// collect the principal and all of its parent principals, the
+		// ancestors are computed only once per request and principal
+		final Set<Principal> principals = new LinkedHashSet<>();
 
-		if ((r != null) && r.isAllowed(permission)) {
+		principals.add(principal);
+		principals.addAll(securityContext != null ? securityContext.getAncestors(principal) : SecurityContext.collectAncestors(principal));
 
-			return true;
+		for (Principal parent : principals) {
+
+			// parent principals have full control over their own node, too
+			if (parent instanceof SuperUser || this.equals(parent)) {
+
+				return true;
+			}
 		}
 
-		// Now check possible parent principals
-		for (Principal parent : principal.getParents()) {
+		// check all security relationships in a single pass
+		for (Security r : getIncomingRelationshipsAsSuperUser(Security.class)) {
 
-			if (isGranted(permission, parent)) {
+			if (principals.contains(r.getSourceNode()) && r.isAllowed(permission)) {
 
 				return true;
 			}
-
 		}
 
 		return false;
@@ -1238,32 +1246,61 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 		}
 	}
 
+	/**
+	 * Updates the index entries of all indexed properties of this node.
+	 * Each property only replaces its own entries in the indices it is
+	 * registered with, use {@link #removeFromIndex()} followed by
+	 * {@link #addToIndex()} to rebuild all index entries from scratch.
+	 */
 	@Override
 	public void updateInIndex() {
-
-		removeFromIndex();
 		addToIndex();
 	}
 
 	@Override
 	public void removeFromIndex() {
 
-		for (Index<Node> index : Services.getInstance().getService(NodeService.class).getNodeIndices()) {
+		final NodeService nodeService = Services.getInstance().getService(NodeService.class);
 
-			synchronized (index) {
+		for (Index<Node> index : nodeService.getNodeIndices()) {
 
-				index.remove(dbNode);
-			}
+			removeFromIndex(nodeService, index, null);
 		}
 	}
 
 	public void removeFromIndex(PropertyKey key) {
 
-		for (Index<Node> index : Services.getInstance().getService(NodeService.class).getNodeIndices()) {
+		final NodeService nodeService = Services.getInstance().getService(NodeService.class);
+
+		for (Index<Node> index : nodeService.getNodeIndices()) {
+
+			removeFromIndex(nodeService, index, key.dbName());
+		}
+	}
+
+	private void removeFromIndex(final NodeService nodeService, final Index<Node> index, final String dbName) {
 
-			synchronized (index) {
+		// only the spatial index needs to be locked, Lucene indices are thread-safe
+		final Lock writeLock = nodeService.getIndexWriteLock(index);
+		if (writeLock != null) {
+			writeLock.lock();
+		}
+
+		try {
+
+			if (dbName != null) {
+
+				index.remove(dbNode, dbName);
 
-				index.remove(dbNode, key.dbName());
+			} else {
+
+				index.remove(dbNode);
+			}
+
+		} finally {
+
+			if (writeLock != null) {
+				writeLock.unlock();
 			}
 		}
 	}
@@ -3183,36 +3220,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 
 			if (!actionContext.returnRawValue(securityContext)) {
 
-				// re-use matcher from previous calls
-				Matcher matcher = threadLocalTemplateMatcher.get();
-
-				matcher.reset(value);
-
-				while (matcher.find()) {
-
-					String group          = matcher.group();
-					String source         = group.substring(2, group.length() - 1);
-					Object extractedValue = extractFunctions(securityContext, actionContext, source);
-
-					if (extractedValue == null) {
-						extractedValue = "";
-					}
-
-					String partValue = StringUtils.remove(extractedValue.toString(), "\\");
-					if (partValue != null) {
-
-						value = value.replace(group, partValue);
-
-					} else {
-
-						// If the whole expression should be replaced, and partValue is null
-						// replace it by null to make it possible for HTML attributes to not be rendered
-						// and avoid something like ... selected="" ... which is interpreted as selected==true by
-						// all browsers
-						value = value.equals(group) ? null : value.replace(group, "");
-					}
-				}
-
+				// templates are compiled only once and cached by the parser
+				value = expressionParser.compileTemplate(value).evaluate(securityContext, actionContext, this);
 			}
 
 		} else if (rawValue instanceof Boolean) {
@@ -3236,175 +3245,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 
 	protected Object extractFunctions(SecurityContext securityContext, ActionContext actionContext, String source) throws FrameworkException {
 
-		if ("null".equals(source)) {
-			return NULL_STRING;
-		}
-
-		// re-use matcher from previous calls
-		Matcher functionMatcher = threadLocalFunctionMatcher.get();
-
-		functionMatcher.reset(source);
-
-		if (functionMatcher.matches()) {
-
-			String functionGroup = functionMatcher.group(1);
-			String parameter     = functionMatcher.group(2);
-			String functionName  = functionGroup.substring(0, functionGroup.length());
-
-			final Function<Object, Object> function = functions.get(functionName);
-			final List results                      = new ArrayList();
-
-			if (function != null) {
-
-				// return usage string if no parameter is present
-				if (parameter == null || parameter.isEmpty()) {
-					return function.usage();
-				}
-
-				if (parameter.contains(",")) {
-
-					final String[] parameters = split(parameter);
-
-					// collect results from comma-separated function parameter
-					for (int i = 0; i < parameters.length; i++) {
-
-						addAll(results, extractFunctions(securityContext, actionContext, StringUtils.strip(parameters[i])));
-					}
-
-					return function.apply(actionContext, this, results.toArray());
-
-				} else {
-
-					addAll(results, extractFunctions(securityContext, actionContext, StringUtils.strip(parameter)));
-
-					return function.apply(actionContext, this, results.toArray());
-
-				}
-			}
-
-		}
-
-		// if any of the following conditions match, the literal source value is returned
-		if (source.startsWith("\"") && source.endsWith("\"")) {
-
-			return source.substring(1, source.length() - 1);
-
-		} else if (source.startsWith("'") && source.endsWith("'")) {
-
-			return source.substring(1, source.length() - 1);
-
-		} else if (StringUtils.isNotBlank(source) && isNumeric(source)) {
-
-			// return numeric value
-			return Double.parseDouble(source);
-
-		} else {
-
-			// return property key
-			return actionContext.getReferencedProperty(securityContext, this, source);
-		}
+		// expressions are compiled only once and cached by the parser
+		return expressionParser.compileExpression(source).evaluate(securityContext, actionContext, this);
 	}
 
 	protected String[] split(final String source) {
-
-		ArrayList<String> tokens = new ArrayList<>(20);
-		boolean inDoubleQuotes = false;
-		boolean inSingleQuotes = false;
-		boolean ignoreNext = false;
-		int len = source.length();
-		int level = 0;
-		StringBuilder currentToken = new StringBuilder(len);
-
-		for (int i = 0; i < len; i++) {
-
-			char c = source.charAt(i);
-
-			// do not strip away separators in nested functions!
-			if ((level != 0) || (c != ',')) {
-
-				currentToken.append(c);
-			}
-
-			if (ignoreNext) {
-
-				ignoreNext = false;
-				continue;
-
-			}
-
-			switch (c) {
-
-				case '\\':
-
-					ignoreNext = true;
-
-					break;
-
-				case '(':
-					level++;
-
-					break;
-
-				case ')':
-					level--;
-
-					break;
-
-				case '"':
-					if (inDoubleQuotes) {
-
-						inDoubleQuotes = false;
-
-						level--;
-
-					} else {
-
-						inDoubleQuotes = true;
-
-						level++;
-
-					}
-
-					break;
-
-				case '\'':
-					if (inSingleQuotes) {
-
-						inSingleQuotes = false;
-
-						level--;
-
-					} else {
-
-						inSingleQuotes = true;
-
-						level++;
-
-					}
-
-					break;
-
-				case ',':
-					if (level == 0) {
-
-						tokens.add(currentToken.toString().trim());
-						currentToken.setLength(0);
-
-					}
-
-					break;
-
-			}
-
-		}
-
-		if (currentToken.length() > 0) {
-
-			tokens.add(currentToken.toString().trim());
-		}
-
-		return tokens.toArray(new String[0]);
-
+		return ExpressionParser.split(source);
 	}
 
 	protected static String encodeURL(final String source) {
@@ -3429,7 +3275,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 		return gson.fromJson(source, new TypeToken<Map<String, Object>>() { }.getType());
 	}
 
-	protected static boolean isNumeric(final String source) {
+	public static boolean isNumeric(final String source) {
 		return threadLocalDoubleMatcher.get().reset(source).matches();
 	}
 
@@ -3496,17 +3342,4 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 
 		return null;
 	}
-
-	// ----- private methods -----
-	private void addAll(final List results, final Object partialResult) {
-
-		if (partialResult instanceof Object[]) {
-
-			results.addAll(Arrays.asList((Object[])partialResult));
-
-		} else {
-
-			results.add(partialResult);
-		}
-	}
 }
@@ -625,10 +625,14 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 		}
 	}
 
+	/**
+	 * Updates the index entries of all indexed properties of this relationship.
+	 * Each property only replaces its own entries in the indices it is
+	 * registered with, use {@link #removeFromIndex()} followed by
+	 * {@link #addToIndex()} to rebuild all index entries from scratch.
+	 */
 	@Override
 	public void updateInIndex() {
-
-		removeFromIndex();
 		addToIndex();
 	}
 
@@ -637,10 +641,7 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 
 		for (Index<Relationship> index : Services.getInstance().getService(NodeService.class).getRelationshipIndices()) {
 
-			synchronized (index) {
-
-				index.remove(dbRelationship);
-			}
+			index.remove(dbRelationship);
 		}
 	}
 
@@ -648,10 +649,7 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 
 		for (Index<Relationship> index : Services.getInstance().getService(NodeService.class).getRelationshipIndices()) {
 
-			synchronized (index) {
-
-				index.remove(dbRelationship, key.dbName());
-			}
+			index.remove(dbRelationship, key.dbName());
 		}
 	}
 
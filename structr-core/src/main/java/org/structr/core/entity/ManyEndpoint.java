@@ -18,7 +18,11 @@
  */
 package org.structr.core.entity;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
@@ -33,6 +37,7 @@ import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipFactory;
 
 /**
  *
@@ -70,41 +75,51 @@ public class ManyEndpoint<T extends NodeInterface> extends AbstractEndpoint impl
 	@Override
 	public void set(final SecurityContext securityContext, final NodeInterface sourceNode, final Iterable<T> collection) throws FrameworkException {
 
-		final App app            = StructrApp.getInstance(securityContext);
-		final Set<T> toBeDeleted = new LinkedHashSet<>(Iterables.toList(get(securityContext, sourceNode, null)));
-		final Set<T> toBeCreated = new LinkedHashSet<>();
+		final RelationshipFactory<AbstractRelationship> relationshipFactory = new RelationshipFactory<>(securityContext);
+		final NodeFactory<T> nodeFactory                                    = new NodeFactory<>(securityContext);
+		final List<AbstractRelationship> toBeDeleted                        = new LinkedList<>();
+		final Map<Long, T> toBeCreated                                      = new LinkedHashMap<>();
+		final Set<Long> existing                                            = new LinkedHashSet<>();
+		final App app                                                       = StructrApp.getInstance(securityContext);
 
 		if (collection != null) {
-			Iterables.addAll(toBeCreated, collection);
+
+			for (final T targetNode : collection) {
+
+				if (targetNode != null) {
+					toBeCreated.put(targetNode.getId(), targetNode);
+				}
+			}
 		}
 
-		// create intersection of both sets
-		final Set<T> intersection = new LinkedHashSet<>(toBeCreated);
-		intersection.retainAll(toBeDeleted);
+		// single pass over the existing relationships, nodes that are
+		// already connected need no change
+		for (final Relationship rel : getRawSource(securityContext, sourceNode.getNode(), null)) {
 
-		// intersection needs no change
-		toBeCreated.removeAll(intersection);
-		toBeDeleted.removeAll(intersection);
-		
-		// remove existing relationships
-		for (T targetNode : toBeDeleted) {
+			final long otherId = rel.getEndNode().getId();
 
-			for (AbstractRelationship rel : sourceNode.getOutgoingRelationships()) {
+			if (toBeCreated.remove(otherId) != null || existing.contains(otherId)) {
 
-				final String relTypeName    = rel.getRelType().name();
-				final String desiredRelType = relation.name();
-				
-				if (relTypeName.equals(desiredRelType) && rel.getTargetNode().equals(targetNode)) {
+				existing.add(otherId);
 
-					app.delete(rel);
-				}
+			} else if (nodeFactory.instantiate(rel.getEndNode()) != null) {
 
+				// only remove relationships to nodes the caller can see
+				final AbstractRelationship relationship = relationshipFactory.instantiate(rel);
+				if (relationship != null) {
+
+					toBeDeleted.add(relationship);
+				}
 			}
 		}
-		
-		// test: obtain properties from notion
+
+		// remove existing relationships
+		for (final AbstractRelationship rel : toBeDeleted) {
+			app.delete(rel);
+		}
+
 		// create new relationships
-		for (T targetNode : toBeCreated) {
+		for (final T targetNode : toBeCreated.values()) {
 
 			relation.ensureCardinality(securityContext, sourceNode, targetNode);
 
@@ -112,6 +127,75 @@ public class ManyEndpoint<T extends NodeInterface> extends AbstractEndpoint impl
 		}
 	}
 
+	/**
+	 * Connects the given node to the collection of the given source node,
+	 * reading only the relationships of the added node.
+	 *
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param targetNode
+	 *
+	 * @return whether a new relationship was created
+	 * @throws FrameworkException
+	 */
+	public boolean add(final SecurityContext securityContext, final NodeInterface sourceNode, final T targetNode) throws FrameworkException {
+
+		if (contains(securityContext, sourceNode, targetNode)) {
+			return false;
+		}
+
+		relation.ensureCardinality(securityContext, sourceNode, targetNode);
+
+		StructrApp.getInstance(securityContext).create(sourceNode, targetNode, relation.getClass(), getNotionProperties(securityContext, relation.getClass(), targetNode.getUuid()));
+
+		return true;
+	}
+
+	/**
+	 * Removes the given node from the collection of the given source node,
+	 * reading only the relationships of the removed node.
+	 *
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param targetNode
+	 *
+	 * @return whether a relationship was deleted
+	 * @throws FrameworkException
+	 */
+	public boolean remove(final SecurityContext securityContext, final NodeInterface sourceNode, final T targetNode) throws FrameworkException {
+
+		final RelationshipFactory<AbstractRelationship> relationshipFactory = new RelationshipFactory<>(securityContext);
+		final App app                                                       = StructrApp.getInstance(securityContext);
+		boolean removed                                                     = false;
+
+		if (targetNode == null) {
+			return false;
+		}
+
+		for (final Relationship rel : getRelationshipsBetween(targetNode.getNode(), sourceNode.getNode(), relation, Direction.INCOMING)) {
+
+			final AbstractRelationship relationship = relationshipFactory.instantiate(rel);
+			if (relationship != null) {
+
+				app.delete(relationship);
+				removed = true;
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param targetNode
+	 *
+	 * @return whether the given node is part of the collection of the given source node
+	 */
+	public boolean contains(final SecurityContext securityContext, final NodeInterface sourceNode, final T targetNode) {
+		return targetNode != null && !getRelationshipsBetween(targetNode.getNode(), sourceNode.getNode(), relation, Direction.INCOMING).isEmpty();
+	}
+
 	@Override
 	public Iterable<Relationship> getRawSource(final SecurityContext securityContext, final Node dbNode, final Predicate<GraphObject> predicate) {
 		return getMultiple(securityContext, dbNode, relation, Direction.OUTGOING, relation.getTargetType(), predicate);
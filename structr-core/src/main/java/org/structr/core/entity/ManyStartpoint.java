@@ -18,7 +18,11 @@
  */
 package org.structr.core.entity;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
@@ -33,6 +37,7 @@ import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipFactory;
 
 /**
  *
@@ -70,47 +75,127 @@ public class ManyStartpoint<S extends NodeInterface> extends AbstractEndpoint im
 	@Override
 	public void set(final SecurityContext securityContext, final NodeInterface targetNode, final Iterable<S> collection) throws FrameworkException {
 
-		final App app            = StructrApp.getInstance(securityContext);
-		final Set<S> toBeDeleted = new LinkedHashSet<>(Iterables.toList(get(securityContext, targetNode, null)));
-		final Set<S> toBeCreated = new LinkedHashSet<>();
+		final RelationshipFactory<AbstractRelationship> relationshipFactory = new RelationshipFactory<>(securityContext);
+		final NodeFactory<S> nodeFactory                                    = new NodeFactory<>(securityContext);
+		final List<AbstractRelationship> toBeDeleted                        = new LinkedList<>();
+		final Map<Long, S> toBeCreated                                      = new LinkedHashMap<>();
+		final Set<Long> existing                                            = new LinkedHashSet<>();
+		final App app                                                       = StructrApp.getInstance(securityContext);
 
 		if (collection != null) {
-			Iterables.addAll(toBeCreated, collection);
+
+			for (final S sourceNode : collection) {
+
+				if (sourceNode != null) {
+					toBeCreated.put(sourceNode.getId(), sourceNode);
+				}
+			}
 		}
 
-		// create intersection of both sets
-		final Set<S> intersection = new LinkedHashSet<>(toBeCreated);
-		intersection.retainAll(toBeDeleted);
+		// single pass over the existing relationships, nodes that are
+		// already connected need no change
+		for (final Relationship rel : getRawSource(securityContext, targetNode.getNode(), null)) {
 
-		// intersection needs no change
-		toBeCreated.removeAll(intersection);
-		toBeDeleted.removeAll(intersection);
-		
-		// remove existing relationships
-		for (S sourceNode : toBeDeleted) {
+			final long otherId = rel.getStartNode().getId();
 
-			for (AbstractRelationship rel : targetNode.getIncomingRelationships()) {
+			if (toBeCreated.remove(otherId) != null || existing.contains(otherId)) {
 
-				final String relTypeName    = rel.getRelType().name();
-				final String desiredRelType = relation.name();
-				
-				if (relTypeName.equals(desiredRelType) && rel.getSourceNode().equals(sourceNode)) {
+				existing.add(otherId);
 
-					app.delete(rel);
-				}
+			} else if (nodeFactory.instantiate(rel.getStartNode()) != null) {
+
+				// only remove relationships to nodes the caller can see
+				final AbstractRelationship relationship = relationshipFactory.instantiate(rel);
+				if (relationship != null) {
 
+					toBeDeleted.add(relationship);
+				}
 			}
 		}
-		
+
+		// remove existing relationships
+		for (final AbstractRelationship rel : toBeDeleted) {
+			app.delete(rel);
+		}
+
 		// create new relationships
-		for (S sourceNode : toBeCreated) {
+		for (final S sourceNode : toBeCreated.values()) {
 
 			relation.ensureCardinality(securityContext, sourceNode, targetNode);
-			
+
 			app.create(sourceNode, targetNode, relation.getClass(), getNotionProperties(securityContext, relation.getClass(), sourceNode.getUuid()));
 		}
 	}
 
+	/**
+	 * Connects the given node to the collection of the given target node,
+	 * reading only the relationships of the added node.
+	 *
+	 * @param securityContext
+	 * @param targetNode
+	 * @param sourceNode
+	 *
+	 * @return whether a new relationship was created
+	 * @throws FrameworkException
+	 */
+	public boolean add(final SecurityContext securityContext, final NodeInterface targetNode, final S sourceNode) throws FrameworkException {
+
+		if (contains(securityContext, targetNode, sourceNode)) {
+			return false;
+		}
+
+		relation.ensureCardinality(securityContext, sourceNode, targetNode);
+
+		StructrApp.getInstance(securityContext).create(sourceNode, targetNode, relation.getClass(), getNotionProperties(securityContext, relation.getClass(), sourceNode.getUuid()));
+
+		return true;
+	}
+
+	/**
+	 * Removes the given node from the collection of the given target node,
+	 * reading only the relationships of the removed node.
+	 *
+	 * @param securityContext
+	 * @param targetNode
+	 * @param sourceNode
+	 *
+	 * @return whether a relationship was deleted
+	 * @throws FrameworkException
+	 */
+	public boolean remove(final SecurityContext securityContext, final NodeInterface targetNode, final S sourceNode) throws FrameworkException {
+
+		final RelationshipFactory<AbstractRelationship> relationshipFactory = new RelationshipFactory<>(securityContext);
+		final App app                                                       = StructrApp.getInstance(securityContext);
+		boolean removed                                                     = false;
+
+		if (sourceNode == null) {
+			return false;
+		}
+
+		for (final Relationship rel : getRelationshipsBetween(sourceNode.getNode(), targetNode.getNode(), relation, Direction.OUTGOING)) {
+
+			final AbstractRelationship relationship = relationshipFactory.instantiate(rel);
+			if (relationship != null) {
+
+				app.delete(relationship);
+				removed = true;
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * @param securityContext
+	 * @param targetNode
+	 * @param sourceNode
+	 *
+	 * @return whether the given node is part of the collection of the given target node
+	 */
+	public boolean contains(final SecurityContext securityContext, final NodeInterface targetNode, final S sourceNode) {
+		return sourceNode != null && !getRelationshipsBetween(sourceNode.getNode(), targetNode.getNode(), relation, Direction.OUTGOING).isEmpty();
+	}
+
 	@Override
 	public Iterable<Relationship> getRawSource(final SecurityContext securityContext, final Node dbNode, final Predicate<GraphObject> predicate) {
 		return getMultiple(securityContext, dbNode, relation, Direction.INCOMING, relation.getSourceType(), predicate);
@@ -37,6 +37,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.ArrayProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
@@ -159,8 +160,13 @@ public class Security extends ManyToMany<Principal, NodeInterface> {
 
 	public void setAllowed(final String[] allowed) {
 
+		final Object previousValue = getPermissions();
+
 		dbRelationship.setProperty(Security.allowed.dbName(), allowed);
 
+		// notify the transaction, cached access decisions are outdated now
+		TransactionCommand.relationshipModified(this, Security.allowed, previousValue, allowed);
+
 	}
 	
 	public String[] getPermissions() {
@@ -113,7 +113,9 @@ public class BulkChangeNodePropertyKeyCommand extends NodeServiceCommand impleme
 
 							}
 
-							node.updateInIndex();
+							// old key must be removed from all indices
+							node.removeFromIndex();
+							node.addToIndex();
 
 						}
 
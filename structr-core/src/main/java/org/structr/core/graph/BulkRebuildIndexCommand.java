@@ -19,19 +19,25 @@
 package org.structr.core.graph;
 
 import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.tooling.GlobalGraphOperations;
 import org.structr.common.SecurityContext;
 import org.structr.common.StructrAndSpatialPredicate;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.Result;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
@@ -42,112 +48,160 @@ import org.structr.schema.SchemaHelper;
  * Rebuild index for nodes or relationships of given type.
  *
  * Use 'type' argument for node type, and 'relType' for relationship type.
+ * The ids of the objects to index are streamed from the database and
+ * processed in batches of 1000 on several threads, use the 'threads'
+ * argument to set the number of threads, and 'timeout' to set the number
+ * of seconds to wait for them (default 3600).
+ *
+ * When called inside an open transaction, e.g. as a post-process of a
+ * schema import, the batches are processed on the current thread in that
+ * transaction, because worker threads could neither see its uncommitted
+ * data nor acquire the locks it holds.
  *
  * @author Axel Morgner
  */
 public class BulkRebuildIndexCommand extends NodeServiceCommand implements MaintenanceCommand, TransactionPostProcess {
 
-	private static final Logger logger = Logger.getLogger(BulkRebuildIndexCommand.class.getName());
+	private static final Logger logger   = Logger.getLogger(BulkRebuildIndexCommand.class.getName());
+	private static final int BATCH_SIZE  = 1000;
 
 	//~--- methods --------------------------------------------------------
 	@Override
 	public void execute(Map<String, Object> attributes) throws FrameworkException {
+		rebuildIndex(attributes, TransactionCommand.inTransaction());
+	}
+
+	// ----- interface TransactionPostProcess -----
+	@Override
+	public boolean execute(SecurityContext securityContext, ErrorBuffer errorBuffer) throws FrameworkException {
+		
+		rebuildIndex(Collections.EMPTY_MAP, true);
+		
+		return true;
+	}
+
+	// ----- private methods -----
+	private void rebuildIndex(final Map<String, Object> attributes, final boolean inline) throws FrameworkException {
 
 		final String mode                      = (String) attributes.get("mode");
 		final String entityType                = (String) attributes.get("type");
 		final String relType                   = (String) attributes.get("relType");
+		final Object threadsSource             = attributes.get("threads");
+		final Object timeoutSource             = attributes.get("timeout");
 		final GraphDatabaseService graphDb     = (GraphDatabaseService) arguments.get("graphDb");
-		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
-		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
-		final RelationshipFactory relFactory   = new RelationshipFactory(superUserContext);
+		final StructrAndSpatialPredicate structrPredicate = new StructrAndSpatialPredicate(true, false, false);
+		int threads                            = Runtime.getRuntime().availableProcessors();
+		long timeout                           = 3600;
+
+		if (threadsSource != null) {
+
+			try {
+				threads = Math.max(1, Integer.parseInt(threadsSource.toString()));
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to parse value for number of threads: {0}", t.getMessage());
+			}
+		}
+
+		if (timeoutSource != null) {
+
+			try {
+				timeout = Math.max(1, Long.parseLong(timeoutSource.toString()));
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to parse value for timeout: {0}", t.getMessage());
+			}
+		}
 
 		Class type = null;
 		if (entityType != null) {
 
 			type = SchemaHelper.getEntityClassForRawType(entityType);
 		}
-		// final Result<AbstractNode> result = StructrApp.getInstance(securityContext).command(SearchNodeCommand.class).execute(true, false, Search.andExactType(type.getSimpleName()));
 
 		if (mode == null || "nodesOnly".equals(mode)) {
-			
-			final List<AbstractNode> nodes = new LinkedList<>();
-
-			// instantiate all nodes in a single list
-			try (final Tx tx = StructrApp.getInstance().tx()) {
-				
-				final Result<AbstractNode> result = nodeFactory.instantiateAll(Iterables.filter(new StructrAndSpatialPredicate(true, false, false), GlobalGraphOperations.at(graphDb).getAllNodes()));
-				for (AbstractNode node : result.getResults()) {
 
-					if (type == null || node.getClass().equals(type)) {
-
-						nodes.add(node);
-					}
+			final String typeName = type != null ? type.getSimpleName() : null;
 
-				}
-			}
-			
 			if (type == null) {
 
 				logger.log(Level.INFO, "Node type not set or no entity class found. Starting (re-)indexing all nodes");
 
 			} else {
 
-				logger.log(Level.INFO, "Starting (re-)indexing all nodes of type {0}", new Object[]{type.getSimpleName()});
+				logger.log(Level.INFO, "Starting (re-)indexing all nodes of type {0}", new Object[]{typeName});
 			}
 
-			long count = bulkGraphOperation(securityContext, nodes, 1000, "RebuildNodeIndex", new BulkGraphOperation<AbstractNode>() {
+			long count = parallelBulkOperation("RebuildNodeIndex", inline, threads, timeout, new IdSource() {
 
 				@Override
-				public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
-
-					try {
-						// Set type to update labels
-						final String type = node.getProperty(NodeInterface.type);
-						node.setProperty(NodeInterface.type, null);
-						node.setProperty(NodeInterface.type, type);
-					} catch (FrameworkException ex) {
-						ex.printStackTrace();
-					}
-					node.updateInIndex();
+				public void collect(final IdCollector collector) {
 
-				}
+					final GlobalGraphOperations ggop = GlobalGraphOperations.at(graphDb);
+					final String typePropertyName    = NodeInterface.type.dbName();
 
-				@Override
-				public void handleThrowable(SecurityContext securityContext, Throwable t, AbstractNode node) {
+					// scan only the nodes with the label of the given type
+					final Iterable<Node> nodes = typeName != null ? ggop.getAllNodesWithLabel(DynamicLabel.label(typeName)) : ggop.getAllNodes();
+
+					for (final Node node : Iterables.filter(structrPredicate, nodes)) {
 
-					logger.log(Level.WARNING, "Unable to index node {0}: {1}", new Object[]{node, t.getMessage()});
+						if (typeName == null || typeName.equals(node.getProperty(typePropertyName, null))) {
 
+							collector.add(node.getId());
+						}
+					}
 				}
 
+			}, new IdOperation() {
+
 				@Override
-				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
+				public int handleBatch(final long[] ids, final int count) {
 
-					logger.log(Level.WARNING, "Unable to index node: {0}", t.getMessage());
+					// use a new context for each batch, the factory caches all nodes in it
+					final NodeFactory<AbstractNode> nodeFactory = new NodeFactory<>(SecurityContext.getSuperUserInstance());
+					int indexed                                 = 0;
 
-				}
+					for (int i=0; i<count; i++) {
 
-			});
+						AbstractNode node = null;
 
-			logger.log(Level.INFO, "Done with (re-)indexing {0} nodes", count);
-		}
+						try {
 
-		if (mode == null || "relsOnly".equals(mode)) {
+							node = nodeFactory.instantiate(graphDb.getNodeById(ids[i]));
+
+							// Set type to update labels
+							final String type = node.getProperty(NodeInterface.type);
+							node.setProperty(NodeInterface.type, null);
+							node.setProperty(NodeInterface.type, type);
 
-			final List<AbstractRelationship> rels = new LinkedList<>();
-			long count                            = 0;
+							// rebuild from scratch to remove stale entries
+							node.removeFromIndex();
+							node.addToIndex();
 
-			// instantiate all relationships in a single list
-			try (final Tx tx = StructrApp.getInstance().tx()) {
-			
-				final List<AbstractRelationship> unfilteredRels = relFactory.instantiate(Iterables.filter(new StructrAndSpatialPredicate(true, false, false), GlobalGraphOperations.at(graphDb).getAllRelationships()));
-				for (AbstractRelationship rel : unfilteredRels) {
+							indexed++;
 
-					if (relType == null || rel.getType().equals(relType)) {
+						} catch (Throwable t) {
 
-						rels.add(rel);
+							logger.log(Level.WARNING, "Unable to index node {0}: {1}", new Object[]{node, t.getMessage()});
+						}
 					}
+
+					return indexed;
 				}
-			}
+
+				@Override
+				public void handleTransactionFailure(final Throwable t) {
+
+					logger.log(Level.WARNING, "Unable to index node: {0}", t.getMessage());
+				}
+			});
+
+			logger.log(Level.INFO, "Done with (re-)indexing {0} nodes", count);
+		}
+
+		if (mode == null || "relsOnly".equals(mode)) {
 
 			if (relType == null) {
 
@@ -159,29 +213,56 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 			}
 
-			count = bulkGraphOperation(securityContext, rels, 1000, "RebuildRelIndex", new BulkGraphOperation<AbstractRelationship>() {
+			long count = parallelBulkOperation("RebuildRelIndex", inline, threads, timeout, new IdSource() {
 
 				@Override
-				public void handleGraphObject(SecurityContext securityContext, AbstractRelationship rel) {
+				public void collect(final IdCollector collector) {
+
+					for (final Relationship rel : Iterables.filter(structrPredicate, GlobalGraphOperations.at(graphDb).getAllRelationships())) {
 
-					rel.updateInIndex();
+						if (relType == null || relType.equals(rel.getType().name())) {
 
+							collector.add(rel.getId());
+						}
+					}
 				}
 
+			}, new IdOperation() {
+
 				@Override
-				public void handleThrowable(SecurityContext securityContext, Throwable t, AbstractRelationship rel) {
+				public int handleBatch(final long[] ids, final int count) {
+
+					final RelationshipFactory<AbstractRelationship> relFactory = new RelationshipFactory<>(SecurityContext.getSuperUserInstance());
+					int indexed                                                = 0;
+
+					for (int i=0; i<count; i++) {
 
-					logger.log(Level.WARNING, "Unable to index relationship {0}: {1}", new Object[]{rel, t.getMessage()});
+						AbstractRelationship rel = null;
 
+						try {
+
+							rel = relFactory.instantiate(graphDb.getRelationshipById(ids[i]));
+
+							// rebuild from scratch to remove stale entries
+							rel.removeFromIndex();
+							rel.addToIndex();
+
+							indexed++;
+
+						} catch (Throwable t) {
+
+							logger.log(Level.WARNING, "Unable to index relationship {0}: {1}", new Object[]{rel, t.getMessage()});
+						}
+					}
+
+					return indexed;
 				}
 
 				@Override
-				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
+				public void handleTransactionFailure(final Throwable t) {
 
 					logger.log(Level.WARNING, "Unable to index relationship: {0}", t.getMessage());
-
 				}
-
 			});
 
 			logger.log(Level.INFO, "Done with (re-)indexing {0} relationships", count);
@@ -189,12 +270,150 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 	}
 
-	// ----- interface TransactionPostProcess -----
-	@Override
-	public boolean execute(SecurityContext securityContext, ErrorBuffer errorBuffer) throws FrameworkException {
-		
-		execute(Collections.EMPTY_MAP);
-		
-		return true;
+	/**
+	 * Collects the ids from the given source in a read transaction on the
+	 * current thread, and executes the given operation on batches of ids
+	 * in separate transactions on the given number of threads. The number
+	 * of batches waiting to be processed is limited, so the ids are never
+	 * held in memory all at once. Inline, the batches are executed on the
+	 * current thread and in the current transaction instead.
+	 */
+	private long parallelBulkOperation(final String description, final boolean inline, final int threads, final long timeout, final IdSource source, final IdOperation operation) throws FrameworkException {
+
+		final ExecutorService executor = inline ? null : Executors.newFixedThreadPool(threads);
+		final Semaphore pendingBatches = new Semaphore(2 * threads);
+		final AtomicLong objectCount   = new AtomicLong();
+		final AtomicLong lastProgress  = new AtomicLong(System.currentTimeMillis());
+		final long t0                  = System.currentTimeMillis();
+		final App app                  = StructrApp.getInstance();
+
+		final IdCollector collector = new IdCollector() {
+
+			private long[] ids = new long[BATCH_SIZE];
+			private int count  = 0;
+
+			@Override
+			public void add(final long id) {
+
+				ids[count++] = id;
+
+				if (count == BATCH_SIZE) {
+					flush();
+				}
+			}
+
+			@Override
+			public void flush() {
+
+				if (count == 0) {
+					return;
+				}
+
+				final long[] batch     = ids;
+				final int batchCount   = count;
+
+				ids   = new long[BATCH_SIZE];
+				count = 0;
+
+				final Runnable task = new Runnable() {
+
+					@Override
+					public void run() {
+
+						int indexed = 0;
+
+						try (final Tx tx = app.tx()) {
+
+							indexed = operation.handleBatch(batch, batchCount);
+							tx.success();
+
+						} catch (Throwable t) {
+
+							// bulk transaction failed, nothing of this batch was indexed
+							operation.handleTransactionFailure(t);
+							indexed = 0;
+
+						} finally {
+
+							pendingBatches.release();
+						}
+
+						final long processed = objectCount.addAndGet(indexed);
+						final long now       = System.currentTimeMillis();
+						final long last      = lastProgress.get();
+
+						if (now - last > 5000 && lastProgress.compareAndSet(last, now)) {
+
+							final double seconds = (now - t0) / 1000.0;
+
+							logger.log(Level.INFO, "{0}: {1} objects indexed ({2} objects/s)", new Object[] { description, processed, Math.round(processed / seconds) } );
+						}
+					}
+				};
+
+				pendingBatches.acquireUninterruptibly();
+
+				if (inline) {
+
+					task.run();
+
+				} else {
+
+					executor.execute(task);
+				}
+			}
+		};
+
+		try {
+
+			// ids are read in a single transaction
+			try (final Tx tx = app.tx()) {
+
+				source.collect(collector);
+				collector.flush();
+			}
+
+		} finally {
+
+			if (executor != null) {
+
+				executor.shutdown();
+
+				try {
+					if (!executor.awaitTermination(timeout, TimeUnit.SECONDS)) {
+
+						logger.log(Level.WARNING, "{0} did not finish within {1} seconds, remaining batches continue in the background", new Object[] { description, timeout });
+					}
+
+				} catch (InterruptedException iex) {
+
+					logger.log(Level.WARNING, "Interrupted while waiting for {0} to finish", description);
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		return objectCount.get();
+	}
+
+	// ----- nested classes -----
+	private interface IdSource {
+
+		public void collect(final IdCollector collector);
+	}
+
+	private interface IdCollector {
+
+		public void add(final long id);
+		public void flush();
+	}
+
+	private interface IdOperation {
+
+		/**
+		 * @return the number of objects that were handled successfully
+		 */
+		public int handleBatch(final long[] ids, final int count);
+		public void handleTransactionFailure(final Throwable t);
 	}
 }
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache that maps UUIDs of nodes to their database
+ * id, so that hot entities can be resolved without an index lookup.
+ *
+ * Entity instances themselves are not shared because they are bound to the
+ * security context of the request that created them. Entries are evicted in
+ * insertion order once the maximum size is exceeded, and invalidated by the
+ * {@link ModificationQueue} when a node is deleted or its UUID is changed.
+ * Callers must verify that the node behind a cached id still carries the
+ * requested UUID, since database ids are reused after deletion.
+ *
+ * @author Christian Morgner
+ */
+public class EntityCache {
+
+	private final Map<String, Long> entries    = new ConcurrentHashMap<>();
+	private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queueSize      = new AtomicInteger();
+	private final AtomicLong evictions         = new AtomicLong();
+	private final AtomicLong misses            = new AtomicLong();
+	private final AtomicLong hits              = new AtomicLong();
+	private int maxSize                        = 0;
+
+	public EntityCache(final int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public Long get(final String uuid) {
+
+		if (uuid != null) {
+
+			final Long nodeId = entries.get(uuid);
+			if (nodeId != null) {
+
+				hits.incrementAndGet();
+				return nodeId;
+			}
+		}
+
+		misses.incrementAndGet();
+
+		return null;
+	}
+
+	public void put(final String uuid, final long nodeId) {
+
+		if (uuid != null) {
+
+			if (entries.put(uuid, nodeId) == null) {
+
+				insertionOrder.add(uuid);
+				queueSize.incrementAndGet();
+
+				// evict oldest entries
+				while (entries.size() > maxSize) {
+
+					final String oldest = insertionOrder.poll();
+					if (oldest == null) {
+						break;
+					}
+
+					queueSize.decrementAndGet();
+
+					if (entries.remove(oldest) != null) {
+						evictions.incrementAndGet();
+					}
+				}
+
+				// removed entries leave stale keys in the insertion
+				// queue, compact it when it grows out of proportion
+				if (queueSize.get() > 2 * maxSize) {
+					compact();
+				}
+			}
+		}
+	}
+
+	public void remove(final String uuid) {
+
+		if (uuid != null) {
+			entries.remove(uuid);
+		}
+	}
+
+	public void clear() {
+
+		entries.clear();
+		insertionOrder.clear();
+		queueSize.set(0);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public double getHitRatio() {
+
+		final long h     = hits.get();
+		final long total = h + misses.get();
+
+		return total > 0 ? (double)h / (double)total : 0.0;
+	}
+
+	// ----- private methods -----
+	private synchronized void compact() {
+
+		if (queueSize.get() > 2 * maxSize) {
+
+			insertionOrder.retainAll(entries.keySet());
+			queueSize.set(insertionOrder.size());
+		}
+	}
+}
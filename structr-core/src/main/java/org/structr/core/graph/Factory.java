@@ -18,6 +18,8 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
@@ -79,6 +81,20 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		factoryProfile = new FactoryProfile(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page, offsetId);
 	}
 	
+	/**
+	 * Enables or disables approximate counting. In approximate mode, the
+	 * result count is the raw number of index hits, and hits before the
+	 * requested page are skipped without being instantiated and security
+	 * checked. Each page covers exactly pageSize raw hits, so pages never
+	 * overlap, but they may contain less elements than requested if the
+	 * current user cannot see all of the hits.
+	 *
+	 * @param approximateCount
+	 */
+	public void setApproximateCount(final boolean approximateCount) {
+		factoryProfile.setApproximateCount(approximateCount);
+	}
+
 	public abstract T instantiate(final S obj) throws FrameworkException;
 	
 	public abstract T instantiateWithType(final S obj, final Class<T> type, boolean isCreation) throws FrameworkException;
@@ -184,11 +200,11 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	// <editor-fold defaultstate="collapsed" desc="private methods">
 	protected List<S> read(final Iterable<S> it) {
 
-		List<S> nodes = new LinkedList();
+		List<S> nodes = new ArrayList<>();
 
-		while (it.iterator().hasNext()) {
+		for (final S node : it) {
 
-			nodes.add(it.iterator().next());
+			nodes.add(node);
 		}
 
 		return nodes;
@@ -309,7 +325,15 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		final int page     = factoryProfile.getPage();
 		int fromIndex;
 
-		if (page < 0) {
+		if (page < 0 && factoryProfile.approximateCount()) {
+
+			int size = input.size();
+
+			fromIndex = Math.max(0, size + (page * pageSize));
+
+			return pageApproximately(input, size, fromIndex, Math.min(size, fromIndex + pageSize) - fromIndex);
+
+		} else if (page < 0) {
 
 			List<S> rawNodes = read(input);
 			int size         = rawNodes.size();
@@ -330,11 +354,23 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		} else {
 
+			if (pageSize == Integer.MAX_VALUE) {
+
+				// No paging requested, so only the raw entities are read here. Instantiation
+				// and security checks are deferred until the result is actually consumed,
+				// which is after the index hits have been closed.
+				return new Result(new LazyInstantiationIterable<>(read(input), this), true, false);
+			}
+
 			// FIXME: IndexHits#size() may be inaccurate!
 			int size = input.size();
 
-			fromIndex = pageSize == Integer.MAX_VALUE ? 0 : (page - 1) * pageSize;
-			//fromIndex = (page - 1) * pageSize;
+			fromIndex = (page - 1) * pageSize;
+
+			if (factoryProfile.approximateCount()) {
+
+				return pageApproximately(input, size, fromIndex, pageSize);
+			}
 
 			// The overall count may be inaccurate
 			return page(input, size, fromIndex, pageSize);
@@ -342,6 +378,36 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	protected Result pageApproximately(final IndexHits<S> input, final int overallResultCount, final int offset, final int pageSize) throws FrameworkException {
+
+		final Iterator<S> iterator = input.iterator();
+		final List<T> nodes        = new ArrayList<>();
+		int position               = 0;
+
+		// skip raw index hits up to the requested offset
+		while (position < offset && iterator.hasNext()) {
+
+			iterator.next();
+			position++;
+		}
+
+		// a page covers exactly pageSize raw hits, so consecutive pages do
+		// not overlap, hits that are not visible are left out of the page
+		final int end = offset + pageSize;
+		while (position < end && iterator.hasNext()) {
+
+			T n = instantiate(iterator.next());
+			if (n != null) {
+
+				nodes.add(n);
+			}
+
+			position++;
+		}
+
+		return new Result(nodes, overallResultCount, true, false);
+	}
+
 	protected Result page(final IndexHits<S> input, final int overallResultCount, final int offset, final int pageSize) throws FrameworkException {
 
 		final List<T> nodes = new LinkedList<>();
@@ -409,6 +475,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		private boolean includeDeletedAndHidden = true;
 		private String offsetId                 = null;
 		private boolean publicOnly              = false;
+		private boolean approximateCount        = false;
 		private int pageSize                    = DEFAULT_PAGE_SIZE;
 		private int page                        = DEFAULT_PAGE;
 		private SecurityContext securityContext = null;
@@ -461,6 +528,15 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		}
 
+		/**
+		 * @return the approximateCount
+		 */
+		public boolean approximateCount() {
+
+			return approximateCount;
+
+		}
+
 		//~--- get methods --------------------------------------------
 
 		/**
@@ -528,6 +604,15 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		}
 
+		/**
+		 * @param approximateCount the approximateCount to set
+		 */
+		public void setApproximateCount(boolean approximateCount) {
+
+			this.approximateCount = approximateCount;
+
+		}
+
 		/**
 		 * @param pageSize the pageSize to set
 		 */
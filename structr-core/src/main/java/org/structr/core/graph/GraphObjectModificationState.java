@@ -139,15 +139,14 @@ public class GraphObjectModificationState implements ModificationEvent {
 		
 		status |= STATE_MODIFIED | STATE_PROPAGATING_MODIFICATION;
 
-		// store previous value
+		// store previous value and record every modified key,
+		// not only the first one
 		if (key != null) {
 			removedProperties.put(key, previousValue);
+			modifiedProperties.put(key, newValue);
 		}
 		
 		if (status != statusBefore) {
-			if (key != null) {
-				modifiedProperties.put(key, newValue);
-			}
 			modified = true;
 		}
 	}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.NotFoundException;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+
+/**
+ * An Iterable that instantiates the elements of a list of raw database
+ * entities on demand, using the given {@link Factory}. Elements that
+ * cannot be instantiated in the factory's security context are skipped.
+ *
+ * In contrast to {@link org.structr.core.IterableAdapter}, this class can
+ * be iterated more than once, each iteration instantiates the elements
+ * again.
+ *
+ * @author Christian Morgner
+ */
+public class LazyInstantiationIterable<S, T extends GraphObject> implements Iterable<T> {
+
+	private static final Logger logger = Logger.getLogger(LazyInstantiationIterable.class.getName());
+
+	private Iterable<S> source     = null;
+	private Factory<S, T> factory  = null;
+
+	public LazyInstantiationIterable(final Iterable<S> source, final Factory<S, T> factory) {
+
+		this.source  = source;
+		this.factory = factory;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+
+		final Iterator<S> sourceIterator = source.iterator();
+
+		return new Iterator<T>() {
+
+			private T nextElement = null;
+
+			@Override
+			public boolean hasNext() {
+
+				while (nextElement == null && sourceIterator.hasNext()) {
+
+					try {
+						nextElement = factory.instantiate(sourceIterator.next());
+
+					} catch (FrameworkException fex) {
+
+						logger.log(Level.WARNING, "Unable to instantiate element", fex);
+
+					} catch (NotFoundException nfex) {
+
+						// element was deleted in the meantime, ignore
+					}
+				}
+
+				return nextElement != null;
+			}
+
+			@Override
+			public T next() {
+
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final T element = nextElement;
+				nextElement     = null;
+
+				return element;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("LazyInstantiationIterable does not support removal of elements");
+			}
+		};
+	}
+}
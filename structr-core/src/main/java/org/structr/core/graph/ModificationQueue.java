@@ -18,6 +18,7 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -27,6 +28,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.graphdb.RelationshipType;
@@ -34,6 +36,9 @@ import org.structr.common.RelType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Metrics;
+import org.structr.core.entity.Principal;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -49,12 +54,20 @@ public class ModificationQueue {
 	private Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private Set<String> invalidatedUuids                                              = new LinkedHashSet<>();
+	private Set<GraphObjectModificationState> dirtyStates                             = new LinkedHashSet<>();
+	private long callbackTime                                                         = 0L;
+	private long postProcessingTime                                                   = 0L;
+	private long validationTime                                                       = 0L;
+	private int callbackRounds                                                        = 0;
+	private Set<String> securityModifiedNodes                                         = new LinkedHashSet<>();
+	private Set<String> securityModifiedPrincipals                                    = new LinkedHashSet<>();
 
 	/**
-	 * Returns a set containing the different entity types of
-	 * nodes modified in this queue.
+	 * Returns a set containing the names of the locks that must be
+	 * held while validating the modifications in this queue.
 	 *
-	 * @return the types
+	 * @return the synchronization keys
 	 */
 	public Set<String> getSynchronizationKeys() {
 		return synchronizationKeys;
@@ -62,30 +75,31 @@ public class ModificationQueue {
 
 	public boolean doInnerCallbacks(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
-		long t0                  = System.currentTimeMillis();
-		boolean hasModifications = true;
+		long t0       = System.currentTimeMillis();
 		boolean valid = true;
 
-		// collect all modified nodes
-		while (hasModifications) {
+		callbackRounds = 0;
+
+		// visit only the states that were modified in the previous
+		// round, callbacks can modify other objects and add new states
+		while (!dirtyStates.isEmpty()) {
 
-			hasModifications = false;
+			final List<GraphObjectModificationState> round = new ArrayList<>(dirtyStates);
+			dirtyStates.clear();
+			callbackRounds++;
 
-			for (GraphObjectModificationState state : modifications.values()) {
+			for (GraphObjectModificationState state : round) {
 
 				if (state.wasModified()) {
 
 					// do callback according to entry state
 					valid &= state.doInnerCallback(this, securityContext, errorBuffer);
-					hasModifications = true;
 				}
 			}
 		}
 
-		long t = System.currentTimeMillis() - t0;
-		if (t > 1000) {
-			logger.log(Level.INFO, "{0} ms", t);
-		}
+		callbackTime = System.currentTimeMillis() - t0;
+		Metrics.timer("tx.callbacks").update(callbackTime, TimeUnit.MILLISECONDS);
 
 		return valid;
 	}
@@ -102,9 +116,17 @@ public class ModificationQueue {
 			valid &= entry.getValue().doValidationAndIndexing(this, securityContext, errorBuffer, doValidation);
 		}
 
-		long t = System.currentTimeMillis() - t0;
-		if (t > 1000) {
-			logger.log(Level.INFO, "{0} ms", t);
+		validationTime = System.currentTimeMillis() - t0;
+		Metrics.timer("tx.validation").update(validationTime, TimeUnit.MILLISECONDS);
+
+		final long total = callbackTime + postProcessingTime + validationTime;
+		final Level level = total > 1000 ? Level.INFO : Level.FINE;
+
+		if (logger.isLoggable(level)) {
+
+			logger.log(level, "Commit of {0} modifications took {1} ms: callbacks {2} ms ({3} rounds), post-processing {4} ms, validation and indexing {5} ms",
+				new Object[] { modifications.size(), total, callbackTime, callbackRounds, postProcessingTime, validationTime }
+			);
 		}
 
 		return valid;
@@ -112,6 +134,7 @@ public class ModificationQueue {
 
 	public boolean doPostProcessing(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
+		long t0       = System.currentTimeMillis();
 		boolean valid = true;
 
 		for (final TransactionPostProcess process : postProcesses.values()) {
@@ -119,13 +142,48 @@ public class ModificationQueue {
 			valid &= process.execute(securityContext, errorBuffer);
 		}
 
+		postProcessingTime = System.currentTimeMillis() - t0;
+		Metrics.timer("tx.postProcessing").update(postProcessingTime, TimeUnit.MILLISECONDS);
+
 		return valid;
 	}
 
+	public long getCallbackTime() {
+		return callbackTime;
+	}
+
+	public int getCallbackRounds() {
+		return callbackRounds;
+	}
+
+	public long getPostProcessingTime() {
+		return postProcessingTime;
+	}
+
+	public long getValidationTime() {
+		return validationTime;
+	}
+
 	public void doOuterCallbacks(SecurityContext securityContext) {
 
 		long t0 = System.currentTimeMillis();
 
+		// access decisions cached by other threads before this transaction
+		// was committed may be outdated now
+		invalidateAccessCaches();
+
+		// other threads may have re-populated the entity cache with
+		// stale entries before this transaction was committed
+		if (!invalidatedUuids.isEmpty()) {
+
+			final EntityCache entityCache = NodeService.getEntityCache();
+			for (final String uuid : invalidatedUuids) {
+				entityCache.remove(uuid);
+			}
+
+			invalidatedUuids.clear();
+		}
+
 		// copy modifications, do after transaction callbacks
 		for (GraphObjectModificationState state : modifications.values()) {
 
@@ -136,15 +194,29 @@ public class ModificationQueue {
 		}
 
 		long t = System.currentTimeMillis() - t0;
+		Metrics.timer("tx.outerCallbacks").update(t, TimeUnit.MILLISECONDS);
+
 		if (t > 1000) {
-			logger.log(Level.INFO, "{0} ms", t);
+			logger.log(Level.INFO, "Outer callbacks of {0} modifications took {1} ms", new Object[] { modifications.size(), t });
 		}
 	}
 
+	/**
+	 * Invalidates the access decisions that were cached while this queue's
+	 * transaction was running, if the transaction modified permissions and
+	 * has been rolled back.
+	 */
+	public void afterRollback() {
+
+		invalidateAccessCaches();
+	}
+
 	public void clear() {
 
 		// clear collections afterwards
 		alreadyPropagated.clear();
+		invalidatedUuids.clear();
+		dirtyStates.clear();
 		modifications.clear();
 	}
 
@@ -168,11 +240,17 @@ public class ModificationQueue {
 	}
 
 	public void modifyOwner(NodeInterface node) {
+
 		getState(node).modifyOwner();
+
+		invalidateAccessCachesForNode(node);
 	}
 
 	public void modifySecurity(NodeInterface node) {
+
 		getState(node).modifySecurity();
+
+		invalidateAccessCachesForNode(node);
 	}
 
 	public void modifyLocation(NodeInterface node) {
@@ -182,16 +260,27 @@ public class ModificationQueue {
 	public void modify(NodeInterface node, PropertyKey key, Object previousValue, Object newValue) {
 		getState(node).modify(key, previousValue, newValue);
 
-		if (key != null&& key.requiresSynchronization()) {
-			synchronizationKeys.add(node.getClass().getSimpleName().concat(".").concat(key.getSynchronizationKey()));
+		if (GraphObject.id.equals(key)) {
+
+			invalidateEntityCache(previousValue);
+			invalidateEntityCache(newValue);
+		}
+
+		if (key != null && newValue != null && key.requiresSynchronization()) {
+			synchronizationKeys.add(getSynchronizationKey(key, newValue));
 		}
 	}
 
 	public void modify(RelationshipInterface relationship, PropertyKey key, Object previousValue, Object newValue) {
 		getState(relationship).modify(key, previousValue, newValue);
 
-		if (key != null && key.requiresSynchronization()) {
-			synchronizationKeys.add(relationship.getClass().getSimpleName().concat(".").concat(key.getSynchronizationKey()));
+		// changed permissions affect the access rights of the end nodes
+		if (RelType.SECURITY.equals(relationship.getRelType())) {
+			modifyEndNodes(relationship.getSourceNode(), relationship.getTargetNode(), relationship.getRelType());
+		}
+
+		if (key != null && newValue != null && key.requiresSynchronization()) {
+			synchronizationKeys.add(getSynchronizationKey(key, newValue));
 		}
 	}
 
@@ -212,6 +301,8 @@ public class ModificationQueue {
 
 	public void delete(NodeInterface node) {
 		getState(node).delete(false);
+
+		invalidateEntityCache(node.getUuid());
 	}
 
 	public void delete(RelationshipInterface relationship, boolean passive) {
@@ -241,6 +332,58 @@ public class ModificationQueue {
 	}
 
 	// ----- private methods -----
+	/**
+	 * Returns the name of the commit lock for the given value. Locks
+	 * are value-level so that concurrent writes of different values can
+	 * be validated in parallel. The entity type is not part of the name
+	 * because uniqueness validators may span several types, and values
+	 * are compared case-insensitively to cover lowercase uniqueness.
+	 */
+	private String getSynchronizationKey(final PropertyKey key, final Object value) {
+		return key.getSynchronizationKey().concat("=").concat(value.toString().toLowerCase());
+	}
+
+	private void invalidateEntityCache(final Object uuid) {
+
+		if (uuid != null) {
+
+			final String value = uuid.toString();
+
+			NodeService.getEntityCache().remove(value);
+			invalidatedUuids.add(value);
+		}
+	}
+
+	private void invalidateAccessCachesForNode(final NodeInterface node) {
+
+		final String uuid = node.getUuid();
+
+		SecurityContext.invalidateAccessCachesForNode(uuid);
+		securityModifiedNodes.add(uuid);
+	}
+
+	private void invalidateAccessCachesForPrincipal(final NodeInterface principal) {
+
+		final String uuid = principal.getUuid();
+
+		SecurityContext.invalidateAccessCachesForPrincipal(uuid);
+		securityModifiedPrincipals.add(uuid);
+	}
+
+	private void invalidateAccessCaches() {
+
+		for (final String uuid : securityModifiedNodes) {
+			SecurityContext.invalidateAccessCachesForNode(uuid);
+		}
+
+		for (final String uuid : securityModifiedPrincipals) {
+			SecurityContext.invalidateAccessCachesForPrincipal(uuid);
+		}
+
+		securityModifiedNodes.clear();
+		securityModifiedPrincipals.clear();
+	}
+
 	private void modifyEndNodes(NodeInterface startNode, NodeInterface endNode, RelationshipType relType) {
 
 		// only modify if nodes are accessible
@@ -267,6 +410,13 @@ public class ModificationQueue {
 				return;
 			}
 
+			// group memberships affect the access rights of all members
+			if (startNode instanceof Principal && endNode instanceof Principal) {
+
+				invalidateAccessCachesForPrincipal(startNode);
+				invalidateAccessCachesForPrincipal(endNode);
+			}
+
 			modify(startNode, null, null, null);
 			modify(endNode, null, null, null);
 		}
@@ -287,6 +437,10 @@ public class ModificationQueue {
 			modifications.put(hash, state);
 		}
 
+		if (state != null) {
+			dirtyStates.add(state);
+		}
+
 		return state;
 	}
 
@@ -301,6 +455,8 @@ public class ModificationQueue {
 			modifications.put(hash, state);
 		}
 
+		dirtyStates.add(state);
+
 		return state;
 	}
 
@@ -18,68 +18,196 @@
  */
 package org.structr.core.graph;
 
-import java.util.LinkedHashSet;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * A set of named locks that are acquired and released together. Locks are
+ * always acquired in the natural order of their names, so two threads that
+ * lock overlapping sets of keys can not deadlock. Locks are created on
+ * demand and discarded when no thread uses them any more, so the set of
+ * keys can be as fine-grained as a single property value.
+ *
  * @author Christian Morgner
  */
 public class MultiSemaphore {
 
 	private static final Logger logger = Logger.getLogger(MultiSemaphore.class.getName());
 	
-	private Map<String, Semaphore> semaphoreMap = new ConcurrentHashMap<String, Semaphore>();
+	private final ConcurrentMap<String, KeyLock> semaphoreMap = new ConcurrentHashMap<>();
+	private final AtomicLong acquisitions                     = new AtomicLong();
+	private final AtomicLong contentions                      = new AtomicLong();
+	private final AtomicLong totalWaitNanos                   = new AtomicLong();
+	private final AtomicLong maxWaitNanos                     = new AtomicLong();
 	
-	public void acquire(final Set<String> types) throws InterruptedException {
+	public void acquire(final Set<String> keys) throws InterruptedException {
 	
-		if (types != null && !types.isEmpty()) {
+		if (keys != null && !keys.isEmpty()) {
+			
+			final List<KeyLock> acquired = new ArrayList<>();
 			
-//			logger.log(Level.INFO, "Acquiring permit(s) for {0}", types);
+			try {
 
-			for (Semaphore semaphore : getSemaphores(types)) {
-				semaphore.acquire();
+				// sorted acquisition prevents deadlocks
+				for (final String key : new TreeSet<>(keys)) {
+
+					final KeyLock lock = getLock(key);
+					
+					try {
+						
+						acquire(lock);
+						
+					} catch (InterruptedException iex) {
+						
+						lock.unuse();
+						throw iex;
+					}
+					
+					acquired.add(lock);
+				}
+				
+			} catch (InterruptedException iex) {
+				
+				for (final KeyLock lock : acquired) {
+					release(lock);
+				}
+				
+				throw iex;
 			}
 		}
 	}
 	
-	public void release(final Set<String> types) {
+	public void release(final Set<String> keys) {
 
-		if (types != null && !types.isEmpty()) {
+		if (keys != null && !keys.isEmpty()) {
 			
-//			logger.log(Level.INFO, "Releasing permit(s) for {0}", types);
+			for (final String key : new TreeSet<>(keys)) {
 
-			for (Semaphore semaphore : getSemaphores(types)) {
-				semaphore.release();
+				final KeyLock lock = semaphoreMap.get(key);
+				if (lock != null) {
+					
+					release(lock);
+					
+				} else {
+					
+					logger.log(Level.WARNING, "Tried to release lock {0} which is not held", key);
+				}
 			}
 		}
 	}
 	
-	private Set<Semaphore> getSemaphores(final Set<String> types) {
+	public int getLockCount() {
+		return semaphoreMap.size();
+	}
+	
+	public long getAcquisitionCount() {
+		return acquisitions.get();
+	}
+	
+	public long getContentionCount() {
+		return contentions.get();
+	}
+	
+	public long getTotalWaitTime(final TimeUnit unit) {
+		return unit.convert(totalWaitNanos.get(), TimeUnit.NANOSECONDS);
+	}
+	
+	public long getMaxWaitTime(final TimeUnit unit) {
+		return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+	}
+	
+	// ----- private methods -----
+	private void acquire(final KeyLock lock) throws InterruptedException {
 		
-		Set<Semaphore> semaphores = new LinkedHashSet<Semaphore>();
+		acquisitions.incrementAndGet();
 		
-		if (types != null) {
-			
-			for (String type : types) {
+		if (!lock.semaphore.tryAcquire()) {
 
-				if (type != null) {
-					
-					Semaphore semaphore = semaphoreMap.get(type);
-					if (semaphore == null) {
+			final long t0 = System.nanoTime();
 
-						semaphore = new Semaphore(1, true);
-						semaphoreMap.put(type, semaphore);
-					}
+			contentions.incrementAndGet();
+			
+			lock.semaphore.acquire();
+			
+			final long wait = System.nanoTime() - t0;
+			totalWaitNanos.addAndGet(wait);
+			
+			long max = maxWaitNanos.get();
+			while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+				max = maxWaitNanos.get();
+			}
+			
+			logger.log(Level.FINE, "Waited {0} ms for lock {1}", new Object[] { TimeUnit.NANOSECONDS.toMillis(wait), lock.key });
+		}
+	}
+	
+	private void release(final KeyLock lock) {
+		
+		lock.semaphore.release();
+		lock.unuse();
+	}
+	
+	private KeyLock getLock(final String key) {
+		
+		while (true) {
+			
+			KeyLock lock = semaphoreMap.get(key);
+			if (lock == null) {
 
-					semaphores.add(semaphore);
+				final KeyLock newLock = new KeyLock(key);
+				
+				lock = semaphoreMap.putIfAbsent(key, newLock);
+				if (lock == null) {
+					lock = newLock;
 				}
 			}
+			
+			// lock may have been discarded concurrently, retry
+			if (lock.use()) {
+				return lock;
+			}
+		}
+	}
+	
+	// ----- nested classes -----
+	private class KeyLock {
+		
+		private final Semaphore semaphore = new Semaphore(1, true);
+		private String key                = null;
+		private int users                 = 0;
+		private boolean discarded         = false;
+		
+		public KeyLock(final String key) {
+			this.key = key;
 		}
 		
-		return semaphores;
+		public synchronized boolean use() {
+			
+			if (discarded) {
+				return false;
+			}
+			
+			users++;
+			
+			return true;
+		}
+		
+		public synchronized void unuse() {
+			
+			if (--users == 0) {
+				
+				discarded = true;
+				semaphoreMap.remove(key, this);
+			}
+		}
 	}
 }
@@ -26,9 +26,11 @@ import org.structr.common.error.FrameworkException;
 import java.lang.reflect.Constructor;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import org.neo4j.gis.spatial.indexprovider.SpatialRecordHits;
 import org.neo4j.graphdb.index.IndexHits;
 import org.structr.common.AccessControllable;
+import org.structr.core.Metrics;
 import org.structr.core.Result;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.relationship.NodeHasLocation;
@@ -43,6 +45,9 @@ import org.structr.core.entity.relationship.NodeHasLocation;
  */
 public class NodeFactory<T extends NodeInterface & AccessControllable> extends Factory<Node, T> {
 
+	private static final AtomicLong instantiatedCount = Metrics.counter("factory.node.instantiated");
+	private static final AtomicLong reusedCount       = Metrics.counter("factory.node.reused");
+
 	//~--- fields ---------------------------------------------------------
 
 	private Map<Class, Constructor<T>> constructors = new LinkedHashMap<>();
@@ -112,6 +117,12 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 
 			// cache node for this request
 			securityContext.store(id, newNode);
+
+			instantiatedCount.incrementAndGet();
+
+		} else {
+
+			reusedCount.incrementAndGet();
 		}
 
 		// check access
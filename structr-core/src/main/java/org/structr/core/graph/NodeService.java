@@ -18,8 +18,6 @@
  */
 package org.structr.core.graph;
 
-import org.apache.commons.collections.map.LRUMap;
-
 import org.neo4j.gis.spatial.indexprovider.LayerNodeIndex;
 import org.neo4j.gis.spatial.indexprovider.SpatialIndexProvider;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -31,10 +29,10 @@ import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.index.impl.lucene.LuceneIndexImplementation;
 
 import org.structr.core.Command;
+import org.structr.core.Metrics;
 import org.structr.core.RunnableService;
 import org.structr.core.Services;
 import org.structr.core.SingletonService;
-import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Location;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -42,6 +40,9 @@ import org.structr.core.entity.Location;
 import java.io.File;
 
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.cypher.javacompat.ExecutionEngine;
@@ -58,8 +59,43 @@ import org.structr.common.StructrConf;
  */
 public class NodeService implements SingletonService {
 
-	private static final Logger logger                       = Logger.getLogger(NodeService.class.getName());
-	private static final Map<String, AbstractNode> nodeCache = (Map<String, AbstractNode>) Collections.synchronizedMap(new LRUMap(100000));
+	private static final Logger logger            = Logger.getLogger(NodeService.class.getName());
+	private static final EntityCache entityCache  = new EntityCache(100000);
+
+	static {
+
+		Metrics.gauge("cache.entity.size", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return entityCache.size();
+			}
+		});
+
+		Metrics.gauge("cache.entity.hits", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return entityCache.getHitCount();
+			}
+		});
+
+		Metrics.gauge("cache.entity.misses", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return entityCache.getMissCount();
+			}
+		});
+
+		Metrics.gauge("cache.entity.hitRatio", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return entityCache.getHitRatio();
+			}
+		});
+	}
 
 	//~--- fields ---------------------------------------------------------
 
@@ -77,6 +113,9 @@ public class NodeService implements SingletonService {
 	private Index<Relationship> relUuidIndex        = null;
 
 	private ExecutionEngine cypherExecutionEngine   = null;
+
+	// Lucene indices are thread-safe, only the spatial index needs a lock
+	private final ReadWriteLock spatialIndexLock    = new ReentrantReadWriteLock();
 	
 	// indices
 	private Map<RelationshipIndex, Index<Relationship>> relIndices = new EnumMap<>(RelationshipIndex.class);
@@ -258,6 +297,10 @@ public class NodeService implements SingletonService {
 		cypherExecutionEngine = new ExecutionEngine(graphDb);
 		
 		logger.log(Level.FINE, "Cypher execution engine ready.");
+
+		Metrics.registerMBean();
+
+		TransactionCommand.getEventDispatcher().start();
 		
 		isInitialized = true;
 	}
@@ -274,7 +317,14 @@ public class NodeService implements SingletonService {
 
 			// Wait for all registered services to end
 			waitFor(registeredServices.isEmpty());
+
+			// deliver pending modification events while the database is still available
+			TransactionCommand.getEventDispatcher().shutdown();
+
 			graphDb.shutdown();
+			entityCache.clear();
+
+			Metrics.unregisterMBean();
 
 			graphDb       = null;
 			isInitialized = false;
@@ -309,18 +359,6 @@ public class NodeService implements SingletonService {
 
 	}
 
-	public static void addNodeToCache(String uuid, AbstractNode node) {
-
-		nodeCache.put(uuid, node);
-
-	}
-
-	public static void removeNodeFromCache(String uuid) {
-
-		nodeCache.remove(uuid);
-
-	}
-
 	//~--- get methods ----------------------------------------------------
 
 	@Override
@@ -330,10 +368,8 @@ public class NodeService implements SingletonService {
 
 	}
 
-	public static AbstractNode getNodeFromCache(String uuid) {
-
-		return nodeCache.get(uuid);
-
+	public static EntityCache getEntityCache() {
+		return entityCache;
 	}
 
 	// </editor-fold>
@@ -363,4 +399,27 @@ public class NodeService implements SingletonService {
 	public Index<Relationship> getRelationshipIndex(RelationshipIndex name) {
 		return relIndices.get(name);
 	}
+
+	/**
+	 * Returns the lock that guards the spatial layer index. Queries must
+	 * hold the read lock, modifications the write lock. The Lucene-based
+	 * indices handle concurrent access internally (per-reader searchers,
+	 * transaction-local write state) and must not be synchronized at all.
+	 *
+	 * @return the spatial index lock
+	 */
+	public ReadWriteLock getSpatialIndexLock() {
+		return spatialIndexLock;
+	}
+
+	/**
+	 * Returns the lock that must be held while the given index is modified,
+	 * or null if the index needs no locking.
+	 *
+	 * @param index the index to modify
+	 * @return the write lock of the spatial index, or null
+	 */
+	public Lock getIndexWriteLock(final Index<Node> index) {
+		return index != null && index == layerIndex ? spatialIndexLock.writeLock() : null;
+	}
 }
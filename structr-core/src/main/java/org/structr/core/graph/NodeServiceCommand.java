@@ -18,13 +18,12 @@
  */
 package org.structr.core.graph;
 
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Iterator;
-import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.lang3.StringUtils;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Command;
@@ -41,7 +40,16 @@ import org.structr.core.app.StructrApp;
 public abstract class NodeServiceCommand extends Command {
 	
 	private static final Logger logger                        = Logger.getLogger(NodeServiceCommand.class.getName());
-	private static final ArrayBlockingQueue<String> uuidQueue = new ArrayBlockingQueue<>(1000);
+	private static final char[] HEX_DIGITS                    = "0123456789abcdef".toCharArray();
+	private static final SecureRandom uuidSeedSource          = new SecureRandom();
+
+	private static final ThreadLocal<SecureRandom> uuidRandom = new ThreadLocal<SecureRandom>() {
+
+		@Override
+		protected SecureRandom initialValue() {
+			return createRandom();
+		}
+	};
 	
 	@Override
 	public Class getServiceClass()	{
@@ -150,42 +158,58 @@ public abstract class NodeServiceCommand extends Command {
 	}
 	
 	public String getNextUuid() {
-		
-		String uuid = null;
-		
-		do {
-			
-			uuid = uuidQueue.poll();
-			
-		} while (uuid == null);
-		
-		return uuid;
+		return generateUuid();
 	}
 
-	// create uuid producer that fills the queue
-	static {
-		
-		Thread uuidProducer = new Thread(new Runnable() {
+	/**
+	 * Creates a random (version 4) UUID in Structr's format, i.e. as 32
+	 * lowercase hex digits without dashes.
+	 *
+	 * Each thread uses its own random number generator, so concurrent
+	 * callers do not contend for the lock of a shared SecureRandom.
+	 *
+	 * @return a new UUID
+	 */
+	public static String generateUuid() {
 
-			@Override
-			public void run() {
+		final SecureRandom random = uuidRandom.get();
+		final char[] buf          = new char[32];
 
-				// please do not stop :)
-				while (true) {
-					
-					try {
-						while (true) {
+		// version 4 and IETF variant bits, as in UUID.randomUUID()
+		final long mostSigBits    = (random.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+		final long leastSigBits   = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
 
-							uuidQueue.put(StringUtils.replace(UUID.randomUUID().toString(), "-", ""));
-						}
+		for (int i=0; i<16; i++) {
 
-					} catch (Throwable t) {	}
-				}
-			}
-			
-		}, "UuidProducerThread");
-		
-		uuidProducer.setDaemon(true);
-		uuidProducer.start();
+			buf[i]      = HEX_DIGITS[(int)((mostSigBits  >>> (60 - 4 * i)) & 0xF)];
+			buf[i + 16] = HEX_DIGITS[(int)((leastSigBits >>> (60 - 4 * i)) & 0xF)];
+		}
+
+		return new String(buf);
+	}
+
+	// ----- private methods -----
+	private static SecureRandom createRandom() {
+
+		final byte[] seed = new byte[32];
+
+		// the shared generator is used for seeding only
+		uuidSeedSource.nextBytes(seed);
+
+		try {
+
+			// SHA1PRNG does not synchronize on a global lock
+			// like the native generator does
+			final SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+			random.setSeed(seed);
+
+			return random;
+
+		} catch (NoSuchAlgorithmException nsaex) {
+
+			logger.log(Level.WARNING, "SHA1PRNG not available, using default SecureRandom for UUID generation");
+		}
+
+		return new SecureRandom(seed);
 	}
 }
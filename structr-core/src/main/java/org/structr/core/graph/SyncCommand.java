@@ -18,8 +18,12 @@
  */
 package org.structr.core.graph;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -34,8 +38,12 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -44,8 +52,17 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -62,8 +79,6 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Services;
-import org.structr.core.StaticValue;
-import org.structr.core.Value;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 
@@ -73,8 +88,26 @@ import org.structr.core.app.StructrApp;
  */
 public class SyncCommand extends NodeServiceCommand implements MaintenanceCommand, Serializable {
 
-	private static final Logger logger                 = Logger.getLogger(SyncCommand.class.getName());
-	private static final String STRUCTR_ZIP_DB_NAME    = "db";
+	private static final Logger logger                         = Logger.getLogger(SyncCommand.class.getName());
+	private static final String STRUCTR_ZIP_DB_NAME            = "db";
+	private static final String STRUCTR_ZIP_DB_BINARY_PREFIX   = "db.bin/";
+	private static final int DEFAULT_BATCH_SIZE                = 1000;
+
+	// binary format
+	private static final byte[] BINARY_MAGIC                   = { 'S', 'D', 'B' };
+	private static final int BINARY_FORMAT_VERSION             = 1;
+	private static final int BINARY_CHUNK_SIZE                 = 1024 * 1024;
+	private static final int TAG_BYTE                          = 1;
+	private static final int TAG_SHORT                         = 2;
+	private static final int TAG_INT                           = 3;
+	private static final int TAG_LONG                          = 4;
+	private static final int TAG_FLOAT                         = 5;
+	private static final int TAG_DOUBLE                        = 6;
+	private static final int TAG_CHAR                          = 7;
+	private static final int TAG_STRING                        = 8;
+	private static final int TAG_BOOLEAN                       = 9;
+	private static final int TAG_DICTIONARY_STRING             = 10;
+	private static final int TAG_ARRAY                         = 0x40;
 
 	private static final Map<Class, String> typeMap    = new LinkedHashMap<>();
 	private static final Map<Class, Method> methodMap  = new LinkedHashMap<>();
@@ -115,7 +148,10 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		String mode                  = (String)attributes.get("mode");
 		String fileName              = (String)attributes.get("file");
 		String validate              = (String)attributes.get("validate");
+		String format                = (String)attributes.get("format");
+		Object batchSizeSource       = attributes.get("batchSize");
 		boolean doValidation         = true;
+		int batchSize                = DEFAULT_BATCH_SIZE;
 
 		// should we validate imported nodes?
 		if (validate != null) {
@@ -130,22 +166,38 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			}
 		}
 
+		// number of objects to commit at once when importing
+		if (batchSizeSource != null) {
+
+			try {
+
+				batchSize = Math.max(1, Integer.parseInt(batchSizeSource.toString()));
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to parse value for batch size: {0}", t.getMessage());
+			}
+		}
+
 		if (fileName == null) {
 
 			throw new FrameworkException(400, "Please specify sync file.");
 		}
 
+		// the text format is used unless the binary format is requested
+		final boolean binary = "binary".equals(format);
+
 		if ("export".equals(mode)) {
 
-			exportToFile(graphDb, fileName, true);
+			exportToFile(graphDb, fileName, true, binary);
 
 		} else if ("exportDb".equals(mode)) {
 
-			exportToFile(graphDb, fileName, false);
+			exportToFile(graphDb, fileName, false, binary);
 
 		} else if ("import".equals(mode)) {
 
-			importFromFile(graphDb, securityContext, fileName, doValidation);
+			importFromFile(graphDb, securityContext, fileName, doValidation, batchSize);
 
 		} else {
 
@@ -154,7 +206,8 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 
 	/**
-	 * Exports the whole structr database to a file with the given name.
+	 * Exports the whole structr database to a file with the given name,
+	 * using the text format.
 	 *
 	 * @param graphDb
 	 * @param fileName
@@ -162,6 +215,19 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	 * @throws FrameworkException
 	 */
 	public static void exportToFile(final GraphDatabaseService graphDb, final String fileName, final boolean includeFiles) throws FrameworkException {
+		exportToFile(graphDb, fileName, includeFiles, false);
+	}
+
+	/**
+	 * Exports the whole structr database to a file with the given name.
+	 *
+	 * @param graphDb
+	 * @param fileName
+	 * @param includeFiles
+	 * @param binary whether to use the binary format instead of the text format
+	 * @throws FrameworkException
+	 */
+	public static void exportToFile(final GraphDatabaseService graphDb, final String fileName, final boolean includeFiles, final boolean binary) throws FrameworkException {
 
 		try {
 
@@ -169,7 +235,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			Iterable<Relationship> rels = ggop.getAllRelationships();
 			Iterable<Node> nodes        = ggop.getAllNodes();
 
-			exportToStream(new FileOutputStream(fileName), nodes, rels, null, includeFiles);
+			exportToStream(new FileOutputStream(fileName), nodes, rels, null, includeFiles, binary);
 
 		} catch (Throwable t) {
 
@@ -201,7 +267,8 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 
 	/**
-	 * Exports the given part of the structr database to the given output stream.
+	 * Exports the given part of the structr database to the given output
+	 * stream, using the text format.
 	 *
 	 * @param outputStream
 	 * @param nodes
@@ -211,12 +278,26 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	 * @throws FrameworkException
 	 */
 	public static void exportToStream(final OutputStream outputStream, final Iterable<Node> nodes, final Iterable<Relationship> relationships, final Iterable<String> filePaths, final boolean includeFiles) throws FrameworkException {
+		exportToStream(outputStream, nodes, relationships, filePaths, includeFiles, false);
+	}
+
+	/**
+	 * Exports the given part of the structr database to the given output stream.
+	 *
+	 * @param outputStream
+	 * @param nodes
+	 * @param relationships
+	 * @param filePaths
+	 * @param includeFiles
+	 * @param binary whether to use the binary format instead of the text format
+	 * @throws FrameworkException
+	 */
+	public static void exportToStream(final OutputStream outputStream, final Iterable<Node> nodes, final Iterable<Relationship> relationships, final Iterable<String> filePaths, final boolean includeFiles, final boolean binary) throws FrameworkException {
 
 		try {
 
 			Set<String> filesToInclude = new LinkedHashSet<String>();
 			ZipOutputStream zos        = new ZipOutputStream(outputStream);
-			PrintWriter writer         = new PrintWriter(new BufferedWriter(new OutputStreamWriter(zos)));
 
 			// collect files to include in export
 			if (filePaths != null) {
@@ -236,13 +317,28 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			}
 
 			// export database
-			exportDatabase(zos, writer, nodes, relationships);
+			if (binary) {
+
+				exportDatabaseBinary(zos, nodes, relationships);
+
+				// finish ZIP file
+				zos.finish();
 
-			// finish ZIP file
-			zos.finish();
+				// close stream
+				zos.close();
 
-			// close stream
-			writer.close();
+			} else {
+
+				PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(zos)));
+
+				exportDatabase(zos, writer, nodes, relationships);
+
+				// finish ZIP file
+				zos.finish();
+
+				// close stream
+				writer.close();
+			}
 
 		} catch (Throwable t) {
 
@@ -253,9 +349,13 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 
 	public static void importFromFile(final GraphDatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation) throws FrameworkException {
+		importFromFile(graphDb, securityContext, fileName, doValidation, DEFAULT_BATCH_SIZE);
+	}
+
+	public static void importFromFile(final GraphDatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation, final int batchSize) throws FrameworkException {
 
 		try {
-			importFromStream(graphDb, securityContext, new FileInputStream(fileName), doValidation);
+			importFromStream(graphDb, securityContext, new FileInputStream(fileName), doValidation, batchSize);
 
 		} catch (Throwable t) {
 
@@ -266,29 +366,68 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 
 	public static void importFromStream(final GraphDatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation) throws FrameworkException {
+		importFromStream(graphDb, securityContext, inputStream, doValidation, DEFAULT_BATCH_SIZE);
+	}
 
-		try {
-			ZipInputStream zis = new ZipInputStream(inputStream);
-			ZipEntry entry     = zis.getNextEntry();
+	/**
+	 * Imports a database export from the given stream. The database is
+	 * streamed and committed in batches of the given number of objects,
+	 * so that the size of the import is not limited by the heap. Batches
+	 * that were committed before an error are not rolled back, the
+	 * exception reports how many objects were committed.
+	 *
+	 * @param graphDb
+	 * @param securityContext
+	 * @param inputStream
+	 * @param doValidation
+	 * @param batchSize
+	 * @throws FrameworkException
+	 */
+	public static void importFromStream(final GraphDatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation, final int batchSize) throws FrameworkException {
+
+		// nodes and relationships of all database entries are imported in one run
+		try (final BatchImporter importer = new BatchImporter(graphDb, securityContext, batchSize)) {
 
-			while (entry != null) {
+			try {
 
-				if (STRUCTR_ZIP_DB_NAME.equals(entry.getName())) {
+				ZipInputStream zis = new ZipInputStream(inputStream);
+				ZipEntry entry     = zis.getNextEntry();
 
-					importDatabase(graphDb, securityContext, zis, doValidation);
+				while (entry != null) {
 
-				} else {
+					final String name = entry.getName();
+
+					if (STRUCTR_ZIP_DB_NAME.equals(name)) {
+
+						importDatabase(importer, zis);
+
+					} else if (name.startsWith(STRUCTR_ZIP_DB_BINARY_PREFIX)) {
 
-					// store other files in "files" dir..
-					importDirectory(zis, entry);
+						importDatabaseBinary(importer, zis);
+
+					} else {
+
+						// store other files in "files" dir..
+						importDirectory(zis, entry);
+					}
+
+					entry = zis.getNextEntry();
 				}
 
-				entry = zis.getNextEntry();
+				importer.finish();
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.SEVERE, "Unable to read database export", ioex);
+
+				throw new FrameworkException(500, "Import aborted after " + importer.getCommittedCount() + " objects were committed: " + ioex.getMessage());
 			}
 
 		} catch (IOException ioex) {
 
-			ioex.printStackTrace();
+			logger.log(Level.SEVERE, "Unable to import database export", ioex);
+
+			throw new FrameworkException(500, ioex.getMessage());
 		}
 	}
 
@@ -425,15 +564,22 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	private static String read(Reader reader, int len) throws IOException {
 
 		char[] buf = new char[len];
+		int pos    = 0;
 
-		// only continue if the desired number of chars could be read
-		if (reader.read(buf, 0, len) == len) {
+		// a single read may return less than the desired number of chars
+		while (pos < len) {
 
-			return new String(buf, 0, len);
+			final int count = reader.read(buf, pos, len - pos);
+			if (count < 0) {
+
+				// end of stream
+				throw new EOFException();
+			}
+
+			pos += count;
 		}
 
-		// end of stream
-		throw new EOFException();
+		return new String(buf, 0, len);
 	}
 
 	private static void exportDirectory(ZipOutputStream zos, File dir, String path, Set<String> filesToInclude) throws IOException {
@@ -565,6 +711,113 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		logger.log(Level.INFO, "Exported {0} nodes and {1} rels", new Object[] { nodeCount, relCount } );
 	}
 
+	/**
+	 * Exports the given nodes and relationships in the binary format. Nodes
+	 * and relationships are encoded into chunks of about one megabyte in the
+	 * current thread, because database access is bound to the transaction,
+	 * and the chunks are compressed in parallel. Each chunk is stored as a
+	 * separate, self-contained ZIP entry in export order.
+	 */
+	private static void exportDatabaseBinary(final ZipOutputStream zos, final Iterable<Node> nodes, final Iterable<Relationship> relationships) throws IOException, FrameworkException {
+
+		final int threads                     = Math.max(1, Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor        = Executors.newFixedThreadPool(threads);
+		final LinkedList<Future<Chunk>> queue = new LinkedList<>();
+		final String uuidPropertyName         = GraphObject.id.dbName();
+		BinaryWriter writer                   = new BinaryWriter();
+		int chunkCount                        = 0;
+		int nodeCount                         = 0;
+		int relCount                          = 0;
+
+		try {
+
+			for (Node node : nodes) {
+
+				// ignore non-structr nodes
+				if (node.hasProperty(uuidPropertyName)) {
+
+					writer.writeNode(node);
+					nodeCount++;
+
+					if (writer.size() >= BINARY_CHUNK_SIZE) {
+
+						queue.add(executor.submit(writer.toChunk(chunkCount++)));
+						writer = new BinaryWriter();
+
+						// limit the number of chunks in memory
+						while (queue.size() > 2 * threads) {
+							writeChunk(zos, queue.removeFirst());
+						}
+					}
+				}
+			}
+
+			for (Relationship rel : relationships) {
+
+				// ignore non-structr nodes
+				if (rel.hasProperty(uuidPropertyName)) {
+
+					final Node startNode = rel.getStartNode();
+					final Node endNode   = rel.getEndNode();
+
+					if (startNode.hasProperty(uuidPropertyName) && endNode.hasProperty(uuidPropertyName)) {
+
+						writer.writeRelationship(rel, (String)startNode.getProperty(uuidPropertyName), (String)endNode.getProperty(uuidPropertyName));
+						relCount++;
+
+						if (writer.size() >= BINARY_CHUNK_SIZE) {
+
+							queue.add(executor.submit(writer.toChunk(chunkCount++)));
+							writer = new BinaryWriter();
+
+							// limit the number of chunks in memory
+							while (queue.size() > 2 * threads) {
+								writeChunk(zos, queue.removeFirst());
+							}
+						}
+					}
+				}
+			}
+
+			if (writer.size() > 0) {
+				queue.add(executor.submit(writer.toChunk(chunkCount++)));
+			}
+
+			while (!queue.isEmpty()) {
+				writeChunk(zos, queue.removeFirst());
+			}
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+
+		logger.log(Level.INFO, "Exported {0} nodes and {1} rels in {2} chunks", new Object[] { nodeCount, relCount, chunkCount } );
+	}
+
+	private static void writeChunk(final ZipOutputStream zos, final Future<Chunk> future) throws IOException {
+
+		try {
+
+			final Chunk chunk    = future.get();
+			final ZipEntry entry = new ZipEntry(chunk.getName());
+
+			// chunks are already compressed
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(chunk.getData().length);
+			entry.setCompressedSize(chunk.getData().length);
+			entry.setCrc(chunk.getCrc());
+
+			zos.putNextEntry(entry);
+			zos.write(chunk.getData());
+			zos.closeEntry();
+
+		} catch (InterruptedException | ExecutionException ex) {
+
+			throw new IOException("Unable to compress chunk", ex);
+		}
+	}
+
 	private static void importDirectory(ZipInputStream zis, ZipEntry entry) throws IOException {
 
 		if (entry.isDirectory()) {
@@ -604,162 +857,883 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		}
 	}
 
-	private static void importDatabase(final GraphDatabaseService graphDb, final SecurityContext securityContext, final ZipInputStream zis, boolean doValidation) throws FrameworkException {
-
-		final App app                    = StructrApp.getInstance();
-		final Value<Long> nodeCountValue = new StaticValue<>(0L);
-		final Value<Long> relCountValue  = new StaticValue<>(0L);
-		final String uuidPropertyName    = GraphObject.id.dbName();
-		double t0                        = System.nanoTime();
+	private static void importDatabase(final BatchImporter importer, final ZipInputStream zis) throws IOException, FrameworkException {
 
-		try (final Tx tx = app.tx()) {
+		PropertyContainer currentObject = null;
+		BufferedReader reader           = new BufferedReader(new InputStreamReader(zis));
+		String currentKey               = null;
+		boolean finished                = false;
 
-			Map<String, Node> uuidMap       = new LinkedHashMap<>();
-			List<Relationship> rels         = new LinkedList<>();
-			List<Node> nodes                = new LinkedList<>();
-			PropertyContainer currentObject = null;
-			BufferedReader reader           = null;
-			String currentKey               = null;
-			boolean finished                = false;
-			long nodeCount                  = 0;
-			long relCount                   = 0;
+		do {
 
 			try {
 
-				reader = new BufferedReader(new InputStreamReader(zis));
+				// store current position
+				reader.mark(4);
 
-				do {
-
-					try {
+				// read one byte
+				String objectType = read(reader, 1);
 
-						// store current position
-						reader.mark(4);
+				// skip newlines
+				if ("\n".equals(objectType)) {
+					continue;
+				}
 
-						// read one byte
-						String objectType = read(reader, 1);
+				if ("N".equals(objectType)) {
 
-						// skip newlines
-						if ("\n".equals(objectType)) {
-							continue;
-						}
+					currentObject = importer.createNode();
 
-						if ("N".equals(objectType)) {
+				} else if ("R".equals(objectType)) {
 
-							currentObject = graphDb.createNode();
-							nodeCount++;
+					String startId     = (String)deserialize(reader);
+					String endId       = (String)deserialize(reader);
+					String relTypeName = (String)deserialize(reader);
 
-							// store for later use
-							nodes.add((Node)currentObject);
+					currentObject = importer.createRelationship(startId, endId, relTypeName);
 
-						} else if ("R".equals(objectType)) {
+				} else {
 
-							String startId     = (String)deserialize(reader);
-							String endId       = (String)deserialize(reader);
-							String relTypeName = (String)deserialize(reader);
+					// reset if not at the beginning of a line
+					reader.reset();
 
-							Node endNode   = uuidMap.get(endId);
-							Node startNode = uuidMap.get(startId);
+					if (currentKey == null) {
 
-							if (startNode != null && endNode != null) {
+						currentKey = (String)deserialize(reader);
 
-								RelationshipType relType = DynamicRelationshipType.withName(relTypeName);
-								currentObject = startNode.createRelationshipTo(endNode, relType);
+					} else {
 
-								// store for later use
-								rels.add((Relationship)currentObject);
-							}
+						if (currentObject != null) {
 
-							relCount++;
+							importer.setProperty(currentObject, currentKey, deserialize(reader));
 
 						} else {
 
-							// reset if not at the beginning of a line
-							reader.reset();
+							// skip value
+							deserialize(reader);
 
-							if (currentKey == null) {
+							logger.log(Level.WARNING, "No current object to store property in.");
+						}
 
-								currentKey = (String)deserialize(reader);
+						currentKey = null;
+					}
+				}
 
-							} else {
+			} catch (EOFException eofex) {
 
-								if (currentObject != null) {
+				finished = true;
+			}
 
-									Object obj = deserialize(reader);
+		} while (!finished);
+	}
 
-									if (uuidPropertyName.equals(currentKey) && currentObject instanceof Node) {
+	private static void importDatabaseBinary(final BatchImporter importer, final ZipInputStream zis) throws IOException, FrameworkException {
 
-										String uuid = (String)obj;
-										uuidMap.put(uuid, (Node)currentObject);
-									}
+		final BinaryReader reader = new BinaryReader(new BufferedInputStream(new InflaterInputStream(zis)));
 
-									if (currentKey.length() != 0) {
+		reader.readHeader();
 
-										// store object in DB
-										currentObject.setProperty(currentKey, obj);
+		for (int objectType = reader.read(); objectType != -1; objectType = reader.read()) {
 
-										// set type label
-										if (currentObject instanceof Node && NodeInterface.type.dbName().equals(currentKey)) {
-											((Node) currentObject).addLabel(DynamicLabel.label((String) obj));
-										}
+			if (objectType == 'N') {
 
-									} else {
+				final Node node = importer.createNode();
+				final int count = reader.readVarInt();
 
-										logger.log(Level.SEVERE, "Invalid property key for value {0}, ignoring", obj);
-									}
+				for (int i=0; i<count; i++) {
 
-									currentKey = null;
+					final String key = reader.readDictionaryString();
 
-								} else {
+					importer.setProperty(node, key, reader.readValue());
+				}
 
-									logger.log(Level.WARNING, "No current object to store property in.");
-								}
-							}
-						}
+			} else if (objectType == 'R') {
+
+				final String startId     = reader.readUuid();
+				final String endId       = reader.readUuid();
+				final String relTypeName = reader.readDictionaryString();
+				final Relationship rel   = importer.createRelationship(startId, endId, relTypeName);
+				final int count          = reader.readVarInt();
+
+				for (int i=0; i<count; i++) {
 
-					} catch (EOFException eofex) {
+					final String key   = reader.readDictionaryString();
+					final Object value = reader.readValue();
 
-						finished = true;
+					if (rel != null) {
+						importer.setProperty(rel, key, value);
 					}
+				}
 
-				} while (!finished);
+			} else {
 
-			} catch (IOException ioex) {
+				throw new IOException("Invalid object type " + objectType + " in binary export");
 			}
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Creates imported nodes and relationships and commits them in batches
+	 * of the given size. The UUIDs of all imported nodes are kept in a
+	 * {@link UuidMap}, because relationships can refer to nodes of any
+	 * earlier batch.
+	 */
+	private static class BatchImporter implements AutoCloseable {
+
+		private final List<Relationship> rels   = new ArrayList<>();
+		private final List<Node> nodes          = new ArrayList<>();
+		private final String uuidPropertyName   = GraphObject.id.dbName();
+		private final double t0                 = System.nanoTime();
+		private SecurityContext securityContext = null;
+		private RelationshipFactory relFactory  = null;
+		private NodeFactory nodeFactory         = null;
+		private GraphDatabaseService graphDb    = null;
+		private UuidMap uuidMap                 = null;
+		private App app                         = null;
+		private Tx tx                           = null;
+		private long lastProgress               = System.currentTimeMillis();
+		private long nodeCount                  = 0;
+		private long relCount                   = 0;
+		private long committedCount             = 0;
+		private int batchSize                   = 0;
+
+		public BatchImporter(final GraphDatabaseService graphDb, final SecurityContext securityContext, final int batchSize) throws IOException {
+
+			this.securityContext = securityContext;
+			this.relFactory      = new RelationshipFactory(securityContext);
+			this.nodeFactory     = new NodeFactory(securityContext);
+			this.app             = StructrApp.getInstance();
+			this.uuidMap         = new UuidMap();
+			this.graphDb         = graphDb;
+			this.batchSize       = batchSize;
+		}
+
+		public Node createNode() throws FrameworkException {
+
+			beforeObject();
+
+			final Node node = graphDb.createNode();
+
+			// store for later use
+			nodes.add(node);
+			nodeCount++;
+
+			return node;
+		}
+
+		public Relationship createRelationship(final String startId, final String endId, final String relTypeName) throws FrameworkException {
+
+			beforeObject();
+
+			final long startNodeId = uuidMap.get(startId);
+			final long endNodeId   = uuidMap.get(endId);
+
+			relCount++;
+
+			if (startNodeId != -1L && endNodeId != -1L) {
+
+				final RelationshipType relType = DynamicRelationshipType.withName(relTypeName);
+				final Node startNode           = graphDb.getNodeById(startNodeId);
+				final Node endNode             = graphDb.getNodeById(endNodeId);
+				final Relationship rel         = startNode.createRelationshipTo(endNode, relType);
+
+				// store for later use
+				rels.add(rel);
+
+				return rel;
+			}
+
+			return null;
+		}
+
+		public void setProperty(final PropertyContainer currentObject, final String key, final Object value) throws IOException {
+
+			if (uuidPropertyName.equals(key) && currentObject instanceof Node) {
+
+				uuidMap.put((String)value, ((Node)currentObject).getId());
+			}
+
+			if (key.length() != 0) {
+
+				// store object in DB
+				currentObject.setProperty(key, value);
+
+				// set type label
+				if (currentObject instanceof Node && NodeInterface.type.dbName().equals(key)) {
+					((Node) currentObject).addLabel(DynamicLabel.label((String) value));
+				}
+
+			} else {
+
+				logger.log(Level.SEVERE, "Invalid property key for value {0}, ignoring", value);
+			}
+		}
+
+		/**
+		 * @return the number of nodes and relationships that were committed
+		 */
+		public long getCommittedCount() {
+			return committedCount;
+		}
+
+		public void finish() throws FrameworkException {
 
 			logger.log(Level.INFO, "Imported {0} nodes and {1} rels, committing transaction..", new Object[] { nodeCount, relCount } );
 
-			nodeCountValue.set(securityContext, nodeCount);
-			relCountValue.set(securityContext, relCount);
+			commit();
+			logProgress();
 
-			// make nodes visible in transaction context
-			RelationshipFactory relFactory     = new RelationshipFactory(securityContext);
-			NodeFactory nodeFactory            = new NodeFactory(securityContext);
+			double t1   = System.nanoTime();
+			double time = ((t1 - t0) / 1000000000.0);
 
-			for (Node node : nodes) {
+			DecimalFormat decimalFormat  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			logger.log(Level.INFO, "Import done in {0} s", decimalFormat.format(time));
+		}
+
+		@Override
+		public void close() throws IOException, FrameworkException {
+
+			try {
+
+				// close transaction of an aborted batch
+				if (tx != null) {
+
+					final Tx openTx = tx;
+
+					tx = null;
+					openTx.close();
+				}
+
+			} finally {
+
+				uuidMap.close();
+			}
+		}
+
+		// ----- private methods -----
+		private void beforeObject() throws FrameworkException {
+
+			if (tx == null) {
+
+				tx = app.tx();
+
+			} else if (nodes.size() + rels.size() >= batchSize) {
+
+				// commit at object boundaries only
+				commit();
+
+				tx = app.tx();
+
+				if (System.currentTimeMillis() - lastProgress > 5000) {
+
+					logProgress();
+					lastProgress = System.currentTimeMillis();
+				}
+			}
+		}
+
+		/**
+		 * Makes the nodes and relationships of the current batch visible in
+		 * the transaction context, indexes them and commits the transaction.
+		 */
+		private void commit() throws FrameworkException {
 
-				NodeInterface entity = nodeFactory.instantiate(node);
-				TransactionCommand.nodeCreated(entity);
-				entity.addToIndex();
+			if (tx == null) {
+				return;
 			}
 
-			for (Relationship rel : rels) {
+			final Tx batchTx  = tx;
+			final int objects = nodes.size() + rels.size();
+			boolean success   = false;
+
+			tx = null;
+
+			try {
+
+				for (Node node : nodes) {
+
+					NodeInterface entity = nodeFactory.instantiate(node);
+					TransactionCommand.nodeCreated(entity);
+					entity.addToIndex();
+				}
+
+				for (Relationship rel : rels) {
+
+					RelationshipInterface entity = relFactory.instantiate(rel);
+					TransactionCommand.relationshipCreated(entity);
+					entity.addToIndex();
+				}
+
+				batchTx.success();
+				success = true;
 
-				RelationshipInterface entity = relFactory.instantiate(rel);
-				TransactionCommand.relationshipCreated(entity);
-				entity.addToIndex();
+			} finally {
+
+				nodes.clear();
+				rels.clear();
+
+				batchTx.close();
+
+				if (success) {
+					committedCount += objects;
+				}
+
+				// the node factory caches every instantiated node in the
+				// security context, which must not grow with the import
+				securityContext.cleanUp();
 			}
+		}
 
-			tx.success();
+		private void logProgress() {
 
-		} catch (FrameworkException fex) {
+			final double seconds = (System.nanoTime() - t0) / 1000000000.0;
+			final long rate      = seconds > 0 ? Math.round((nodeCount + relCount) / seconds) : 0;
 
-			fex.printStackTrace();
+			logger.log(Level.INFO, "Imported {0} nodes and {1} rels ({2} objects/s)", new Object[] { nodeCount, relCount, rate } );
 		}
+	}
 
-		double t1   = System.nanoTime();
-		double time = ((t1 - t0) / 1000000000.0);
+	/**
+	 * Encodes nodes and relationships into a chunk of the binary format.
+	 *
+	 * Each chunk starts with a header (magic bytes and format version) and
+	 * is followed by the objects. Counts, lengths and integer values are
+	 * varint-encoded, UUIDs in Structr's default format are written as two
+	 * longs, and property keys, relationship types and type names are
+	 * written only once per chunk and referenced by index afterwards.
+	 */
+	private static class BinaryWriter {
+
+		private final ByteArrayOutputStream buffer    = new ByteArrayOutputStream(BINARY_CHUNK_SIZE);
+		private final DataOutputStream out            = new DataOutputStream(buffer);
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		private int objectCount                       = 0;
+
+		public BinaryWriter() throws IOException {
+
+			out.write(BINARY_MAGIC);
+			out.write(BINARY_FORMAT_VERSION);
+		}
 
-		DecimalFormat decimalFormat  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-		logger.log(Level.INFO, "Import done in {0} s", decimalFormat.format(time));
+		public void writeNode(final Node node) throws IOException {
+
+			out.write('N');
+			writeProperties(node);
+
+			objectCount++;
+		}
+
+		public void writeRelationship(final Relationship rel, final String startId, final String endId) throws IOException {
+
+			out.write('R');
+			writeUuid(startId);
+			writeUuid(endId);
+			writeDictionaryString(rel.getType().name());
+			writeProperties(rel);
+
+			objectCount++;
+		}
+
+		public int size() {
+			return objectCount > 0 ? buffer.size() : 0;
+		}
+
+		/**
+		 * Returns a task that compresses the contents of this writer.
+		 */
+		public Callable<Chunk> toChunk(final int index) throws IOException {
+
+			out.flush();
+
+			final String name = STRUCTR_ZIP_DB_BINARY_PREFIX + String.format("%08d", index);
+			final byte[] data = buffer.toByteArray();
+
+			return new Callable<Chunk>() {
+
+				@Override
+				public Chunk call() throws Exception {
+
+					final ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4);
+					final Deflater deflater                = new Deflater(6);
+					final CRC32 crc                        = new CRC32();
+
+					try (final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressed, deflater)) {
+
+						deflaterStream.write(data);
+
+					} finally {
+
+						deflater.end();
+					}
+
+					final byte[] result = compressed.toByteArray();
+
+					crc.update(result);
+
+					return new Chunk(name, result, crc.getValue());
+				}
+			};
+		}
+
+		// ----- private methods -----
+		private void writeProperties(final PropertyContainer propertyContainer) throws IOException {
+
+			final Map<String, Object> properties = new LinkedHashMap<>();
+
+			for (final String key : propertyContainer.getPropertyKeys()) {
+
+				final Object value = propertyContainer.getProperty(key);
+
+				if (getTag(value) != -1) {
+
+					properties.put(key, value);
+
+				} else {
+
+					logger.log(Level.WARNING, "Unable to serialize object of type {0}, type not supported", value.getClass());
+				}
+			}
+
+			writeVarLong(properties.size());
+
+			for (final Entry<String, Object> entry : properties.entrySet()) {
+
+				final String key   = entry.getKey();
+				final Object value = entry.getValue();
+
+				writeDictionaryString(key);
+
+				if (value instanceof String && NodeInterface.type.dbName().equals(key)) {
+
+					out.write(TAG_DICTIONARY_STRING);
+					writeDictionaryString((String)value);
+
+				} else {
+
+					writeValue(value);
+				}
+			}
+		}
+
+		private void writeValue(final Object value) throws IOException {
+
+			final int tag = getTag(value);
+
+			out.write(tag);
+
+			if ((tag & TAG_ARRAY) != 0) {
+
+				final int length = Array.getLength(value);
+
+				writeVarLong(length);
+
+				switch (tag & ~TAG_ARRAY) {
+
+					case TAG_BYTE:
+						out.write((byte[])value);
+						break;
+
+					case TAG_SHORT:
+						for (final short s : (short[])value) {
+							writeZigZag(s);
+						}
+						break;
+
+					case TAG_INT:
+						for (final int i : (int[])value) {
+							writeZigZag(i);
+						}
+						break;
+
+					case TAG_LONG:
+						for (final long l : (long[])value) {
+							writeZigZag(l);
+						}
+						break;
+
+					case TAG_FLOAT:
+						for (final float f : (float[])value) {
+							out.writeFloat(f);
+						}
+						break;
+
+					case TAG_DOUBLE:
+						for (final double d : (double[])value) {
+							out.writeDouble(d);
+						}
+						break;
+
+					case TAG_CHAR:
+						for (final char c : (char[])value) {
+							writeVarLong(c);
+						}
+						break;
+
+					case TAG_STRING:
+						for (final String str : (String[])value) {
+							writeString(str);
+						}
+						break;
+
+					case TAG_BOOLEAN:
+						for (final boolean b : (boolean[])value) {
+							out.writeBoolean(b);
+						}
+						break;
+				}
+
+			} else {
+
+				switch (tag) {
+
+					case TAG_BYTE:
+						out.writeByte((Byte)value);
+						break;
+
+					case TAG_SHORT:
+						writeZigZag((Short)value);
+						break;
+
+					case TAG_INT:
+						writeZigZag((Integer)value);
+						break;
+
+					case TAG_LONG:
+						writeZigZag((Long)value);
+						break;
+
+					case TAG_FLOAT:
+						out.writeFloat((Float)value);
+						break;
+
+					case TAG_DOUBLE:
+						out.writeDouble((Double)value);
+						break;
+
+					case TAG_CHAR:
+						writeVarLong((Character)value);
+						break;
+
+					case TAG_STRING:
+						writeString((String)value);
+						break;
+
+					case TAG_BOOLEAN:
+						out.writeBoolean((Boolean)value);
+						break;
+				}
+			}
+		}
+
+		private void writeUuid(final String uuid) throws IOException {
+
+			if (uuid.length() == 32 && uuid.matches("[0-9a-f]+")) {
+
+				out.write(1);
+				out.writeLong((Long.parseLong(uuid.substring( 0,  8), 16) << 32) | Long.parseLong(uuid.substring( 8, 16), 16));
+				out.writeLong((Long.parseLong(uuid.substring(16, 24), 16) << 32) | Long.parseLong(uuid.substring(24, 32), 16));
+
+			} else {
+
+				out.write(0);
+				writeString(uuid);
+			}
+		}
+
+		private void writeDictionaryString(final String value) throws IOException {
+
+			final Integer index = dictionary.get(value);
+			if (index != null) {
+
+				writeVarLong(index + 1);
+
+			} else {
+
+				writeVarLong(0);
+				writeString(value);
+
+				dictionary.put(value, dictionary.size());
+			}
+		}
+
+		private void writeString(final String value) throws IOException {
+
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+			writeVarLong(bytes.length);
+			out.write(bytes);
+		}
+
+		private void writeZigZag(final long value) throws IOException {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		private void writeVarLong(long value) throws IOException {
+
+			while ((value & ~0x7FL) != 0L) {
+
+				out.write((int)((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+
+			out.write((int)value);
+		}
+
+		private static int getTag(final Object value) {
+
+			if (value instanceof String)    { return TAG_STRING; }
+			if (value instanceof Long)      { return TAG_LONG; }
+			if (value instanceof Integer)   { return TAG_INT; }
+			if (value instanceof Boolean)   { return TAG_BOOLEAN; }
+			if (value instanceof Double)    { return TAG_DOUBLE; }
+			if (value instanceof Float)     { return TAG_FLOAT; }
+			if (value instanceof Short)     { return TAG_SHORT; }
+			if (value instanceof Byte)      { return TAG_BYTE; }
+			if (value instanceof Character) { return TAG_CHAR; }
+			if (value instanceof String[])  { return TAG_ARRAY | TAG_STRING; }
+			if (value instanceof long[])    { return TAG_ARRAY | TAG_LONG; }
+			if (value instanceof int[])     { return TAG_ARRAY | TAG_INT; }
+			if (value instanceof boolean[]) { return TAG_ARRAY | TAG_BOOLEAN; }
+			if (value instanceof double[])  { return TAG_ARRAY | TAG_DOUBLE; }
+			if (value instanceof float[])   { return TAG_ARRAY | TAG_FLOAT; }
+			if (value instanceof short[])   { return TAG_ARRAY | TAG_SHORT; }
+			if (value instanceof byte[])    { return TAG_ARRAY | TAG_BYTE; }
+			if (value instanceof char[])    { return TAG_ARRAY | TAG_CHAR; }
+
+			return -1;
+		}
+	}
+
+	/**
+	 * Decodes a chunk of the binary format, see {@link BinaryWriter}.
+	 */
+	private static class BinaryReader {
+
+		private final List<String> dictionary = new ArrayList<>();
+		private DataInputStream in            = null;
+
+		public BinaryReader(final InputStream inputStream) {
+			this.in = new DataInputStream(inputStream);
+		}
+
+		public void readHeader() throws IOException {
+
+			final byte[] magic = new byte[BINARY_MAGIC.length];
+
+			in.readFully(magic);
+
+			if (!Arrays.equals(BINARY_MAGIC, magic)) {
+				throw new IOException("Invalid binary export, unknown chunk header");
+			}
+
+			final int version = in.readUnsignedByte();
+			if (version > BINARY_FORMAT_VERSION) {
+
+				throw new IOException("Unsupported binary export version " + version);
+			}
+		}
+
+		/**
+		 * @return the next object type, or -1 at the end of the chunk
+		 */
+		public int read() throws IOException {
+			return in.read();
+		}
+
+		public int readVarInt() throws IOException {
+			return (int)readVarLong();
+		}
+
+		public String readUuid() throws IOException {
+
+			if (in.readUnsignedByte() == 1) {
+
+				final char[] buf = new char[32];
+
+				toHex(in.readLong(), buf, 0);
+				toHex(in.readLong(), buf, 16);
+
+				return new String(buf);
+			}
+
+			return readString();
+		}
+
+		public String readDictionaryString() throws IOException {
+
+			final int index = readVarInt();
+			if (index == 0) {
+
+				final String value = readString();
+				dictionary.add(value);
+
+				return value;
+			}
+
+			return dictionary.get(index - 1);
+		}
+
+		public Object readValue() throws IOException {
+
+			final int tag = in.readUnsignedByte();
+
+			if (tag == TAG_DICTIONARY_STRING) {
+				return readDictionaryString();
+			}
+
+			if ((tag & TAG_ARRAY) != 0) {
+				return readArray(tag & ~TAG_ARRAY);
+			}
+
+			switch (tag) {
+
+				case TAG_BYTE:    return in.readByte();
+				case TAG_SHORT:   return (short)readZigZag();
+				case TAG_INT:     return (int)readZigZag();
+				case TAG_LONG:    return readZigZag();
+				case TAG_FLOAT:   return in.readFloat();
+				case TAG_DOUBLE:  return in.readDouble();
+				case TAG_CHAR:    return (char)readVarLong();
+				case TAG_STRING:  return readString();
+				case TAG_BOOLEAN: return in.readBoolean();
+			}
+
+			throw new IOException("Unsupported value type " + tag + " in binary export");
+		}
+
+		// ----- private methods -----
+		private Object readArray(final int tag) throws IOException {
+
+			final int length = readVarInt();
+
+			switch (tag) {
+
+				case TAG_BYTE: {
+					final byte[] array = new byte[length];
+					in.readFully(array);
+					return array;
+				}
+
+				case TAG_SHORT: {
+					final short[] array = new short[length];
+					for (int i=0; i<length; i++) { array[i] = (short)readZigZag(); }
+					return array;
+				}
+
+				case TAG_INT: {
+					final int[] array = new int[length];
+					for (int i=0; i<length; i++) { array[i] = (int)readZigZag(); }
+					return array;
+				}
+
+				case TAG_LONG: {
+					final long[] array = new long[length];
+					for (int i=0; i<length; i++) { array[i] = readZigZag(); }
+					return array;
+				}
+
+				case TAG_FLOAT: {
+					final float[] array = new float[length];
+					for (int i=0; i<length; i++) { array[i] = in.readFloat(); }
+					return array;
+				}
+
+				case TAG_DOUBLE: {
+					final double[] array = new double[length];
+					for (int i=0; i<length; i++) { array[i] = in.readDouble(); }
+					return array;
+				}
+
+				case TAG_CHAR: {
+					final char[] array = new char[length];
+					for (int i=0; i<length; i++) { array[i] = (char)readVarLong(); }
+					return array;
+				}
+
+				case TAG_STRING: {
+					final String[] array = new String[length];
+					for (int i=0; i<length; i++) { array[i] = readString(); }
+					return array;
+				}
+
+				case TAG_BOOLEAN: {
+					final boolean[] array = new boolean[length];
+					for (int i=0; i<length; i++) { array[i] = in.readBoolean(); }
+					return array;
+				}
+			}
+
+			throw new IOException("Unsupported array type " + tag + " in binary export");
+		}
+
+		private String readString() throws IOException {
+
+			final byte[] bytes = new byte[readVarInt()];
+
+			in.readFully(bytes);
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private long readZigZag() throws IOException {
+
+			final long value = readVarLong();
+
+			return (value >>> 1) ^ -(value & 1L);
+		}
+
+		private long readVarLong() throws IOException {
+
+			long value = 0L;
+
+			for (int shift=0; shift<64; shift+=7) {
+
+				final int b = in.readUnsignedByte();
+
+				value |= (long)(b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+
+			throw new IOException("Malformed varint in binary export");
+		}
+
+		private static void toHex(final long value, final char[] buf, final int offset) {
+
+			for (int i=0; i<16; i++) {
+				buf[offset + i] = Character.forDigit((int)((value >>> (60 - 4 * i)) & 0xF), 16);
+			}
+		}
+	}
+
+	/**
+	 * A compressed chunk of a binary export.
+	 */
+	private static class Chunk {
+
+		private String name = null;
+		private byte[] data = null;
+		private long crc    = 0L;
+
+		public Chunk(final String name, final byte[] data, final long crc) {
+
+			this.name = name;
+			this.data = data;
+			this.crc  = crc;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
 	}
 }
@@ -19,8 +19,11 @@
 package org.structr.core.graph;
 
 
-import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import org.neo4j.graphdb.GraphDatabaseService;
 
@@ -29,6 +32,7 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import java.util.logging.Logger;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.Metrics;
 import org.structr.core.StructrTransactionListener;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.property.PropertyKey;
@@ -54,12 +58,52 @@ import org.structr.core.property.PropertyKey;
 public class TransactionCommand extends NodeServiceCommand implements AutoCloseable {
 
 	private static final Logger logger                                  = Logger.getLogger(TransactionCommand.class.getName());
-	private static final Set<StructrTransactionListener> listeners      = new LinkedHashSet<>();
+	private static final Set<StructrTransactionListener> listeners      = new CopyOnWriteArraySet<>();
 	private static final ThreadLocal<ModificationQueue> queues          = new ThreadLocal<>();
 	private static final ThreadLocal<ErrorBuffer> buffers               = new ThreadLocal<>();
 	private static final ThreadLocal<TransactionCommand> currentCommand = new ThreadLocal<>();
 	private static final ThreadLocal<TransactionReference> transactions = new ThreadLocal<>();
+	private static final ThreadLocal<Set<String>> lockedKeys            = new ThreadLocal<>();
 	private static final MultiSemaphore                    semaphore    = new MultiSemaphore();
+	private static final TransactionEventDispatcher eventDispatcher     = new TransactionEventDispatcher();
+	private static final Metrics.Timer commitTimer                      = Metrics.timer("tx.commit");
+	private static final Metrics.Timer rollbackTimer                    = Metrics.timer("tx.rollback");
+	private static final AtomicLong beginCount                          = Metrics.counter("tx.begin");
+
+	static {
+
+		Metrics.gauge("tx.lock.acquisitions", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return semaphore.getAcquisitionCount();
+			}
+		});
+
+		Metrics.gauge("tx.lock.contentions", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return semaphore.getContentionCount();
+			}
+		});
+
+		Metrics.gauge("tx.lock.totalWaitTime", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return semaphore.getTotalWaitTime(TimeUnit.MILLISECONDS);
+			}
+		});
+
+		Metrics.gauge("tx.lock.maxWaitTime", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return semaphore.getMaxWaitTime(TimeUnit.MILLISECONDS);
+			}
+		});
+	}
 
 	public TransactionCommand beginTx() {
 		
@@ -70,6 +114,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 		
 			// start new transaction
 			tx = new TransactionReference(graphDb.beginTx());
+			beginCount.incrementAndGet();
 			
 			queues.set(new ModificationQueue());
 			buffers.set(new ErrorBuffer());
@@ -111,21 +156,26 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, errorBuffer);
 			}
 
-			// 2. fetch all types of entities modified in this tx
-			Set<String> synchronizationKeys = modificationQueue.getSynchronizationKeys();
+			// 2. fetch all property values modified in this tx that need synchronization
+			final Set<String> synchronizationKeys = new TreeSet<>(modificationQueue.getSynchronizationKeys());
+
+			// release locks from an earlier commit attempt of this transaction
+			releaseLocks();
 
 			// we need to protect the validation and indexing part of every transaction
 			// from being entered multiple times in the presence of validators
-			// 3. acquire semaphores for each modified type
+			// 3. acquire locks for each modified value
 			try { semaphore.acquire(synchronizationKeys); } catch (InterruptedException iex) { return; }
 
-			// finally, do validation under the protection of the semaphores for each type
+			lockedKeys.set(synchronizationKeys);
+
+			// finally, do validation under the protection of the locks for each value
 			if (!modificationQueue.doValidation(securityContext, errorBuffer, doValidation)) {
 
 				tx.failure();
 
-				// release semaphores as the transaction is now finished
-				semaphore.release(synchronizationKeys);	// careful: this can be null
+				// release locks as the transaction is now finished
+				releaseLocks();
 
 				// create error
 				throw new FrameworkException(422, errorBuffer);
@@ -138,8 +188,8 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				t.printStackTrace();
 			}
 
-			// release semaphores as the transaction is now finished
-			semaphore.release(synchronizationKeys);	// careful: this can be null
+			// locks are released in finishTx() after the
+			// transaction is actually written to the database
 		}
 	}
 	
@@ -160,11 +210,31 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				currentCommand.remove();
 				transactions.remove();
 
+				boolean committed = false;
+
 				try {
 					tx.close();
+
+					committed = tx.isSuccessful();
 					
 				} catch (Throwable t) {
 					t.printStackTrace();
+
+				} finally {
+
+					if (committed) {
+						commitTimer.updateSince(tx.getStartTime());
+					} else {
+						rollbackTimer.updateSince(tx.getStartTime());
+
+						if (modificationQueue != null) {
+							modificationQueue.afterRollback();
+						}
+					}
+
+
+					// release locks as the transaction is now finished
+					releaseLocks();
 				}
 				
 			} else {
@@ -335,11 +405,26 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 	
 	public static void removeTransactionListener(final StructrTransactionListener listener) {
 		listeners.remove(listener);
+		eventDispatcher.removeListener(listener);
 	}
 	
 	public static Set<StructrTransactionListener> getTransactionListeners() {
 		return listeners;
 	}
+
+	public static TransactionEventDispatcher getEventDispatcher() {
+		return eventDispatcher;
+	}
+	
+	/**
+	 * Returns the locks that protect the validation phase of concurrent
+	 * transactions, e.g. to inspect lock wait times.
+	 *
+	 * @return the commit locks
+	 */
+	public static MultiSemaphore getCommitLocks() {
+		return semaphore;
+	}
 	
 	public static boolean inTransaction() {
 		return currentCommand.get() != null;
@@ -348,4 +433,14 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 	private ModificationQueue getModificationQueue() {
 		return queues.get();
 	}
+
+	private static void releaseLocks() {
+
+		final Set<String> keys = lockedKeys.get();
+		if (keys != null) {
+
+			lockedKeys.remove();
+			semaphore.release(keys);
+		}
+	}
 }
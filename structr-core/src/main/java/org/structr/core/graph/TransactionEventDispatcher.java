@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Metrics;
+import org.structr.core.Services;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
+
+/**
+ * Delivers the modification events of committed transactions to the
+ * registered {@link StructrTransactionListener}s.
+ *
+ * Each listener has its own bounded queue and worker thread, so events are
+ * delivered to a listener in commit order, and a slow listener does neither
+ * delay the committing thread nor other listeners. When a queue is full,
+ * the events are dropped for that listener. Dropped events are counted in
+ * the "tx.events.dropped" metrics, and a warning with the number of drops
+ * is logged at most every ten seconds per listener. Setting
+ * "transaction.listeners.async" to false restores synchronous delivery.
+ * After {@link #shutdown()}, events are discarded until the dispatcher is
+ * started again.
+ *
+ * @author Christian Morgner
+ */
+public class TransactionEventDispatcher {
+
+	private static final Logger logger          = Logger.getLogger(TransactionEventDispatcher.class.getName());
+	private static final long DROP_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+	private final Map<StructrTransactionListener, ListenerQueue> queues = new ConcurrentHashMap<>();
+	private final AtomicLong dispatched                                 = Metrics.counter("tx.events.dispatched");
+	private final AtomicLong dropped                                    = Metrics.counter("tx.events.dropped");
+	private final AtomicLong droppedEvents                              = Metrics.counter("tx.events.dropped.events");
+	private final Metrics.Timer lag                                     = Metrics.timer("tx.events.lag");
+	private final Metrics.Timer listenerTime                            = Metrics.timer("tx.events.listener");
+	private volatile boolean running                                    = true;
+
+	public TransactionEventDispatcher() {
+
+		Metrics.gauge("tx.events.queued", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+
+				int size = 0;
+
+				for (final ListenerQueue queue : queues.values()) {
+					size += queue.size();
+				}
+
+				return size;
+			}
+		});
+	}
+
+	public void dispatch(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+		if (!running || modificationEvents == null || modificationEvents.isEmpty()) {
+			return;
+		}
+
+		final boolean async = !"false".equals(StructrApp.getConfigurationValue(Services.TX_LISTENERS_ASYNC, "true"));
+		final Batch batch   = new Batch(securityContext, modificationEvents);
+
+		for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+
+			if (async) {
+
+				final ListenerQueue queue = getQueue(listener);
+				if (queue != null) {
+
+					queue.offer(batch);
+				}
+
+			} else {
+
+				deliver(listener, batch);
+			}
+		}
+	}
+
+	public void removeListener(final StructrTransactionListener listener) {
+
+		final ListenerQueue queue = queues.remove(listener);
+		if (queue != null) {
+
+			queue.shutdown();
+		}
+	}
+
+	/**
+	 * Enables dispatching of events, called when the database is started.
+	 */
+	public void start() {
+		running = true;
+	}
+
+	/**
+	 * Stops all worker threads after the events that are already queued
+	 * have been delivered. Events of later commits are discarded.
+	 */
+	public void shutdown() {
+
+		synchronized (queues) {
+			running = false;
+		}
+
+		for (final ListenerQueue queue : queues.values()) {
+			queue.shutdown();
+		}
+
+		queues.clear();
+	}
+
+	// ----- private methods -----
+	private ListenerQueue getQueue(final StructrTransactionListener listener) {
+
+		ListenerQueue queue = queues.get(listener);
+		if (queue == null) {
+
+			synchronized (queues) {
+
+				queue = queues.get(listener);
+				if (queue == null && running) {
+
+					final int capacity = NumberUtils.toInt(StructrApp.getConfigurationValue(Services.TX_LISTENERS_QUEUE_SIZE, "1000"), 1000);
+
+					queue = new ListenerQueue(listener, capacity);
+					queues.put(listener, queue);
+
+					queue.start();
+				}
+			}
+		}
+
+		return queue;
+	}
+
+	private void deliver(final StructrTransactionListener listener, final Batch batch) {
+
+		final long t0 = System.nanoTime();
+
+		try (final Tx tx = StructrApp.getInstance(batch.securityContext).tx()) {
+
+			listener.transactionCommited(batch.securityContext, batch.modificationEvents);
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.WARNING, "Unable to notify transaction listener {0}: {1}", new Object[] { listener, fex.getMessage() });
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Transaction listener " + listener + " failed", t);
+		}
+
+		listenerTime.updateSince(t0);
+		dispatched.incrementAndGet();
+	}
+
+	// ----- nested classes -----
+	private static class Batch {
+
+		private List<ModificationEvent> modificationEvents = null;
+		private SecurityContext securityContext            = null;
+		private long creationTime                          = System.nanoTime();
+
+		public Batch(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+			this.securityContext    = securityContext;
+			this.modificationEvents = modificationEvents;
+		}
+	}
+
+	private class ListenerQueue extends Thread {
+
+		private StructrTransactionListener listener = null;
+		private BlockingQueue<Batch> queue          = null;
+		private AtomicLong listenerDropped          = null;
+		private AtomicLong unreportedDrops          = new AtomicLong();
+		private AtomicLong lastDropReport           = new AtomicLong(System.nanoTime() - DROP_LOG_INTERVAL);
+		private volatile boolean running            = true;
+
+		public ListenerQueue(final StructrTransactionListener listener, final int capacity) {
+
+			super("TransactionEventDispatcher-" + listener.getClass().getSimpleName());
+
+			this.queue           = new ArrayBlockingQueue<>(Math.max(1, capacity));
+			this.listener        = listener;
+			this.listenerDropped = Metrics.counter("tx.events.dropped." + listener.getClass().getSimpleName());
+
+			setDaemon(true);
+		}
+
+		public void offer(final Batch batch) {
+
+			// never block the committing thread
+			if (running && queue.offer(batch)) {
+				return;
+			}
+
+			dropped.incrementAndGet();
+			droppedEvents.addAndGet(batch.modificationEvents.size());
+			listenerDropped.incrementAndGet();
+
+			reportDrop();
+		}
+
+		public int size() {
+			return queue.size();
+		}
+
+		/**
+		 * Logs the number of dropped transactions at most once per
+		 * DROP_LOG_INTERVAL, so a listener that does not keep up does
+		 * not flood the log.
+		 */
+		private void reportDrop() {
+
+			unreportedDrops.incrementAndGet();
+
+			final long now  = System.nanoTime();
+			final long last = lastDropReport.get();
+
+			if (now - last >= DROP_LOG_INTERVAL && lastDropReport.compareAndSet(last, now)) {
+
+				final long reported = unreportedDrops.getAndSet(0L);
+
+				logger.log(Level.WARNING, "Dropped the modification events of {0} transaction(s) for transaction listener {1} because its queue is {2}, {3} dropped in total.",
+					new Object[] { reported, listener, running ? "full" : "shut down", listenerDropped.get() }
+				);
+			}
+		}
+
+		public void shutdown() {
+
+			running = false;
+
+			try {
+				join(TimeUnit.SECONDS.toMillis(10));
+
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+
+			while (running || !queue.isEmpty()) {
+
+				try {
+
+					final Batch batch = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (batch != null) {
+
+						lag.updateSince(batch.creationTime);
+
+						deliver(listener, batch);
+					}
+
+				} catch (InterruptedException iex) {
+
+					break;
+				}
+			}
+		}
+	}
+}
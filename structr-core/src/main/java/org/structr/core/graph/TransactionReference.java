@@ -31,6 +31,7 @@ public class TransactionReference implements Transaction {
 	private Transaction tx     = null;
 	private int referenceCount = 0;
 	private boolean successful = false;
+	private long startTime     = System.nanoTime();
 	
 	public TransactionReference(final Transaction tx) {
 		this.tx = tx;
@@ -55,6 +56,16 @@ public class TransactionReference implements Transaction {
 	public int getReferenceCount() {
 		return referenceCount;
 	}
+
+	/**
+	 * Returns the value of {@link System#nanoTime()} at which
+	 * this transaction was started.
+	 *
+	 * @return the start time
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
 	
 	// ----- interface Transaction -----
 	@Override
@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.StructrTransactionListener;
 import org.structr.core.app.StructrApp;
 
 /**
@@ -77,12 +76,9 @@ public class Tx implements AutoCloseable {
 
 					modificationQueue.doOuterCallbacks(securityContext);
 
-					// notify listeners
+					// notify listeners, asynchronously by default
 					final List<ModificationEvent> modificationEvents = modificationQueue.getModificationEvents();
-					for (StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
-
-						listener.transactionCommited(securityContext, modificationEvents);
-					}
+					TransactionCommand.getEventDispatcher().dispatch(securityContext, modificationEvents);
 
 					modificationQueue.clear();
 				}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map from UUIDs to database ids that is stored in a memory-mapped
+ * temporary file instead of the heap, so that the import of large databases
+ * does not need memory proportional to the number of nodes.
+ *
+ * UUIDs in Structr's default format (32 hex digits) are stored as two longs
+ * in an open-addressing hash table with linear probing. Other identifiers,
+ * which only occur in legacy databases, are kept in an on-heap map.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Christian Morgner
+ */
+public class UuidMap implements Closeable {
+
+	private static final int SLOT_SIZE    = 24;
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	private final Map<String, Long> legacyIds = new HashMap<>();
+	private MappedByteBuffer buffer           = null;
+	private RandomAccessFile file             = null;
+	private File tempFile                     = null;
+	private int capacity                      = 0;
+	private int size                          = 0;
+
+	public UuidMap() throws IOException {
+		this(1 << 16);
+	}
+
+	public UuidMap(final int initialCapacity) throws IOException {
+
+		int newCapacity = 16;
+		while (newCapacity < initialCapacity && newCapacity < MAX_CAPACITY) {
+			newCapacity <<= 1;
+		}
+
+		allocate(newCapacity);
+	}
+
+	public void put(final String uuid, final long id) throws IOException {
+
+		if (uuid == null) {
+			return;
+		}
+
+		final long hi = parseHex(uuid, 0);
+		final long lo = parseHex(uuid, 16);
+
+		if (uuid.length() != 32 || hi == -1L || lo == -1L || (size + 1) * 2 > MAX_CAPACITY) {
+
+			legacyIds.put(uuid, id);
+			return;
+		}
+
+		if ((size + 1) * 2 > capacity) {
+			grow();
+		}
+
+		if (insert(hi, lo, id)) {
+			size++;
+		}
+	}
+
+	/**
+	 * @param uuid
+	 * @return the id that is stored for the given UUID, or -1
+	 */
+	public long get(final String uuid) {
+
+		if (uuid == null) {
+			return -1L;
+		}
+
+		final long hi = parseHex(uuid, 0);
+		final long lo = parseHex(uuid, 16);
+
+		if (uuid.length() == 32 && hi != -1L && lo != -1L) {
+
+			final int mask = capacity - 1;
+			int slot       = hash(hi, lo) & mask;
+
+			while (true) {
+
+				final int offset  = slot * SLOT_SIZE;
+				final long stored = buffer.getLong(offset + 16);
+
+				if (stored == 0L) {
+					break;
+				}
+
+				if (buffer.getLong(offset) == hi && buffer.getLong(offset + 8) == lo) {
+					return stored - 1;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		final Long legacyId = legacyIds.get(uuid);
+		if (legacyId != null) {
+
+			return legacyId;
+		}
+
+		return -1L;
+	}
+
+	public int size() {
+		return size + legacyIds.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		release();
+		legacyIds.clear();
+	}
+
+	// ----- private methods -----
+	private void allocate(final int newCapacity) throws IOException {
+
+		tempFile = File.createTempFile("structr-uuids", ".tmp");
+		tempFile.deleteOnExit();
+
+		file = new RandomAccessFile(tempFile, "rw");
+		file.setLength((long)newCapacity * SLOT_SIZE);
+
+		buffer   = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long)newCapacity * SLOT_SIZE);
+		capacity = newCapacity;
+		size     = 0;
+	}
+
+	private void release() throws IOException {
+
+		buffer = null;
+
+		if (file != null) {
+
+			file.close();
+			file = null;
+		}
+
+		if (tempFile != null) {
+
+			tempFile.delete();
+			tempFile = null;
+		}
+	}
+
+	private void grow() throws IOException {
+
+		final MappedByteBuffer oldBuffer = buffer;
+		final RandomAccessFile oldFile   = file;
+		final File oldTempFile           = tempFile;
+		final int oldCapacity            = capacity;
+
+		allocate(capacity << 1);
+
+		for (int i=0; i<oldCapacity; i++) {
+
+			final int offset = i * SLOT_SIZE;
+			final long id    = oldBuffer.getLong(offset + 16);
+
+			if (id != 0L) {
+
+				insert(oldBuffer.getLong(offset), oldBuffer.getLong(offset + 8), id - 1);
+				size++;
+			}
+		}
+
+		oldFile.close();
+		oldTempFile.delete();
+	}
+
+	private boolean insert(final long hi, final long lo, final long id) {
+
+		final int mask = capacity - 1;
+		int slot       = hash(hi, lo) & mask;
+
+		while (true) {
+
+			final int offset  = slot * SLOT_SIZE;
+			final long stored = buffer.getLong(offset + 16);
+
+			if (stored == 0L) {
+
+				buffer.putLong(offset,      hi);
+				buffer.putLong(offset + 8,  lo);
+				buffer.putLong(offset + 16, id + 1);
+
+				return true;
+			}
+
+			if (buffer.getLong(offset) == hi && buffer.getLong(offset + 8) == lo) {
+
+				buffer.putLong(offset + 16, id + 1);
+
+				return false;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static int hash(final long hi, final long lo) {
+
+		long h = hi * 31 + lo;
+
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+
+		return (int)h;
+	}
+
+	/**
+	 * Parses 16 hex digits starting at the given offset.
+	 *
+	 * @return the parsed value, or -1 if the input is not a hex string
+	 */
+	private static long parseHex(final String uuid, final int start) {
+
+		if (uuid.length() < start + 16) {
+			return -1L;
+		}
+
+		long value = 0L;
+
+		for (int i=start; i<start+16; i++) {
+
+			final int digit = Character.digit(uuid.charAt(i), 16);
+			if (digit < 0) {
+				return -1L;
+			}
+
+			value = (value << 4) | digit;
+		}
+
+		return value;
+	}
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.lucene.search.BooleanClause;
@@ -48,13 +49,16 @@ import org.structr.common.error.FrameworkException;
 import org.structr.common.geo.GeoCodingResult;
 import org.structr.common.geo.GeoHelper;
 import org.structr.core.GraphObject;
+import org.structr.core.Metrics;
 import org.structr.core.Result;
+import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeService;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.PropertyKey;
@@ -116,6 +120,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	private boolean includeDeletedAndHidden    = false;
 	private boolean sortDescending             = false;
 	private boolean exactSearch                = true;
+	private boolean approximateCount           = false;
 	private String offsetId                    = null;
 	private int pageSize                       = Integer.MAX_VALUE;
 	private int page                           = 1;
@@ -149,6 +154,9 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			
 		}
 
+		// in approximate mode, hits before the requested page are not instantiated
+		factory.setApproximateCount(approximateCount);
+
 		// At this point, all search attributes are ready
 		List<SourceSearchAttribute> sources    = new ArrayList<>();
 		boolean hasEmptySearchFields           = false;
@@ -245,10 +253,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 					LayerNodeIndex spatialIndex = this.getSpatialIndex();
 					if (spatialIndex != null) {
 
-						synchronized (spatialIndex) {
+						final Lock readLock = Services.getInstance().getService(NodeService.class).getSpatialIndexLock().readLock();
+						final long t0       = System.nanoTime();
+
+						readLock.lock();
 
+						try {
 							hits = spatialIndex.query(LayerNodeIndex.WITHIN_DISTANCE_QUERY, params);
+
+						} finally {
+
+							readLock.unlock();
 						}
+
+						Metrics.timer("query.spatial").updateSince(t0);
 					}
 				}
 					
@@ -260,22 +278,24 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 				index = getKeywordIndex();
 
-				synchronized (index) {
+				final long t0 = System.nanoTime();
 
-					try {
-						hits = index.query(queryContext);
+				// Lucene indices can be queried concurrently, no synchronization needed
+				try {
+					hits = index.query(queryContext);
 
-					} catch (NumberFormatException nfe) {
+				} catch (NumberFormatException nfe) {
 
-						logger.log(Level.SEVERE, "Could not sort results", nfe);
+					logger.log(Level.SEVERE, "Could not sort results", nfe);
 
-						// retry without sorting
-						queryContext.sort(null);
-						hits = index.query(queryContext);
+					// retry without sorting
+					queryContext.sort(null);
+					hits = index.query(queryContext);
 
-					}
 				}
 
+				Metrics.timer("query.keyword").updateSince(t0);
+
 				// all luecene query, do not filter results
 				filterResults = hasEmptySearchFields;
 				intermediateResult = factory.instantiate(hits);
@@ -285,22 +305,24 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				// Default: Mixed or fulltext-only search: Use fulltext index
 				index = getFulltextIndex();
 
-				synchronized (index) {
+				final long t0 = System.nanoTime();
 
-					try {
-						hits = index.query(queryContext);
+				// Lucene indices can be queried concurrently, no synchronization needed
+				try {
+					hits = index.query(queryContext);
 
-					} catch (NumberFormatException nfe) {
+				} catch (NumberFormatException nfe) {
 
-						logger.log(Level.SEVERE, "Could not sort results", nfe);
+					logger.log(Level.SEVERE, "Could not sort results", nfe);
 
-						// retry without sorting
-						queryContext.sort(null);
-						hits = index.query(queryContext);
+					// retry without sorting
+					queryContext.sort(null);
+					hits = index.query(queryContext);
 
-					}
 				}
 
+				Metrics.timer("query.fulltext").updateSince(t0);
+
 				// all luecene query, do not filter results
 				filterResults = hasEmptySearchFields;
 				intermediateResult = factory.instantiate(hits);
@@ -315,7 +337,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 			// sorted result set
 			Set<GraphObject> intermediateResultSet = new LinkedHashSet<>(intermediateResult.getResults());
-			List<GraphObject> finalResult          = new LinkedList<>();
+			List<GraphObject> finalResult          = new ArrayList<>(intermediateResultSet.size());
 			int resultCount                        = 0;
 
 			// We need to find out whether there was a source for any of the possible sets that we want to merge.
@@ -539,6 +561,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 	
+	@Override
+	public org.structr.core.app.Query<T> approximateCount(final boolean approximateCount) {
+		this.approximateCount = approximateCount;
+		return this;
+	}
+	
 	@Override
 	public org.structr.core.app.Query<T> uuid(final String uuid) {
 		return and(GraphObject.id, uuid);
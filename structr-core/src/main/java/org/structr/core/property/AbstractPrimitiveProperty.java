@@ -129,6 +129,8 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 				throw new FrameworkException(500, "setProperty outside of transaction.");
 			}
 
+			final Object previousValue = propertyContainer.hasProperty(dbName()) ? propertyContainer.getProperty(dbName()) : null;
+
 			// notify only non-system properties
 			if (!unvalidated) {
 
@@ -138,7 +140,7 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 					TransactionCommand.nodeModified(
 						(AbstractNode)obj,
 						AbstractPrimitiveProperty.this,
-						propertyContainer.hasProperty(dbName()) ? propertyContainer.getProperty(dbName()) : null,
+						previousValue,
 						value
 					);
 
@@ -147,7 +149,7 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 					TransactionCommand.relationshipModified(
 						(AbstractRelationship)obj,
 						AbstractPrimitiveProperty.this,
-						propertyContainer.hasProperty(dbName()) ? propertyContainer.getProperty(dbName()) : null,
+						previousValue,
 						value
 					);
 				}
@@ -190,8 +192,9 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 
 				// do indexing, needs to be done after
 				// setProperty to make spatial index
-				// work
-				if (!isPassivelyIndexed()) {
+				// work, unchanged values are already
+				// indexed
+				if (!isPassivelyIndexed() && (previousValue == null || !previousValue.equals(convertedValue))) {
 
 					index(obj, convertedValue);
 				}
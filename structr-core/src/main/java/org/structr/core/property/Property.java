@@ -23,6 +23,7 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -366,28 +367,37 @@ public abstract class Property<T> implements PropertyKey<T> {
 				Index<Node> index = nodeService.getNodeIndex(indexName);
 				if (index != null) {
 
-					try {
+					// only the spatial index needs to be locked, Lucene indices are thread-safe
+					final Lock writeLock = nodeService.getIndexWriteLock(index);
+					if (writeLock != null) {
+						writeLock.lock();
+					}
 
-						synchronized (index) {
+					try {
 
-							index.remove(dbNode, dbName);
+						index.remove(dbNode, dbName);
 
-							if (value != null && !StringUtils.isBlank(value.toString())) {
-									index.add(dbNode, dbName, value);
+						if (value != null && !StringUtils.isBlank(value.toString())) {
+								index.add(dbNode, dbName, value);
 
-							} else if (isIndexedWhenEmpty()) {
+						} else if (isIndexedWhenEmpty()) {
 
-								value = getValueForEmptyFields();
-								if (value != null) {
+							value = getValueForEmptyFields();
+							if (value != null) {
 
-									index.add(dbNode, dbName, value);
-								}
+								index.add(dbNode, dbName, value);
 							}
 						}
 
 					} catch (Throwable t) {
 
 						logger.log(Level.INFO, "Unable to index property with dbName {0} and value {1} of type {2} on {3}: {4}", new Object[] { dbName, value, this.getClass().getSimpleName(), entity, t } );
+
+					} finally {
+
+						if (writeLock != null) {
+							writeLock.unlock();
+						}
 					}
 				}
 			}
@@ -405,21 +415,18 @@ public abstract class Property<T> implements PropertyKey<T> {
 
 					try {
 
-						synchronized (index) {
-
-							index.remove(dbRel, dbName);
+						index.remove(dbRel, dbName);
 
-							if (value != null && !StringUtils.isBlank(value.toString())) {
+						if (value != null && !StringUtils.isBlank(value.toString())) {
 
-								index.add(dbRel, dbName, value);
+							index.add(dbRel, dbName, value);
 
-							} else if (isIndexedWhenEmpty()) {
+						} else if (isIndexedWhenEmpty()) {
 
-								value = getValueForEmptyFields();
-								if (value != null) {
+							value = getValueForEmptyFields();
+							if (value != null) {
 
-									index.add(dbRel, dbName, value);
-								}
+								index.add(dbRel, dbName, value);
 							}
 						}
 
@@ -204,11 +204,17 @@ public class StartNodes<S extends NodeInterface, T extends NodeInterface> extend
 
 	@Override
 	public void addSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) throws FrameworkException {
-		
-		List<S> list = getProperty(securityContext, obj, false);
-		list.add(s);
-		
-		setProperty(securityContext, obj, list);
+		relation.getSource().add(securityContext, (NodeInterface)obj, s);
+	}
+
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) throws FrameworkException {
+		relation.getSource().remove(securityContext, (NodeInterface)obj, s);
+	}
+
+	@Override
+	public boolean containsSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) {
+		return relation.getSource().contains(securityContext, (NodeInterface)obj, s);
 	}
 
 	@Override
@@ -150,6 +150,11 @@ public class CronEntry implements Delayed {
 				logger.log(Level.WARNING, "Invalid cron expression for task {0}, field 'months': {1}", new Object[] { task, t.getMessage() });
 			}
 
+			// invalid fields have been logged above
+			if (cronEntry.seconds == null || cronEntry.minutes == null || cronEntry.hours == null || cronEntry.days == null || cronEntry.dow == null || cronEntry.months == null) {
+				return null;
+			}
+
 			return cronEntry;
 
 		} else {
@@ -162,6 +167,28 @@ public class CronEntry implements Delayed {
 	}
 
 	// ----- private methods -----
+	private boolean isDayInside(final Calendar calendar) {
+
+		final int day = calendar.get(Calendar.DAY_OF_MONTH);		// DAY_OF_MONTH starts with 1
+		final int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK) - 1;	// DAY_OF_WEEK starts with 1 (sunday)
+
+		// exclude day of week and day from each other (both can match)
+		if (!dow.isIsWildcard() && !days.isIsWildcard()) {
+
+			return dow.isInside(dayOfWeek) || days.isInside(day);
+
+		} else if (!dow.isIsWildcard()) {
+
+			return dow.isInside(dayOfWeek);
+
+		} else if (!days.isIsWildcard()) {
+
+			return days.isInside(day);
+		}
+
+		return true;
+	}
+
 	private static CronField parseField(String field, int minValue, int maxValue) {
 
 		// asterisk: *
@@ -291,77 +318,76 @@ public class CronEntry implements Delayed {
 
 	public long getDelayToNextExecutionInMillis() {
 
-		Calendar now       = GregorianCalendar.getInstance();
-		int nowSeconds     = now.get(Calendar.SECOND);
-		int nowMinutes     = now.get(Calendar.MINUTE);
-		int nowHours       = now.get(Calendar.HOUR_OF_DAY);
-		int nowDays        = now.get(Calendar.DAY_OF_MONTH);		// DAY_OF_MONTH starts with 1
-		int nowDow         = now.get(Calendar.DAY_OF_WEEK) - 1;		// DAY_OF_WEEK starts with 1 (sunday)
-		int nowMonths      = now.get(Calendar.MONTH) + 1;		// MONTH starts with 0 (why???)
-		boolean modified   = true;
-		int maxTries       = 10000;
-		int numTries       = 0;
-
-		while(modified && numTries++ < maxTries) {
-			
-			modified = false;
-			
-			if(!modified && !seconds.isInside(nowSeconds)) {
-				now.add(Calendar.SECOND, 1);
-				modified = true;
+		final long now = System.currentTimeMillis();
+
+		// include the current second
+		return getNextExecutionTime(now - 1000) - now;
+	}
+
+	/**
+	 * Returns the first point in time after the given timestamp at which
+	 * this entry is due. When a field does not match, the search advances
+	 * to the start of the next unit of that field, so the number of steps
+	 * is proportional to the number of fields, not to the distance.
+	 *
+	 * @param after timestamp in milliseconds
+	 * @return the timestamp of the next execution in milliseconds
+	 */
+	public long getNextExecutionTime(final long after) {
+
+		final Calendar next = GregorianCalendar.getInstance();
+		final int maxTries  = 10000;
+
+		next.setTimeInMillis(after);
+		next.set(Calendar.MILLISECOND, 0);
+		next.add(Calendar.SECOND, 1);
+
+		for (int i=0; i<maxTries; i++) {
+
+			if (!months.isInside(next.get(Calendar.MONTH) + 1)) {		// MONTH starts with 0
+
+				next.add(Calendar.MONTH, 1);
+				next.set(Calendar.DAY_OF_MONTH, 1);
+				next.set(Calendar.HOUR_OF_DAY, 0);
+				next.set(Calendar.MINUTE, 0);
+				next.set(Calendar.SECOND, 0);
+				continue;
 			}
-			
-			if(!modified && !minutes.isInside(nowMinutes)) {
-				now.add(Calendar.MINUTE, 1);
-				modified = true;
+
+			if (!isDayInside(next)) {
+
+				next.add(Calendar.DAY_OF_MONTH, 1);
+				next.set(Calendar.HOUR_OF_DAY, 0);
+				next.set(Calendar.MINUTE, 0);
+				next.set(Calendar.SECOND, 0);
+				continue;
 			}
-			
-			if(!modified && !hours.isInside(nowHours)) {
-				now.add(Calendar.HOUR_OF_DAY, 1);
-				modified = true;
+
+			if (!hours.isInside(next.get(Calendar.HOUR_OF_DAY))) {
+
+				next.add(Calendar.HOUR_OF_DAY, 1);
+				next.set(Calendar.MINUTE, 0);
+				next.set(Calendar.SECOND, 0);
+				continue;
 			}
 
-			// exclude day of week and day from each other (both can match)
-			if(!dow.isIsWildcard() && !days.isIsWildcard()) {
-				
-				if(!modified && !(dow.isInside(nowDow) || days.isInside(nowDays))) {
-					now.add(Calendar.DAY_OF_MONTH, 1);
-					modified = true;
-				}
-				
-			} else if(!dow.isIsWildcard()) {
-				
-				if(!modified && !dow.isInside(nowDow)) {
-					now.add(Calendar.DAY_OF_MONTH, 1);
-					modified = true;
-				}
-				
-			} else if(!days.isIsWildcard()) {
-				
-				if(!modified && !days.isInside(nowDays)) {
-					now.add(Calendar.DAY_OF_MONTH, 1);
-					modified = true;
-				}
+			if (!minutes.isInside(next.get(Calendar.MINUTE))) {
+
+				next.add(Calendar.MINUTE, 1);
+				next.set(Calendar.SECOND, 0);
+				continue;
 			}
-			
-			if(!modified && !months.isInside(nowMonths)) {
-				now.add(Calendar.MONTH, 1);
-				modified = true;
+
+			if (!seconds.isInside(next.get(Calendar.SECOND))) {
+
+				next.add(Calendar.SECOND, 1);
+				continue;
 			}
-			
-			nowSeconds     = now.get(Calendar.SECOND);
-			nowMinutes     = now.get(Calendar.MINUTE);
-			nowHours       = now.get(Calendar.HOUR_OF_DAY);
-			nowDays        = now.get(Calendar.DAY_OF_MONTH);	// DAY_OF_MONTH starts with 1
-			nowDow         = now.get(Calendar.DAY_OF_WEEK) - 1;	// DAY_OF_WEEK starts with 1 (sunday)
-			nowMonths      = now.get(Calendar.MONTH) + 1;		// MONTH starts with 0 (why???)
-		}
-		
-		if(numTries == maxTries) {
-			throw new IllegalArgumentException("Unable to determine next cron date for task " + name + ", aborting.");
+
+			return next.getTimeInMillis();
 		}
-		
-		return now.getTimeInMillis() - System.currentTimeMillis();
+
+		throw new IllegalArgumentException("Unable to determine next cron date for task " + name + ", aborting.");
 	}
 
 	public CronField getSeconds() {
@@ -396,9 +422,9 @@ public class CronEntry implements Delayed {
 	@Override
 	public long getDelay(TimeUnit unit) {
 
-		long next = TimeUnit.MILLISECONDS.convert(getDelayToNextExecutionInMillis(), unit);
+		long next = unit.convert(getDelayToNextExecutionInMillis(), TimeUnit.MILLISECONDS);
 
-		logger.log(Level.INFO, "{0} ms until start of task {1}", new Object[] { next, name });
+		logger.log(Level.FINEST, "{0} ms until start of task {1}", new Object[] { next, name });
 
 		return next;
 	}
@@ -18,22 +18,51 @@
  */
 package org.structr.cron;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.structr.agent.AgentService;
 import org.structr.core.Command;
+import org.structr.core.Metrics;
 import org.structr.core.RunnableService;
 import org.structr.core.Services;
 import org.structr.agent.Task;
 import org.structr.common.StructrConf;
-import org.structr.core.app.StructrApp;
 
 /**
  * A service that keeps track of registered tasks and runs
  * them at their scheduled time.
  *
+ * The next execution time of each task is computed once, and the service
+ * thread sleeps until the earliest one is due. Tasks are handed over to
+ * the {@link AgentService}, so long-running tasks do not delay the others.
+ * What happens when a task is due while its previous run is still active
+ * is controlled by the overlap policy of the task, runs that were missed
+ * while the service was down can be repeated according to its catch-up
+ * policy:
+ *
+ * <pre>
+ * CronService.tasks = org.example.MyTask
+ * org.example.MyTask.cronExpression = 0 0 * * * *
+ * org.example.MyTask.overlap = skip|queue|parallel (default: parallel)
+ * org.example.MyTask.catchUp = none|once|all (default: none)
+ * </pre>
+ *
  * @author Christian Morgner
  */
 public class CronService extends Thread implements RunnableService {
@@ -42,56 +71,92 @@ public class CronService extends Thread implements RunnableService {
 
 	public static final String   TASKS             = "CronService.tasks";
 	public static final String   EXPRESSION_SUFFIX = ".cronExpression";
+	public static final String   OVERLAP_SUFFIX    = ".overlap";
+	public static final String   CATCH_UP_SUFFIX   = ".catchUp";
+	public static final String   STATE_FILE        = "cron.state";
 	public static final TimeUnit GRANULARITY_UNIT  = TimeUnit.SECONDS;
 	public static final long     GRANULARITY       = 1;
 	public static final int      NUM_FIELDS        = 6;
+	public static final int      MAX_PENDING_RUNS  = 100;
+
+	public enum OverlapPolicy {
+
+		/** do not start a run while the previous run is active */
+		Skip,
+
+		/** start the run when the previous run has finished */
+		Queue,
+
+		/** start the run immediately */
+		Parallel
+	}
+
+	public enum CatchUpPolicy {
+
+		/** ignore missed runs */
+		None,
+
+		/** run once if at least one run was missed */
+		Once,
+
+		/** repeat all missed runs, up to MAX_PENDING_RUNS */
+		All
+	}
 
-	private LinkedList<CronEntry> cronEntries = new LinkedList<>();
-	private boolean doRun = false;
+	private final Map<String, Class<? extends Task>> taskClassCache = new ConcurrentHashMap<>();
+	private final DelayQueue<ScheduledEntry> scheduledEntries       = new DelayQueue<>();
+	private final List<ScheduledEntry> cronEntries                  = new LinkedList<>();
+	private File stateFile                                          = null;
+	private volatile boolean doRun                                  = false;
 
 	public CronService() {
+
 		super("CronService");
+
+		setDaemon(true);
 	}
 
 	@Override
 	public void run() {
 
 		final Services servicesInstance = Services.getInstance();
-		
+
 		// wait for service layer to be initialized
-		while(!servicesInstance.isInitialized()) {
+		while(doRun && !servicesInstance.isInitialized()) {
 			try { Thread.sleep(1000); } catch(InterruptedException iex) { }
 		}
 
 		// sleep 5 seconds more
 		try { Thread.sleep(5000); } catch(InterruptedException iex) { }
 
+		final Properties state = loadState();
+		final long now         = System.currentTimeMillis();
+
+		for (final ScheduledEntry entry : cronEntries) {
+
+			catchUp(entry, state, now);
+			schedule(entry, now);
+		}
+
 		while(doRun) {
 
-			// sleep for some time
-			try { Thread.sleep(GRANULARITY_UNIT.toMillis(GRANULARITY)); } catch(InterruptedException iex) { }
+			try {
 
-			for(CronEntry entry : cronEntries) {
+				final ScheduledEntry entry = scheduledEntries.take();
+				final long scheduledTime   = entry.nextExecution;
 
-				if(entry.getDelayToNextExecutionInMillis() < GRANULARITY_UNIT.toMillis(GRANULARITY)) {
-					
-					String taskClassName = entry.getName();
+				fire(entry, scheduledTime);
 
-					try {
-						Class taskClass = Class.forName(taskClassName);
-						Task task = (Task)taskClass.newInstance();
+				// do not fire again for runs that have passed in the meantime
+				schedule(entry, Math.max(scheduledTime, System.currentTimeMillis()));
 
-						logger.log(Level.FINE, "Starting task {0}", taskClassName);
-						StructrApp.getInstance().processTasks(task);
+			} catch (InterruptedException iex) {
 
-					} catch(Throwable t) {
-						logger.log(Level.WARNING, "Could not start task {0}: {1}", new Object[] { taskClassName, t.getMessage() } );
-					}
-				}
+				// stopService() interrupts us
 			}
 		}
 	}
-	
+
 	// ----- interface RunnableService -----
 	@Override
 	public void startService() {
@@ -101,7 +166,11 @@ public class CronService extends Thread implements RunnableService {
 
 	@Override
 	public void stopService() {
+
 		this.doRun = false;
+		this.interrupt();
+
+		saveState();
 	}
 
 	@Override
@@ -121,28 +190,44 @@ public class CronService extends Thread implements RunnableService {
 	@Override
 	public void initialize(final StructrConf config) {
 
+		stateFile = new File(config.getProperty(Services.BASE_PATH, "."), STATE_FILE);
+
 		final String taskList = config.getProperty(TASKS, "");
 		if (taskList != null) {
-			
+
 			for(String task : taskList.split("[ \\t]+")) {
 
+				if (task.isEmpty()) {
+					continue;
+				}
+
 				String expression = config.getProperty(task.concat(EXPRESSION_SUFFIX));
 				if(expression != null) {
 
 					CronEntry entry = CronEntry.parse(task, expression);
-					if(entry != null) {
+					if(entry != null && !isSatisfiable(entry)) {
+
+						logger.log(Level.WARNING, "Cron expression {0} for task {1} never matches, ignoring.", new Object[] { expression, task });
+
+					} else if(entry != null) {
+
+						final OverlapPolicy overlap = parsePolicy(OverlapPolicy.class, config.getProperty(task.concat(OVERLAP_SUFFIX)), OverlapPolicy.Parallel);
+						final CatchUpPolicy catchUp = parsePolicy(CatchUpPolicy.class, config.getProperty(task.concat(CATCH_UP_SUFFIX)), CatchUpPolicy.None);
 
 						logger.log(Level.INFO, "Adding cron entry {0} for {1}", new Object[]{ entry, task });
 
-						cronEntries.add(entry);
+						cronEntries.add(new ScheduledEntry(entry, overlap, catchUp));
+
+						// resolve task class once, retried on execution if it fails here
+						getTaskClass(task);
 
 					} else {
-						
+
 						logger.log(Level.WARNING, "Unable to parse cron expression for taks {0}, ignoring.", task);
 					}
 
 				} else {
-					
+
 					logger.log(Level.WARNING, "No cron expression for task {0}, ignoring.", task);
 				}
 			}
@@ -154,4 +239,325 @@ public class CronService extends Thread implements RunnableService {
 		this.doRun = false;
 	}
 
+	// ----- private methods -----
+	/**
+	 * Adds the given entry to the queue of scheduled entries, or drops it
+	 * if no next execution time can be determined.
+	 */
+	private void schedule(final ScheduledEntry entry, final long after) {
+
+		try {
+
+			entry.nextExecution = entry.cronEntry.getNextExecutionTime(after);
+			scheduledEntries.add(entry);
+
+		} catch (IllegalArgumentException iaex) {
+
+			logger.log(Level.WARNING, "Unable to schedule task {0}, removing it: {1}", new Object[] { entry.getName(), iaex.getMessage() });
+		}
+	}
+
+	private boolean isSatisfiable(final CronEntry entry) {
+
+		try {
+
+			entry.getNextExecutionTime(System.currentTimeMillis());
+			return true;
+
+		} catch (IllegalArgumentException iaex) {
+
+			return false;
+		}
+	}
+
+	private void fire(final ScheduledEntry entry, final long scheduledTime) {
+
+		entry.lastExecution = scheduledTime;
+
+		if (entry.start()) {
+
+			dispatch(entry);
+
+		} else if (OverlapPolicy.Skip.equals(entry.overlap)) {
+
+			Metrics.counter("cron.skipped").incrementAndGet();
+			logger.log(Level.FINE, "Previous run of task {0} still active, skipping", entry.getName());
+
+		} else {
+
+			logger.log(Level.FINE, "Previous run of task {0} still active, queueing", entry.getName());
+		}
+
+		if (!CatchUpPolicy.None.equals(entry.catchUp)) {
+			saveState();
+		}
+	}
+
+	/**
+	 * Hands a new task instance over to the agent service, the entry must
+	 * have been started before.
+	 */
+	private void dispatch(final ScheduledEntry entry) {
+
+		final String taskClassName      = entry.getName();
+		final AgentService agentService = Services.getInstance().getService(AgentService.class);
+		Task task                       = null;
+
+		try {
+
+			final Class<? extends Task> taskClass = getTaskClass(taskClassName);
+			if (taskClass != null) {
+
+				task = taskClass.newInstance();
+			}
+
+		} catch(Throwable t) {
+			logger.log(Level.WARNING, "Could not start task {0}: {1}", new Object[] { taskClassName, t.getMessage() } );
+		}
+
+		if (task != null && agentService != null) {
+
+			logger.log(Level.FINE, "Starting task {0}", taskClassName);
+			Metrics.counter("cron.dispatched").incrementAndGet();
+
+			agentService.processTask(task, new Runnable() {
+
+				@Override
+				public void run() {
+
+					if (entry.finish()) {
+
+						// run that was queued while this run was active
+						dispatch(entry);
+					}
+				}
+			});
+
+		} else {
+
+			if (agentService == null) {
+				logger.log(Level.WARNING, "Could not start task {0}: agent service not available", taskClassName);
+			}
+
+			// give up this run and all runs queued behind it
+			while (entry.finish());
+		}
+	}
+
+	private void catchUp(final ScheduledEntry entry, final Properties state, final long now) {
+
+		if (CatchUpPolicy.None.equals(entry.catchUp)) {
+			return;
+		}
+
+		final String lastExecution = state.getProperty(entry.getName());
+		if (lastExecution == null) {
+			return;
+		}
+
+		try {
+
+			long time  = Long.parseLong(lastExecution);
+			int missed = 0;
+
+			while (missed < MAX_PENDING_RUNS) {
+
+				time = entry.cronEntry.getNextExecutionTime(time);
+				if (time > now) {
+					break;
+				}
+
+				missed++;
+			}
+
+			if (missed > 0) {
+
+				final int runs = CatchUpPolicy.Once.equals(entry.catchUp) ? 1 : missed;
+
+				logger.log(Level.INFO, "Task {0} missed {1} run(s), catching up {2}", new Object[] { entry.getName(), missed, runs });
+
+				for (int i=0; i<runs; i++) {
+					fire(entry, now);
+				}
+			}
+
+		} catch (NumberFormatException nfex) {
+
+			logger.log(Level.WARNING, "Invalid last execution time {0} for task {1}", new Object[] { lastExecution, entry.getName() });
+		}
+	}
+
+	private Class<? extends Task> getTaskClass(final String taskClassName) {
+
+		Class<? extends Task> taskClass = taskClassCache.get(taskClassName);
+		if (taskClass == null) {
+
+			try {
+				taskClass = Class.forName(taskClassName).asSubclass(Task.class);
+				taskClassCache.put(taskClassName, taskClass);
+
+			} catch (Throwable t) {
+				logger.log(Level.WARNING, "Could not load task class {0}: {1}", new Object[] { taskClassName, t.getMessage() } );
+			}
+		}
+
+		return taskClass;
+	}
+
+	private Properties loadState() {
+
+		final Properties state = new Properties();
+
+		if (stateFile != null && stateFile.exists()) {
+
+			try (final InputStream is = new FileInputStream(stateFile)) {
+
+				state.load(is);
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to read cron state from {0}: {1}", new Object[] { stateFile, ioex.getMessage() });
+			}
+		}
+
+		return state;
+	}
+
+	private synchronized void saveState() {
+
+		if (stateFile == null) {
+			return;
+		}
+
+		final Properties state = loadState();
+		boolean modified       = false;
+
+		for (final ScheduledEntry entry : cronEntries) {
+
+			if (!CatchUpPolicy.None.equals(entry.catchUp) && entry.lastExecution > 0) {
+
+				state.setProperty(entry.getName(), Long.toString(entry.lastExecution));
+				modified = true;
+			}
+		}
+
+		if (modified) {
+
+			final File tmpFile = new File(stateFile.getPath() + ".tmp");
+
+			try (final OutputStream os = new FileOutputStream(tmpFile)) {
+
+				state.store(os, "Last execution times of cron tasks");
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to write cron state to {0}: {1}", new Object[] { stateFile, ioex.getMessage() });
+				return;
+			}
+
+			try {
+				Files.move(tmpFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to write cron state to {0}: {1}", new Object[] { stateFile, ioex.getMessage() });
+			}
+		}
+	}
+
+	private static <T extends Enum<T>> T parsePolicy(final Class<T> type, final String value, final T defaultValue) {
+
+		if (value != null) {
+
+			for (final T policy : type.getEnumConstants()) {
+
+				if (policy.name().equalsIgnoreCase(value.trim())) {
+					return policy;
+				}
+			}
+
+			logger.log(Level.WARNING, "Invalid value {0} for {1}, using default of {2}", new Object[] { value, type.getSimpleName(), defaultValue });
+		}
+
+		return defaultValue;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A cron entry with its next execution time and the number of active
+	 * and pending runs.
+	 */
+	private static class ScheduledEntry implements Delayed {
+
+		private CronEntry cronEntry         = null;
+		private OverlapPolicy overlap       = null;
+		private CatchUpPolicy catchUp       = null;
+		private volatile long nextExecution = 0L;
+		private volatile long lastExecution = 0L;
+		private int running                 = 0;
+		private int pending                 = 0;
+
+		public ScheduledEntry(final CronEntry cronEntry, final OverlapPolicy overlap, final CatchUpPolicy catchUp) {
+
+			this.cronEntry = cronEntry;
+			this.overlap   = overlap;
+			this.catchUp   = catchUp;
+		}
+
+		public String getName() {
+			return cronEntry.getName();
+		}
+
+		/**
+		 * @return true if a new run must be dispatched now
+		 */
+		public synchronized boolean start() {
+
+			if (running > 0) {
+
+				switch (overlap) {
+
+					case Skip:
+						return false;
+
+					case Queue:
+						if (pending < MAX_PENDING_RUNS) {
+							pending++;
+						}
+						return false;
+				}
+			}
+
+			running++;
+
+			return true;
+		}
+
+		/**
+		 * @return true if a queued run must be dispatched now
+		 */
+		public synchronized boolean finish() {
+
+			if (pending > 0) {
+
+				// the slot is passed on to the queued run
+				pending--;
+				return true;
+			}
+
+			running--;
+
+			return false;
+		}
+
+		@Override
+		public long getDelay(final TimeUnit unit) {
+			return unit.convert(nextExecution - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(final Delayed other) {
+			return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+		}
+	}
 }
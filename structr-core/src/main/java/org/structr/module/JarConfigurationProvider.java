@@ -24,7 +24,9 @@ import org.structr.core.entity.GenericNode;
 
 //~--- JDK imports ------------------------------------------------------------
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
@@ -103,7 +105,11 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	private final Set<PropertyKey> globalKnownPropertyKeys = new LinkedHashSet<>();
 	private final Set<String> dynamicViews = new LinkedHashSet<>();
 
+	// flattened, read-only snapshots of the maps above, replaced as a whole on every registration
+	private volatile Map<Class, TypeMetadata> typeMetadataCache = new ConcurrentHashMap<>();
+
 	private FactoryDefinition factoryDefinition = new DefaultFactoryDefinition();
+	private int indexedResources = 0;
 
 	// ----- interface Configuration -----
 	@Override
@@ -501,6 +507,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		relationshipEntityClassCache.remove(typeName);
 		relationshipPackages.remove(JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE + typeName);
 
+		invalidateTypeMetadata();
 	}
 
 	@Override
@@ -590,6 +597,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		// extract interfaces for later use
 		getInterfacesForType(type);
+
+		invalidateTypeMetadata();
 	}
 
 	/**
@@ -763,15 +772,14 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	@Override
 	public Set<PropertyKey> getPropertySet(Class type, String propertyView) {
 
-		Map<String, Set<PropertyKey>> propertyViewMap = getPropertyViewMapForType(type);
-		Set<PropertyKey> properties = propertyViewMap.get(propertyView);
+		final Set<PropertyKey> properties = getTypeMetadata(type).views.get(propertyView);
+		if (properties != null) {
 
-		if (properties == null) {
-			properties = new LinkedHashSet<>();
+			// read-only
+			return properties;
 		}
 
-		// read-only
-		return Collections.unmodifiableSet(properties);
+		return Collections.emptySet();
 	}
 
 	/**
@@ -799,6 +807,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		// add all properties from set
 		properties.addAll(Arrays.asList(propertySet));
+
+		invalidateTypeMetadata();
 	}
 
 	@Override
@@ -839,8 +849,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 			return null;
 		}
 
-		Map<String, PropertyKey> classJSNamePropertyMap = getClassJSNamePropertyMapForType(type);
-		PropertyKey key = classJSNamePropertyMap.get(jsonName);
+		PropertyKey key = getTypeMetadata(type).jsonNames.get(jsonName);
 
 		if (key == null) {
 
@@ -862,35 +871,13 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	@Override
 	public Set<PropertyValidator> getPropertyValidators(final SecurityContext securityContext, Class type, PropertyKey propertyKey) {
 
-		Set<PropertyValidator> validators = new LinkedHashSet<>();
-		Map<PropertyKey, Set<PropertyValidator>> validatorMap = null;
-		Class localType = type;
-
-		// try all superclasses
-		while (localType != null && !localType.equals(Object.class)) {
-
-			validatorMap = getPropertyValidatorMapForType(localType);
-
-			Set<PropertyValidator> classValidators = validatorMap.get(propertyKey);
-			if (classValidators != null) {
-				validators.addAll(validatorMap.get(propertyKey));
-			}
-
-			// try converters from interfaces as well
-			for (Class interfaceClass : getInterfacesForType(localType)) {
-				Set<PropertyValidator> interfaceValidators = getPropertyValidatorMapForType(interfaceClass).get(propertyKey);
-				if (interfaceValidators != null) {
-					validators.addAll(interfaceValidators);
-				}
-			}
-
-//                      logger.log(Level.INFO, "Validator class {0} found for type {1}", new Object[] { clazz != null ? clazz.getSimpleName() : "null", localType } );
-			// one level up :)
-			localType = localType.getSuperclass();
+		final Set<PropertyValidator> validators = getTypeMetadata(type).validators.get(propertyKey);
+		if (validators != null) {
 
+			return validators;
 		}
 
-		return validators;
+		return Collections.emptySet();
 	}
 
 	// ----- private methods -----
@@ -903,7 +890,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 			scanResource(resourcePath);
 		}
 
-		logger.log(Level.INFO, "{0} JARs scanned", resourcePaths.size());
+		logger.log(Level.INFO, "{0} JARs scanned, {1} of them indexed", new Object[] { resourcePaths.size(), indexedResources });
 
 	}
 
@@ -943,7 +930,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 			try {
 
-				// instantiate class..
+				// instantiate class, static initializers of commands register them
 				Class clazz = Class.forName(className);
 				int modifiers = clazz.getModifiers();
 
@@ -995,6 +982,21 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 			ZipFile zipFile = new ZipFile(new File(resource), ZipFile.OPEN_READ);
 
+			// use the type index created at build time if it exists
+			final ZipEntry indexEntry = zipFile.getEntry(ModuleIndexer.INDEX_RESOURCE);
+			if (indexEntry != null) {
+
+				try (final InputStream is = zipFile.getInputStream(indexEntry)) {
+
+					ModuleIndexer.readIndex(is, classes);
+				}
+
+				zipFile.close();
+				indexedResources++;
+
+				return ret;
+			}
+
 			// conventions that might be useful here:
 			// ignore entries beginning with meta-inf/
 			// handle entries beginning with images/ as IMAGE
@@ -1023,7 +1025,20 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		} else if (resource.endsWith(classesDir)) {
 
-			addClassesRecursively(new File(resource), classesDir, classes);
+			final File indexFile = new File(resource, ModuleIndexer.INDEX_RESOURCE);
+			if (indexFile.exists()) {
+
+				try (final InputStream is = new FileInputStream(indexFile)) {
+
+					ModuleIndexer.readIndex(is, classes);
+				}
+
+				indexedResources++;
+
+			} else {
+
+				addClassesRecursively(new File(resource), classesDir, classes);
+			}
 
 		} else if (resource.endsWith(testClassesDir)) {
 
@@ -1261,21 +1276,6 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		return classJSNamePropertyMap;
 	}
 
-	private Map<PropertyKey, Set<PropertyValidator>> getPropertyValidatorMapForType(Class type) {
-
-		Map<PropertyKey, Set<PropertyValidator>> validatorMap = globalValidatorMap.get(type.getName());
-
-		if (validatorMap == null) {
-
-			validatorMap = new LinkedHashMap<>();
-
-			globalValidatorMap.put(type.getName(), validatorMap);
-
-		}
-
-		return validatorMap;
-	}
-
 	private Map<String, PropertyGroup> getAggregatedPropertyGroupMapForType(Class type) {
 
 		Map<String, PropertyGroup> groupMap = globalAggregatedPropertyGroupMap.get(type.getName());
@@ -1332,6 +1332,29 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		return viewTransformationMap;
 	}
 
+	/**
+	 * Returns the flattened metadata of the given type, which is built on
+	 * first access after a registration.
+	 */
+	private TypeMetadata getTypeMetadata(final Class type) {
+
+		// keep a reference, a concurrent registration replaces the whole cache
+		final Map<Class, TypeMetadata> cache = typeMetadataCache;
+
+		TypeMetadata metadata = cache.get(type);
+		if (metadata == null) {
+
+			metadata = new TypeMetadata(type);
+			cache.put(type, metadata);
+		}
+
+		return metadata;
+	}
+
+	private void invalidateTypeMetadata() {
+		typeMetadataCache = new ConcurrentHashMap<>();
+	}
+
 	private void registerProperty(Class type, PropertyKey propertyKey) {
 
 		getClassDBNamePropertyMapForType(type).put(propertyKey.dbName(), propertyKey);
@@ -1358,4 +1381,70 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		return buf.toString();
 	}
+
+	// ----- nested classes -----
+	/**
+	 * Immutable views, property keys and validators of a single type, with
+	 * the validators of all superclasses and interfaces already merged.
+	 */
+	private class TypeMetadata {
+
+		private final Map<String, Set<PropertyKey>> views                 = new LinkedHashMap<>();
+		private final Map<String, PropertyKey> jsonNames                  = new LinkedHashMap<>();
+		private final Map<PropertyKey, Set<PropertyValidator>> validators = new LinkedHashMap<>();
+
+		public TypeMetadata(final Class type) {
+
+			final Map<String, Set<PropertyKey>> viewMap = globalPropertyViewMap.get(type.getName());
+			if (viewMap != null) {
+
+				for (final Entry<String, Set<PropertyKey>> entry : viewMap.entrySet()) {
+					views.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+				}
+			}
+
+			final Map<String, PropertyKey> jsonNameMap = globalClassJSNamePropertyMap.get(type.getName());
+			if (jsonNameMap != null) {
+
+				jsonNames.putAll(jsonNameMap);
+			}
+
+			final Map<PropertyKey, Set<PropertyValidator>> mergedValidators = new LinkedHashMap<>();
+			Class localType = type;
+
+			// collect validators of all superclasses and their interfaces
+			while (localType != null && !localType.equals(Object.class)) {
+
+				mergeValidators(mergedValidators, globalValidatorMap.get(localType.getName()));
+
+				for (final Class interfaceClass : getInterfacesForType(localType)) {
+					mergeValidators(mergedValidators, globalValidatorMap.get(interfaceClass.getName()));
+				}
+
+				localType = localType.getSuperclass();
+			}
+
+			for (final Entry<PropertyKey, Set<PropertyValidator>> entry : mergedValidators.entrySet()) {
+				validators.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+			}
+		}
+
+		private void mergeValidators(final Map<PropertyKey, Set<PropertyValidator>> target, final Map<PropertyKey, Set<PropertyValidator>> source) {
+
+			if (source != null) {
+
+				for (final Entry<PropertyKey, Set<PropertyValidator>> entry : source.entrySet()) {
+
+					Set<PropertyValidator> set = target.get(entry.getKey());
+					if (set == null) {
+
+						set = new LinkedHashSet<>();
+						target.put(entry.getKey(), set);
+					}
+
+					set.addAll(entry.getValue());
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.agent.Agent;
+import org.structr.core.Service;
+import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.graph.MaintenanceCommand;
+import org.structr.core.graph.NodeInterface;
+
+/**
+ * Creates the type index of a module at build time.
+ *
+ * The index lists all node and relationship types, services and agents of
+ * a module, so that {@link JarConfigurationProvider} does not need to load
+ * every class of the module at startup to find them. Maintenance commands
+ * and websocket commands are indexed too, because they register themselves
+ * in their static initializers. Classes are inspected without being
+ * initialized here. Modules without an index are scanned.
+ *
+ * Usage: java org.structr.module.ModuleIndexer &lt;classes directory&gt;
+ *
+ * @author Christian Morgner
+ */
+public class ModuleIndexer {
+
+	public static final String INDEX_RESOURCE = "META-INF/structr/types.index";
+
+	private static final Logger logger = Logger.getLogger(ModuleIndexer.class.getName());
+	private static final Charset UTF8  = Charset.forName("UTF-8");
+
+	// base classes of commands that register themselves when initialized,
+	// by name because they are not part of this module
+	private static final Set<String> selfRegisteringBaseClasses = new HashSet<>(Arrays.asList(new String[] {
+		"org.structr.websocket.command.AbstractCommand"
+	}));
+
+	public static void main(final String[] args) throws IOException {
+
+		if (args.length != 1) {
+
+			// do not exit, we run inside the build process
+			throw new IllegalArgumentException("Usage: java " + ModuleIndexer.class.getName() + " <classes directory>");
+		}
+
+		final File directory        = new File(args[0]);
+		final File indexFile        = new File(directory, INDEX_RESOURCE);
+		final Set<String> types     = new TreeSet<>();
+		final ClassLoader loader    = Thread.currentThread().getContextClassLoader();
+
+		collectTypes(directory, "", loader, types);
+
+		indexFile.getParentFile().mkdirs();
+
+		try (final Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), UTF8)) {
+
+			writer.write("# Structr types, generated by " + ModuleIndexer.class.getName() + "\n");
+
+			for (final String type : types) {
+
+				writer.write(type);
+				writer.write("\n");
+			}
+		}
+
+		logger.log(Level.INFO, "Indexed {0} Structr types in {1}", new Object[] { types.size(), indexFile });
+	}
+
+	/**
+	 * Reads the class names from the given index.
+	 *
+	 * @param is
+	 * @param classes
+	 * @throws IOException
+	 */
+	public static void readIndex(final InputStream is, final Set<String> classes) throws IOException {
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(is, UTF8));
+		String line                 = null;
+
+		while ((line = reader.readLine()) != null) {
+
+			line = line.trim();
+
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				classes.add(line);
+			}
+		}
+	}
+
+	/**
+	 * @param clazz
+	 * @return whether the given class must be registered by the configuration provider
+	 */
+	public static boolean isStructrType(final Class clazz) {
+
+		final boolean isAbstract = Modifier.isAbstract(clazz.getModifiers());
+
+		return NodeInterface.class.isAssignableFrom(clazz)
+			|| (!isAbstract && AbstractRelationship.class.isAssignableFrom(clazz))
+			|| (!isAbstract && Service.class.isAssignableFrom(clazz))
+			|| (!isAbstract && Agent.class.isAssignableFrom(clazz))
+			|| (!isAbstract && MaintenanceCommand.class.isAssignableFrom(clazz))
+			|| (!isAbstract && isSelfRegisteringCommand(clazz));
+	}
+
+	// ----- private methods -----
+	private static boolean isSelfRegisteringCommand(final Class clazz) {
+
+		for (Class superclass = clazz.getSuperclass(); superclass != null; superclass = superclass.getSuperclass()) {
+
+			if (selfRegisteringBaseClasses.contains(superclass.getName())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static void collectTypes(final File directory, final String packagePrefix, final ClassLoader loader, final Set<String> types) {
+
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (final File file : files) {
+
+			final String name = file.getName();
+
+			if (file.isDirectory()) {
+
+				collectTypes(file, packagePrefix + name + ".", loader, types);
+
+			} else if (name.endsWith(".class")) {
+
+				final String className = packagePrefix + name.substring(0, name.length() - 6);
+
+				try {
+
+					if (isStructrType(Class.forName(className, false, loader))) {
+						types.add(className);
+					}
+
+				} catch (Throwable t) {
+
+					// class cannot be loaded without its optional dependencies
+				}
+			}
+		}
+	}
+}
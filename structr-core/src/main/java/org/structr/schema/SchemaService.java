@@ -70,7 +70,7 @@ public class SchemaService implements Service {
 				dynamicViews.addAll(schemaRelationship.getViews());
 			}
 
-			// compile all classes at once
+			// compile changed classes and register all classes
 			for (final Class newType : nodeExtender.compile(errorBuffer).values()) {
 				Services.getInstance().getConfigurationProvider().registerEntityType(newType);
 			}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.action;
+
+import org.apache.commons.lang3.StringUtils;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
+
+/**
+ * A string template with ${...} expressions, compiled into literal text
+ * parts and expressions by the {@link ExpressionParser}.
+ *
+ * @author Christian Morgner
+ */
+public class CompiledTemplate {
+
+	private String source             = null;
+	private String[] literals         = null;
+	private Expression[] expressions  = null;
+
+	public CompiledTemplate(final String source, final String[] literals, final Expression[] expressions) {
+
+		this.source      = source;
+		this.literals    = literals;
+		this.expressions = expressions;
+	}
+
+	public String evaluate(final SecurityContext securityContext, final ActionContext actionContext, final AbstractNode entity) throws FrameworkException {
+
+		// nothing to replace
+		if (expressions.length == 0) {
+			return source;
+		}
+
+		final StringBuilder buf = new StringBuilder(source.length());
+
+		for (int i = 0; i < expressions.length; i++) {
+
+			buf.append(literals[i]);
+
+			Object extractedValue = expressions[i].evaluate(securityContext, actionContext, entity);
+			if (extractedValue == null) {
+				extractedValue = "";
+			}
+
+			buf.append(StringUtils.remove(extractedValue.toString(), "\\"));
+		}
+
+		buf.append(literals[expressions.length]);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.common.SecurityContext;
+import org.structr.common.ThreadLocalMatcher;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
+
+/**
+ * Compiles ${...} templates and function expressions into {@link CompiledTemplate}
+ * and {@link Expression} objects. Compiled objects are cached by their source
+ * string, so that the regular expression matching and parameter splitting is
+ * done only once per distinct source. Strings without a ${...} template are
+ * not cached.
+ *
+ * @author Christian Morgner
+ */
+public class ExpressionParser {
+
+	/**
+	 * The maximum number of cached templates and expressions. When a cache
+	 * is full, its least recently used entry is evicted.
+	 */
+	public static final int MAX_CACHE_SIZE = 10000;
+
+	private static final ThreadLocalMatcher threadLocalTemplateMatcher = new ThreadLocalMatcher("\\$\\{[^}]*\\}");
+	private static final ThreadLocalMatcher threadLocalFunctionMatcher = new ThreadLocalMatcher("([a-zA-Z0-9_]+)\\((.*)\\)");
+
+	private final Map<String, CompiledTemplate> templateCache = ExpressionParser.<CompiledTemplate>createCache();
+	private final Map<String, Expression> expressionCache     = ExpressionParser.<Expression>createCache();
+	private Map<String, Function<Object, Object>> functions   = null;
+
+	public ExpressionParser(final Map<String, Function<Object, Object>> functions) {
+		this.functions = functions;
+	}
+
+	public CompiledTemplate compileTemplate(final String source) {
+
+		// plain strings are not cached, they would fill the cache with arbitrary content
+		if (!source.contains("${")) {
+			return new CompiledTemplate(source, new String[] { source }, new Expression[0]);
+		}
+
+		CompiledTemplate template = templateCache.get(source);
+		if (template == null) {
+
+			final List<String> literals        = new ArrayList<>();
+			final List<Expression> expressions = new ArrayList<>();
+			final Matcher matcher              = threadLocalTemplateMatcher.get();
+			int position                       = 0;
+
+			matcher.reset(source);
+
+			while (matcher.find()) {
+
+				final String group = matcher.group();
+
+				literals.add(source.substring(position, matcher.start()));
+				expressions.add(compileExpression(group.substring(2, group.length() - 1)));
+
+				position = matcher.end();
+			}
+
+			literals.add(source.substring(position));
+
+			template = new CompiledTemplate(source, literals.toArray(new String[0]), expressions.toArray(new Expression[0]));
+
+			templateCache.put(source, template);
+		}
+
+		return template;
+	}
+
+	public Expression compileExpression(final String source) {
+
+		Expression expression = expressionCache.get(source);
+		if (expression == null) {
+
+			expression = parse(source);
+
+			expressionCache.put(source, expression);
+		}
+
+		return expression;
+	}
+
+	public void clearCache() {
+
+		templateCache.clear();
+		expressionCache.clear();
+	}
+
+	// ----- private methods -----
+	private static <T> Map<String, T> createCache() {
+
+		return Collections.synchronizedMap(new LinkedHashMap<String, T>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, T> eldest) {
+				return size() > MAX_CACHE_SIZE;
+			}
+		});
+	}
+
+	/**
+	 * Splits the given function parameter string at all top-level commas,
+	 * ignoring commas in quotes and nested function calls.
+	 *
+	 * @param source
+	 * @return the individual parameters
+	 */
+	public static String[] split(final String source) {
+
+		ArrayList<String> tokens = new ArrayList<>(20);
+		boolean inDoubleQuotes = false;
+		boolean inSingleQuotes = false;
+		boolean ignoreNext = false;
+		int len = source.length();
+		int level = 0;
+		StringBuilder currentToken = new StringBuilder(len);
+
+		for (int i = 0; i < len; i++) {
+
+			char c = source.charAt(i);
+
+			// do not strip away separators in nested functions!
+			if ((level != 0) || (c != ',')) {
+
+				currentToken.append(c);
+			}
+
+			if (ignoreNext) {
+
+				ignoreNext = false;
+				continue;
+
+			}
+
+			switch (c) {
+
+				case '\\':
+
+					ignoreNext = true;
+
+					break;
+
+				case '(':
+					level++;
+
+					break;
+
+				case ')':
+					level--;
+
+					break;
+
+				case '"':
+					if (inDoubleQuotes) {
+
+						inDoubleQuotes = false;
+
+						level--;
+
+					} else {
+
+						inDoubleQuotes = true;
+
+						level++;
+
+					}
+
+					break;
+
+				case '\'':
+					if (inSingleQuotes) {
+
+						inSingleQuotes = false;
+
+						level--;
+
+					} else {
+
+						inSingleQuotes = true;
+
+						level++;
+
+					}
+
+					break;
+
+				case ',':
+					if (level == 0) {
+
+						tokens.add(currentToken.toString().trim());
+						currentToken.setLength(0);
+
+					}
+
+					break;
+
+			}
+
+		}
+
+		if (currentToken.length() > 0) {
+
+			tokens.add(currentToken.toString().trim());
+		}
+
+		return tokens.toArray(new String[0]);
+
+	}
+
+	// ----- private methods -----
+	private Expression parse(final String source) {
+
+		if ("null".equals(source)) {
+			return new ValueExpression(AbstractNode.NULL_STRING);
+		}
+
+		final Expression valueExpression = parseValue(source);
+		final Matcher functionMatcher    = threadLocalFunctionMatcher.get();
+
+		functionMatcher.reset(source);
+
+		if (functionMatcher.matches()) {
+
+			final String functionName = functionMatcher.group(1);
+			final String parameter    = functionMatcher.group(2);
+			Expression[] parameters   = null;
+
+			if (parameter != null && !parameter.isEmpty()) {
+
+				if (parameter.contains(",")) {
+
+					final String[] parts = split(parameter);
+
+					parameters = new Expression[parts.length];
+
+					for (int i = 0; i < parts.length; i++) {
+						parameters[i] = compileExpression(StringUtils.strip(parts[i]));
+					}
+
+				} else {
+
+					parameters = new Expression[] { compileExpression(StringUtils.strip(parameter)) };
+				}
+			}
+
+			return new FunctionExpression(functionName, parameters, valueExpression);
+		}
+
+		return valueExpression;
+	}
+
+	private Expression parseValue(final String source) {
+
+		// if any of the following conditions match, the literal source value is returned
+		if (source.startsWith("\"") && source.endsWith("\"")) {
+
+			return new ValueExpression(source.substring(1, source.length() - 1));
+
+		} else if (source.startsWith("'") && source.endsWith("'")) {
+
+			return new ValueExpression(source.substring(1, source.length() - 1));
+
+		} else if (StringUtils.isNotBlank(source) && AbstractNode.isNumeric(source)) {
+
+			// return numeric value
+			return new ValueExpression(Double.parseDouble(source));
+
+		} else {
+
+			// return property key
+			return new PropertyExpression(source);
+		}
+	}
+
+	// ----- nested classes -----
+	private static class ValueExpression implements Expression {
+
+		private Object value = null;
+
+		public ValueExpression(final Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public Object evaluate(final SecurityContext securityContext, final ActionContext actionContext, final AbstractNode entity) throws FrameworkException {
+			return value;
+		}
+	}
+
+	private static class PropertyExpression implements Expression {
+
+		private String source = null;
+
+		public PropertyExpression(final String source) {
+			this.source = source;
+		}
+
+		@Override
+		public Object evaluate(final SecurityContext securityContext, final ActionContext actionContext, final AbstractNode entity) throws FrameworkException {
+			return actionContext.getReferencedProperty(securityContext, entity, source);
+		}
+	}
+
+	private class FunctionExpression implements Expression {
+
+		private Function<Object, Object> function = null;
+		private Expression[] parameters           = null;
+		private Expression fallback               = null;
+		private String name                       = null;
+
+		public FunctionExpression(final String name, final Expression[] parameters, final Expression fallback) {
+
+			this.function   = functions.get(name);
+			this.parameters = parameters;
+			this.fallback   = fallback;
+			this.name       = name;
+		}
+
+		@Override
+		public Object evaluate(final SecurityContext securityContext, final ActionContext actionContext, final AbstractNode entity) throws FrameworkException {
+
+			if (function == null) {
+
+				// function may have been registered after this expression was compiled
+				function = functions.get(name);
+			}
+
+			if (function == null) {
+
+				// unknown function, treat the source as a literal value or property key
+				return fallback.evaluate(securityContext, actionContext, entity);
+			}
+
+			// return usage string if no parameter is present
+			if (parameters == null) {
+				return function.usage();
+			}
+
+			final List results = new ArrayList();
+
+			for (final Expression parameter : parameters) {
+
+				final Object partialResult = parameter.evaluate(securityContext, actionContext, entity);
+				if (partialResult instanceof Object[]) {
+
+					results.addAll(Arrays.asList((Object[])partialResult));
+
+				} else {
+
+					results.add(partialResult);
+				}
+			}
+
+			return function.apply(actionContext, entity, results.toArray());
+		}
+	}
+}
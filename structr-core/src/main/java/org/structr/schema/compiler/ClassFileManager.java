@@ -20,19 +20,24 @@ package org.structr.schema.compiler;
 
 import java.io.IOException;
 import java.security.SecureClassLoader;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 
 /**
  *
  * @author Christian Morgner (christian@morgner.de)
  */
-public class ClassFileManager extends ForwardingJavaFileManager {
+public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
 	/**
 	 * Instance of JavaClassObject that will store the compiled bytecode of
@@ -40,6 +45,13 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 	 */
 	private Map<String, JavaClassObject> objects = new LinkedHashMap<>();
 
+	/**
+	 * Byte code of previously compiled classes that the compiler can read
+	 * from the class path
+	 */
+	private Map<String, byte[]> classPath = new LinkedHashMap<>();
+	private String classPathPackage       = null;
+
 	/**
 	 * Will initialize the manager with the specified standard java file
 	 * manager
@@ -76,6 +88,68 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 		};
 	}
 
+	/**
+	 * Makes the given byte code available to the compiler as classes of
+	 * the given package on the class path.
+	 *
+	 * @param packageName
+	 * @param classes byte code by binary class name
+	 */
+	public void setClassPath(final String packageName, final Map<String, byte[]> classes) {
+
+		this.classPathPackage = packageName;
+		this.classPath        = classes;
+	}
+
+	/**
+	 * @return the byte code of all classes written by the compiler, by
+	 * binary class name
+	 */
+	public Map<String, byte[]> getBytecode() {
+
+		final Map<String, byte[]> bytecode = new LinkedHashMap<>();
+
+		for (final Entry<String, JavaClassObject> entry : objects.entrySet()) {
+			bytecode.put(entry.getKey(), entry.getValue().getBytes());
+		}
+
+		return bytecode;
+	}
+
+	@Override
+	public Iterable<JavaFileObject> list(final Location location, final String packageName, final Set<Kind> kinds, final boolean recurse) throws IOException {
+
+		final Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+
+		if (StandardLocation.CLASS_PATH.equals(location) && kinds.contains(Kind.CLASS) && packageName.equals(classPathPackage) && !classPath.isEmpty()) {
+
+			final List<JavaFileObject> result = new ArrayList<>();
+
+			for (final JavaFileObject file : files) {
+				result.add(file);
+			}
+
+			for (final Entry<String, byte[]> entry : classPath.entrySet()) {
+				result.add(new JavaClassObject(entry.getKey(), entry.getValue()));
+			}
+
+			return result;
+		}
+
+		return files;
+	}
+
+	@Override
+	public String inferBinaryName(final Location location, final JavaFileObject file) {
+
+		if (file instanceof JavaClassObject) {
+
+			return ((JavaClassObject)file).getBinaryName();
+		}
+
+		return super.inferBinaryName(location, file);
+	}
+
 	/**
 	 * Gives the compiler an instance of the JavaClassObject so that the
 	 * compiler can write the byte code into it.
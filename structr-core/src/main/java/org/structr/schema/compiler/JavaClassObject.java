@@ -18,8 +18,10 @@
  */
 package org.structr.schema.compiler;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import javax.tools.SimpleJavaFileObject;
@@ -38,6 +40,8 @@ public class JavaClassObject extends SimpleJavaFileObject {
 	protected final ByteArrayOutputStream bos =
 		new ByteArrayOutputStream();
 
+	private String binaryName = null;
+
 	/**
 	 * Registers the compiled class object under URI containing the class
 	 * full name
@@ -48,6 +52,26 @@ public class JavaClassObject extends SimpleJavaFileObject {
 	public JavaClassObject(String name, Kind kind) {
 		super(URI.create("string:///" + name.replace('.', '/')
 			+ kind.extension), kind);
+
+		this.binaryName = name;
+	}
+
+	/**
+	 * Creates a class object from existing byte code, so that it can be
+	 * read by the compiler when compiling dependent classes.
+	 *
+	 * @param name Full name of the class
+	 * @param bytes byte code
+	 */
+	public JavaClassObject(String name, byte[] bytes) {
+
+		this(name, Kind.CLASS);
+
+		bos.write(bytes, 0, bytes.length);
+	}
+
+	public String getBinaryName() {
+		return binaryName;
 	}
 
 	/**
@@ -69,4 +93,9 @@ public class JavaClassObject extends SimpleJavaFileObject {
 	public OutputStream openOutputStream() throws IOException {
 		return bos;
 	}
+
+	@Override
+	public InputStream openInputStream() throws IOException {
+		return new ByteArrayInputStream(getBytes());
+	}
 }
\ No newline at end of file
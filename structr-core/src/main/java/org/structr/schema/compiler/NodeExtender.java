@@ -18,57 +18,86 @@
  */
 package org.structr.schema.compiler;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.SecureClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.structr.common.error.DiagnosticErrorToken;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.Services;
 import org.structr.module.JarConfigurationProvider;
 
 /**
+ * Compiles the source code of dynamic types.
+ *
+ * Each type is identified by a key that is derived from its own source
+ * code and the source code of all dynamic types it depends on, directly or
+ * indirectly. Only types whose key has changed since the last compilation
+ * are compiled and loaded again, all other types keep their classes. The
+ * byte code of each type is stored in a cache directory under its key, so
+ * that unchanged types can be loaded without the compiler after a restart.
  *
  * @author Christian Morgner (christian@morgner.de)
  */
 public class NodeExtender {
 
-	private static final Logger logger   = Logger.getLogger(NodeExtender.class.getName());
-	
-	private JavaCompiler compiler        = null;
-	private JavaFileManager fileManager  = null;
-	private List<JavaFileObject> jfiles  = null;
-	private Set<String> fqcns            = null;
+	private static final Logger logger                          = Logger.getLogger(NodeExtender.class.getName());
+
+	public static final String CACHE_PATH                       = "NodeExtender.cachePath";
+
+	private static final Pattern IDENTIFIER                     = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+	private static final Map<String, CompiledType> compiledTypes = new HashMap<>();
+	private static String codeFingerprint                       = null;
+
+	private final Map<String, String> sources                   = new LinkedHashMap<>();
+	private JavaCompiler compiler                               = null;
 
 	public NodeExtender() {
-		
-		compiler    = ToolProvider.getSystemJavaCompiler();
-		fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-		jfiles      = new ArrayList<>();
-		fqcns       = new LinkedHashSet<>();
+		compiler = ToolProvider.getSystemJavaCompiler();
 	}
-	
+
 	public void addClass(final String className, final String content) throws ClassNotFoundException {
-		
+
 		if (className != null && content != null) {
 
-			final String packageName = JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE;
-			
-			jfiles.add(new CharSequenceJavaFileObject(className, content));
-			fqcns.add(packageName.concat(".".concat(className)));
+			sources.put(className, content);
 
 			if ("true".equals(Services.getInstance().getConfigurationValue("NodeExtender.log"))) {
 
@@ -78,49 +107,508 @@ public class NodeExtender {
 		}
 	}
 
-	public synchronized Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
+	/**
+	 * Compiles and loads the classes that were added to this extender and
+	 * have changed since the last compilation. Types that are not part of
+	 * this extender any more are forgotten.
+	 *
+	 * @param errorBuffer
+	 * @return the classes of all types of this extender, by fully
+	 * qualified name
+	 * @throws ClassNotFoundException
+	 */
+	public Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
 
-		final Map<String, Class> classes = new LinkedHashMap<>();
-		final Writer errorWriter         = new StringWriter();
+		synchronized (NodeExtender.class) {
+
+			final Map<String, String> keys   = getKeys();
+			final File cacheDirectory        = getCacheDirectory();
+			final Set<String> changed        = new LinkedHashSet<>();
+			final Set<String> compiled       = new HashSet<>();
+			final Map<String, byte[]> loaded = new LinkedHashMap<>();
+
+			// forget types that have been removed
+			compiledTypes.keySet().retainAll(sources.keySet());
+
+			for (final String className : sources.keySet()) {
+
+				final CompiledType compiledType = compiledTypes.get(className);
+				if (compiledType == null || !compiledType.key.equals(keys.get(className))) {
+
+					changed.add(className);
+				}
+			}
+
+			if (changed.isEmpty()) {
 
-		if (!jfiles.isEmpty()) {
-			
-			logger.log(Level.INFO, "Compiling {0} dynamic entities", jfiles.size());
+				pruneCache(cacheDirectory);
+				return getClasses();
+			}
+
+			// try to load changed types from the cache directory first
+			final Map<String, Map<String, byte[]>> bytecodeByType = new LinkedHashMap<>();
+			final List<JavaFileObject> jfiles                     = new ArrayList<>();
+
+			for (final String className : changed) {
+
+				final Map<String, byte[]> bytecode = readBytecode(cacheDirectory, keys.get(className));
+				if (bytecode != null) {
+
+					bytecodeByType.put(className, bytecode);
+
+				} else {
+
+					jfiles.add(new CharSequenceJavaFileObject(className, sources.get(className)));
+				}
+			}
+
+			if (!jfiles.isEmpty()) {
+
+				logger.log(Level.INFO, "Compiling {0} of {1} dynamic entities", new Object[] { jfiles.size(), sources.size() });
+
+				if (compiler == null) {
+
+					logger.log(Level.SEVERE, "No Java compiler available, unable to compile dynamic entities");
+					return getClasses();
+				}
 
-			compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
+				final ClassFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+				final Writer errorWriter           = new StringWriter();
+
+				// provide the byte code of all other types to the compiler
+				final Map<String, byte[]> classPath = new LinkedHashMap<>();
+
+				for (final Entry<String, CompiledType> entry : compiledTypes.entrySet()) {
+
+					if (!changed.contains(entry.getKey())) {
+						classPath.putAll(entry.getValue().bytecode);
+					}
+				}
+
+				for (final Map<String, byte[]> bytecode : bytecodeByType.values()) {
+					classPath.putAll(bytecode);
+				}
+
+				fileManager.setClassPath(JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE, classPath);
+
+				final Boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
+				if (!Boolean.TRUE.equals(success)) {
+
+					// keep the previous classes
+					return getClasses();
+				}
+
+				// assign compiled classes (including inner classes) to their types
+				for (final Entry<String, byte[]> entry : fileManager.getBytecode().entrySet()) {
+
+					final String className = getTypeName(entry.getKey());
+
+					Map<String, byte[]> bytecode = bytecodeByType.get(className);
+					if (bytecode == null) {
+
+						bytecode = new LinkedHashMap<>();
+						bytecodeByType.put(className, bytecode);
+					}
+
+					bytecode.put(entry.getKey(), entry.getValue());
+					compiled.add(className);
+				}
+
+			} else {
+
+				logger.log(Level.INFO, "Loading {0} of {1} dynamic entities from cache", new Object[] { changed.size(), sources.size() });
+			}
+
+			for (final Map<String, byte[]> bytecode : bytecodeByType.values()) {
+				loaded.putAll(bytecode);
+			}
+
+			final ClassLoader loader = new DynamicClassLoader(loaded);
+
+			for (final String className : changed) {
+
+				final String fqcn = getFqcn(className);
 
-			final ClassLoader loader = fileManager.getClassLoader(null);
-			for (final String fqcn : fqcns) {
-				
 				try {
-					classes.put(fqcn, loader.loadClass(fqcn));
-					
+					final Class type = loader.loadClass(fqcn);
+
+					compiledTypes.put(className, new CompiledType(keys.get(className), bytecodeByType.get(className), type));
+
+					if (compiled.contains(className)) {
+						writeBytecode(cacheDirectory, keys.get(className), bytecodeByType.get(className));
+					}
+
 				} catch (Throwable t) {
-					
+
 					logger.log(Level.WARNING, "Unable to compile dynamic entity {0}: {1}", new Object[] { fqcn, t.getMessage() });
 				}
 			}
+
+			pruneCache(cacheDirectory);
+
+			return getClasses();
 		}
-		
+	}
+
+	// ----- private methods -----
+	private Map<String, Class> getClasses() {
+
+		final Map<String, Class> classes = new LinkedHashMap<>();
+
+		for (final String className : sources.keySet()) {
+
+			final CompiledType compiledType = compiledTypes.get(className);
+			if (compiledType != null) {
+
+				classes.put(getFqcn(className), compiledType.type);
+			}
+		}
+
 		return classes;
 	}
 
+	/**
+	 * Computes the key of each type from the hash of its source and the
+	 * hashes of all types it depends on.
+	 */
+	private Map<String, String> getKeys() {
+
+		final Map<String, Set<String>> dependencies = new HashMap<>();
+		final Map<String, String> hashes            = new HashMap<>();
+		final Map<String, String> keys              = new LinkedHashMap<>();
+		final String salt                           = getSalt();
+
+		for (final Entry<String, String> entry : sources.entrySet()) {
+
+			final String className = entry.getKey();
+			final String source    = entry.getValue();
+			final Set<String> deps = new HashSet<>();
+			final Matcher matcher  = IDENTIFIER.matcher(source);
+
+			while (matcher.find()) {
+
+				final String identifier = matcher.group();
+				if (!identifier.equals(className) && sources.containsKey(identifier)) {
+
+					deps.add(identifier);
+				}
+			}
+
+			dependencies.put(className, deps);
+			hashes.put(className, DigestUtils.sha1Hex(source));
+		}
+
+		for (final String className : sources.keySet()) {
+
+			// transitive dependencies, sorted to get a stable key
+			final Set<String> closure     = new TreeSet<>();
+			final LinkedList<String> todo = new LinkedList<>(dependencies.get(className));
+
+			while (!todo.isEmpty()) {
+
+				final String dependency = todo.removeFirst();
+				if (closure.add(dependency)) {
+
+					todo.addAll(dependencies.get(dependency));
+				}
+			}
+
+			final StringBuilder buf = new StringBuilder(salt);
+
+			buf.append(hashes.get(className));
+
+			for (final String dependency : closure) {
+
+				buf.append(dependency);
+				buf.append(hashes.get(dependency));
+			}
+
+			keys.put(className, DigestUtils.sha1Hex(buf.toString()));
+		}
+
+		return keys;
+	}
+
+	private String getSalt() {
+
+		final String version = NodeExtender.class.getPackage().getImplementationVersion();
+
+		return version + System.getProperty("java.version") + getCodeFingerprint();
+	}
+
+	/**
+	 * Returns a hash of the names, sizes and modification times of the
+	 * jars and class directories on the class path. Snapshot builds do
+	 * not change the implementation version, so cached classes could be
+	 * loaded against changed base classes otherwise.
+	 */
+	private static synchronized String getCodeFingerprint() {
+
+		if (codeFingerprint == null) {
+
+			final MessageDigest digest = DigestUtils.getSha1Digest();
+			final Set<File> paths      = new LinkedHashSet<>();
+
+			for (final String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+
+				if (!path.isEmpty()) {
+					paths.add(new File(path));
+				}
+			}
+
+			// the class path of a servlet container does not contain the Structr jars
+			final CodeSource codeSource = NodeExtender.class.getProtectionDomain().getCodeSource();
+			if (codeSource != null && codeSource.getLocation() != null) {
+
+				try {
+					paths.add(new File(codeSource.getLocation().toURI()));
+
+				} catch (URISyntaxException | IllegalArgumentException ex) {
+
+					logger.log(Level.WARNING, "Unable to determine location of Structr classes: {0}", ex.getMessage());
+				}
+			}
+
+			for (final File path : paths) {
+				updateFingerprint(digest, path);
+			}
+
+			codeFingerprint = Hex.encodeHexString(digest.digest());
+		}
+
+		return codeFingerprint;
+	}
+
+	private static void updateFingerprint(final MessageDigest digest, final File file) {
+
+		if (file.isDirectory()) {
+
+			final File[] children = file.listFiles();
+			if (children != null) {
+
+				// sorted to get a stable fingerprint
+				Arrays.sort(children);
+
+				for (final File child : children) {
+					updateFingerprint(digest, child);
+				}
+			}
+
+		} else if (file.isFile()) {
+
+			digest.update(file.getPath().concat(":").concat(Long.toString(file.length())).concat(":").concat(Long.toString(file.lastModified())).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private File getCacheDirectory() {
+
+		String path = Services.getInstance().getConfigurationValue(CACHE_PATH);
+		if (path == null) {
+
+			final String basePath = Services.getInstance().getConfigurationValue(Services.BASE_PATH);
+			if (basePath == null) {
+
+				return null;
+			}
+
+			path = basePath + "/classes";
+		}
+
+		final File directory = new File(path);
+		if (!directory.exists() && !directory.mkdirs()) {
+
+			logger.log(Level.WARNING, "Unable to create class cache directory {0}", path);
+			return null;
+		}
+
+		return directory;
+	}
+
+	private Map<String, byte[]> readBytecode(final File cacheDirectory, final String key) {
+
+		if (cacheDirectory == null) {
+			return null;
+		}
+
+		final File file = new File(cacheDirectory, key + ".bin");
+		if (!file.exists()) {
+			return null;
+		}
+
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			final Map<String, byte[]> bytecode = new LinkedHashMap<>();
+			final int count                    = in.readInt();
+
+			for (int i=0; i<count; i++) {
+
+				final String name  = in.readUTF();
+				final byte[] bytes = new byte[in.readInt()];
+
+				in.readFully(bytes);
+				bytecode.put(name, bytes);
+			}
+
+			return bytecode;
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to read cached byte code from {0}: {1}", new Object[] { file, ioex.getMessage() });
+		}
+
+		return null;
+	}
+
+	private void writeBytecode(final File cacheDirectory, final String key, final Map<String, byte[]> bytecode) {
+
+		if (cacheDirectory == null) {
+			return;
+		}
+
+		final File file    = new File(cacheDirectory, key + ".bin");
+		final File tmpFile = new File(cacheDirectory, key + ".tmp");
+
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+
+			out.writeInt(bytecode.size());
+
+			for (final Entry<String, byte[]> entry : bytecode.entrySet()) {
+
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to write cached byte code to {0}: {1}", new Object[] { file, ioex.getMessage() });
+			return;
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to write cached byte code to {0}: {1}", new Object[] { file, ioex.getMessage() });
+		}
+	}
+
+	/**
+	 * Removes cached byte code of types that do not exist any more.
+	 */
+	private void pruneCache(final File cacheDirectory) {
+
+		if (cacheDirectory == null) {
+			return;
+		}
+
+		final Set<String> fileNames = new HashSet<>();
+
+		for (final CompiledType compiledType : compiledTypes.values()) {
+			fileNames.add(compiledType.key + ".bin");
+		}
+
+		final File[] files = cacheDirectory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				if (file.getName().endsWith(".bin") && !fileNames.contains(file.getName())) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	private static String getFqcn(final String className) {
+		return JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE.concat(".".concat(className));
+	}
+
+	/**
+	 * @return the simple name of the top-level class of the given binary class name
+	 */
+	private static String getTypeName(final String binaryName) {
+
+		String name = binaryName.substring(binaryName.lastIndexOf(".") + 1);
+
+		final int pos = name.indexOf("$");
+		if (pos > 0) {
+
+			name = name.substring(0, pos);
+		}
+
+		return name;
+	}
+
+	// ----- nested classes -----
+	private static class CompiledType {
+
+		private Map<String, byte[]> bytecode = null;
+		private String key                   = null;
+		private Class type                   = null;
+
+		public CompiledType(final String key, final Map<String, byte[]> bytecode, final Class type) {
+
+			this.bytecode = bytecode;
+			this.key      = key;
+			this.type     = type;
+		}
+	}
+
+	/**
+	 * Defines the given classes and resolves all other dynamic types to the
+	 * classes that have been loaded before.
+	 */
+	private static class DynamicClassLoader extends SecureClassLoader {
+
+		private Map<String, byte[]> bytecode = null;
+
+		public DynamicClassLoader(final Map<String, byte[]> bytecode) {
+			this.bytecode = bytecode;
+		}
+
+		@Override
+		protected Class<?> findClass(final String name) throws ClassNotFoundException {
+
+			final byte[] b = bytecode.get(name);
+			if (b != null) {
+
+				return super.defineClass(name, b, 0, b.length);
+			}
+
+			final CompiledType compiledType = compiledTypes.get(getTypeName(name));
+			if (compiledType != null) {
+
+				final Class type = compiledType.type;
+				if (type.getName().equals(name)) {
+
+					return type;
+				}
+
+				return type.getClassLoader().loadClass(name);
+			}
+
+			throw new ClassNotFoundException(name);
+		}
+	}
+
 	private static class Listener implements DiagnosticListener<JavaFileObject> {
 
 		private ErrorBuffer errorBuffer = null;
-		
+
 		public Listener(final ErrorBuffer errorBuffer) {
 			this.errorBuffer = errorBuffer;
 }
-		
+
 		@Override
 		public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
-			
+
 			if (diagnostic.getKind().equals(Kind.ERROR)) {
 
 				final JavaFileObject obj = diagnostic.getSource();
 				String name        = "unknown";
-				
+
 				if (obj != null && obj instanceof CharSequenceJavaFileObject) {
 					name = ((CharSequenceJavaFileObject)obj).getClassName();
 				}
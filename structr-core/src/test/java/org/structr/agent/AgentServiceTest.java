@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.common.StructrConf;
+import org.structr.common.StructrTest;
+
+/**
+ * Tests the scheduling of the agent service: priorities, per-type limits,
+ * delays and retries.
+ *
+ * @author Christian Morgner
+ */
+public class AgentServiceTest extends StructrTest {
+
+	public void test01PriorityOrder() throws Exception {
+
+		final List<String> order     = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch done    = new CountDownLatch(4);
+		final AgentService service   = createService(AgentService.AGENT_THREADS, "1");
+
+		try {
+
+			// the first task occupies the only slot, the others are pending
+			service.processTask(new AgentTestTask("blocking", 0, order).waitFor(blocker), countDown(done));
+			service.processTask(new AgentTestTask("low",      1, order), countDown(done));
+			service.processTask(new AgentTestTask("high",     9, order), countDown(done));
+			service.processTask(new AgentTestTask("medium",   5, order), countDown(done));
+
+			blocker.countDown();
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(Arrays.asList("blocking", "high", "medium", "low"), order);
+
+		} finally {
+
+			service.stopService();
+		}
+	}
+
+	public void test02PerTypeLimit() throws Exception {
+
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger running    = new AtomicInteger();
+		final CountDownLatch done      = new CountDownLatch(8);
+		final AgentService service     = createService(AgentService.AGENT_THREADS, "4", AgentService.AGENT_MAX_AGENTS + ".AgentTestTask", "2");
+
+		try {
+
+			for (int i=0; i<8; i++) {
+				service.processTask(new AgentTestTask("task" + i, 0, null).duration(20).countRunning(running, maxRunning), countDown(done));
+			}
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertTrue(maxRunning.get() <= 2);
+
+		} finally {
+
+			service.stopService();
+		}
+	}
+
+	public void test03DefaultLimitBelowThreadCount() throws Exception {
+
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger running    = new AtomicInteger();
+		final CountDownLatch done      = new CountDownLatch(4);
+		final AgentService service     = createService(AgentService.AGENT_THREADS, "2", AgentService.AGENT_MAX_AGENTS, "4");
+
+		try {
+
+			for (int i=0; i<4; i++) {
+				service.processTask(new AgentTestTask("task" + i, 0, null).duration(20).countRunning(running, maxRunning), countDown(done));
+			}
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			// one of the two threads is left for other task types
+			assertEquals(1, maxRunning.get());
+
+		} finally {
+
+			service.stopService();
+		}
+	}
+
+	public void test04Delay() throws Exception {
+
+		final CountDownLatch done  = new CountDownLatch(1);
+		final AgentService service = createService();
+		final AgentTestTask task   = new AgentTestTask("delayed", 0, null).delay(200);
+
+		try {
+
+			final long t0 = System.nanoTime();
+
+			service.processTask(task, countDown(done));
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(task.getExecutions().get(0) - t0) >= 200);
+
+		} finally {
+
+			service.stopService();
+		}
+	}
+
+	public void test05RetryBackoff() throws Exception {
+
+		final AtomicInteger callbacks = new AtomicInteger();
+		final CountDownLatch done     = new CountDownLatch(1);
+		final AgentService service    = createService(AgentService.AGENT_RETRIES, "3", AgentService.AGENT_RETRY_DELAY, "100");
+		final AgentTestTask task      = new AgentTestTask("retry", 0, null).retries(2);
+
+		try {
+
+			service.processTask(task, count(callbacks, done));
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			final List<Long> executions = task.getExecutions();
+
+			// two retries with exponential backoff, then success
+			assertEquals(3, executions.size());
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(executions.get(1) - executions.get(0)) >= 100);
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(executions.get(2) - executions.get(1)) >= 200);
+			assertEquals(1, callbacks.get());
+
+		} finally {
+
+			service.stopService();
+		}
+	}
+
+	public void test06RetriesExhausted() throws Exception {
+
+		final AtomicInteger callbacks = new AtomicInteger();
+		final CountDownLatch done     = new CountDownLatch(1);
+		final AgentService service    = createService(AgentService.AGENT_RETRIES, "2", AgentService.AGENT_RETRY_DELAY, "10");
+		final AgentTestTask task      = new AgentTestTask("failing", 0, null).retries(10);
+
+		try {
+
+			service.processTask(task, count(callbacks, done));
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			// the first run and two retries
+			assertEquals(3, task.getExecutions().size());
+			assertEquals(1, callbacks.get());
+			assertTrue(service.getTaskQueue().isEmpty());
+
+		} finally {
+
+			service.stopService();
+		}
+	}
+
+	// ----- private methods -----
+	private AgentService createService(final String... settings) {
+
+		final StructrConf config   = new StructrConf();
+		final AgentService service = new AgentService();
+
+		for (int i=0; i<settings.length; i+=2) {
+			config.setProperty(settings[i], settings[i+1]);
+		}
+
+		service.initialize(config);
+		service.startService();
+
+		return service;
+	}
+
+	private Runnable countDown(final CountDownLatch latch) {
+
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+
+	private Runnable count(final AtomicInteger counter, final CountDownLatch latch) {
+
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+				latch.countDown();
+			}
+		};
+	}
+}
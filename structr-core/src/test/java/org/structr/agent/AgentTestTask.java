@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+
+/**
+ * A task for testing the agent service. It records when it was executed,
+ * can wait for a latch and asks for a given number of retries.
+ *
+ * @author Christian Morgner
+ */
+public class AgentTestTask implements Task {
+
+	private final List<Long> executions = Collections.synchronizedList(new ArrayList<Long>());
+	private List<String> order          = null;
+	private AtomicInteger running       = null;
+	private AtomicInteger maxRunning    = null;
+	private CountDownLatch latch        = null;
+	private String name                 = null;
+	private long delay                  = 0L;
+	private long duration               = 0L;
+	private int priority                = 0;
+	private int retries                 = 0;
+
+	public AgentTestTask(final String name, final int priority, final List<String> order) {
+
+		this.name     = name;
+		this.priority = priority;
+		this.order    = order;
+	}
+
+	public AgentTestTask delay(final long delay) {
+		this.delay = delay;
+		return this;
+	}
+
+	public AgentTestTask duration(final long duration) {
+		this.duration = duration;
+		return this;
+	}
+
+	public AgentTestTask retries(final int retries) {
+		this.retries = retries;
+		return this;
+	}
+
+	public AgentTestTask waitFor(final CountDownLatch latch) {
+		this.latch = latch;
+		return this;
+	}
+
+	public AgentTestTask countRunning(final AtomicInteger running, final AtomicInteger maxRunning) {
+		this.running    = running;
+		this.maxRunning = maxRunning;
+		return this;
+	}
+
+	public List<Long> getExecutions() {
+		return executions;
+	}
+
+	public ReturnValue process() throws InterruptedException {
+
+		executions.add(System.nanoTime());
+
+		if (order != null) {
+			order.add(name);
+		}
+
+		if (running != null) {
+
+			final int count = running.incrementAndGet();
+			int max         = maxRunning.get();
+
+			while (count > max && !maxRunning.compareAndSet(max, count)) {
+				max = maxRunning.get();
+			}
+		}
+
+		try {
+
+			if (latch != null) {
+				latch.await(10, TimeUnit.SECONDS);
+			}
+
+			if (duration > 0) {
+				Thread.sleep(duration);
+			}
+
+		} finally {
+
+			if (running != null) {
+				running.decrementAndGet();
+			}
+		}
+
+		return executions.size() <= retries ? ReturnValue.Retry : ReturnValue.Success;
+	}
+
+	@Override
+	public Principal getUser() {
+		return null;
+	}
+
+	@Override
+	public Set<AbstractNode> getNodes() {
+		return Collections.emptySet();
+	}
+
+	@Override
+	public int priority() {
+		return priority;
+	}
+
+	@Override
+	public Date getScheduledTime() {
+		return new Date();
+	}
+
+	@Override
+	public Date getCreationTime() {
+		return new Date();
+	}
+
+	@Override
+	public String getType() {
+		return "AgentTestTask";
+	}
+
+	@Override
+	public long getDelay(TimeUnit unit) {
+		return unit.convert(delay, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public int compareTo(Delayed o) {
+		return 0;
+	}
+
+	@Override
+	public Object getStatusProperty(String key) {
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
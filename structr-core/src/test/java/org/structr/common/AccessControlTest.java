@@ -371,6 +371,49 @@ public class AccessControlTest extends StructrTest {
 
 	}
 
+	public void test08RolledBackGrantIsNotCached() {
+
+		try {
+
+			List<User> users = createTestNodes(User.class, 2);
+			User user1 = (User) users.get(0);
+			User user2 = (User) users.get(1);
+
+			// Let user 1 create a node
+			final TestOne t1 = createTestNode(TestOne.class, user1);
+
+			try (final Tx tx = app.tx()) {
+
+				// Create the security relationship between user 2 and the node
+				user2.grant(Permission.write, t1);
+				tx.success();
+			}
+
+			SecurityContext user2Context = SecurityContext.getInstance(user2, AccessMode.Backend);
+
+			try (final Tx tx = app.tx()) {
+
+				// Modify the existing security relationship, but roll back
+				user2.grant(Permission.read, t1);
+
+				assertTrue(user2Context.isAllowed(t1, Permission.read));
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertFalse(user2Context.isAllowed(t1, Permission.read));
+				assertTrue(user2Context.isAllowed(t1, Permission.write));
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 	protected <T extends AbstractNode> T createTestNode(final Class<T> type, final Principal user) throws FrameworkException {
 		return (T)createTestNode(type, new PropertyMap(), user);
 	}
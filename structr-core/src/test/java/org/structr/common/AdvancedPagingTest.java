@@ -368,4 +368,60 @@ public class AdvancedPagingTest extends PagingTest {
 
 	}
 
+	public void test06ApproximateCountPaging() {
+
+		try {
+
+			Class type                      = TestOne.class;
+			int number                      = 10;
+			final List<NodeInterface> nodes = this.createTestNodes(type, number);
+
+			Collections.shuffle(nodes, new Random(System.nanoTime()));
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 0;
+				for (NodeInterface node : nodes) {
+
+					node.setProperty(AbstractNode.name, "TestOne-" + i++);
+				}
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				PropertyKey sortKey = AbstractNode.name;
+				int pageSize        = 3;
+
+				Result result = app.nodeQuery(type).sort(sortKey).pageSize(pageSize).page(2).approximateCount(true).getResult();
+
+				assertEquals(number, (int)result.getRawResultCount());
+				assertEquals(3, result.size());
+				assertEquals("TestOne-3", result.get(0).getProperty(AbstractNode.name));
+				assertEquals("TestOne-5", result.get(2).getProperty(AbstractNode.name));
+
+				// last page is incomplete
+				result = app.nodeQuery(type).sort(sortKey).pageSize(pageSize).page(4).approximateCount(true).getResult();
+
+				assertEquals(number, (int)result.getRawResultCount());
+				assertEquals(1, result.size());
+				assertEquals("TestOne-9", result.get(0).getProperty(AbstractNode.name));
+
+				// negative page
+				result = app.nodeQuery(type).sort(sortKey).pageSize(pageSize).page(-1).approximateCount(true).getResult();
+
+				assertEquals(3, result.size());
+				assertEquals("TestOne-7", result.get(0).getProperty(AbstractNode.name));
+				assertEquals("TestOne-9", result.get(2).getProperty(AbstractNode.name));
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 }
@@ -18,13 +18,22 @@
  */
 package org.structr.common;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.StructrTransactionListener;
 import org.structr.core.entity.TestEight;
 import org.structr.core.entity.TestFive;
+import org.structr.core.entity.TestOne;
 import org.structr.core.entity.User;
+import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 
 /**
@@ -204,4 +213,51 @@ public class CallbackTest extends StructrTest {
 			assertEquals("modifiedInAfterModification should have a value of 1:  ", one, entity.getProperty(TestFive.modifiedInAfterModification));
 		}
 	}
+
+	public void testTransactionListenerOrder() {
+
+		final List<String> createdNames           = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch                = new CountDownLatch(5);
+		final StructrTransactionListener listener = new StructrTransactionListener() {
+
+			@Override
+			public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+				for (final ModificationEvent event : modificationEvents) {
+
+					if (event.isCreated() && event.getGraphObject() instanceof TestOne) {
+
+						createdNames.add(event.getGraphObject().getProperty(TestOne.name));
+						latch.countDown();
+					}
+				}
+			}
+		};
+
+		TransactionCommand.registerTransactionListener(listener);
+
+		try {
+
+			for (int i=0; i<5; i++) {
+
+				try (final Tx tx = app.tx()) {
+
+					app.create(TestOne.class, "node" + i);
+					tx.success();
+				}
+			}
+
+			assertTrue("Listener should have been notified", latch.await(10, TimeUnit.SECONDS));
+			assertEquals(Arrays.asList("node0", "node1", "node2", "node3", "node4"), createdNames);
+
+		} catch (Throwable t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			TransactionCommand.removeTransactionListener(listener);
+		}
+	}
 }
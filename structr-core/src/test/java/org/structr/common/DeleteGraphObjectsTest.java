@@ -36,7 +36,9 @@ import org.structr.core.Result;
 import org.structr.core.entity.SixOneOneToOne;
 import org.structr.core.entity.TestSix;
 import org.structr.core.entity.relationship.NodeHasLocation;
+import org.structr.core.graph.EntityCache;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeService;
 import org.structr.core.graph.Tx;
 
 //~--- classes ----------------------------------------------------------------
@@ -118,6 +120,53 @@ public class DeleteGraphObjectsTest extends StructrTest {
 
 	}
 
+	/**
+	 * Test that a node which was resolved through the entity cache
+	 * can not be found by its UUID after deletion.
+	 */
+	public void test01DeleteCachedNode() {
+
+		try {
+
+			final TestOne testOne   = createTestNode(TestOne.class);
+			final EntityCache cache = NodeService.getEntityCache();
+			String uuid             = null;
+
+			try (final Tx tx = app.tx()) {
+
+				uuid = testOne.getUuid();
+
+				assertEquals(testOne, app.get(uuid));
+
+				final long hits = cache.getHitCount();
+
+				// second lookup must be served from the cache
+				assertEquals(testOne, app.get(uuid));
+				assertEquals(hits + 1, cache.getHitCount());
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				app.delete(testOne);
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertNull("Deleted node should not be resolved from the cache", app.get(uuid));
+			}
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 	public void test01DeleteRelationship() {
 
 		try {
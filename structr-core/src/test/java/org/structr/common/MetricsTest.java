@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Metrics;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.Tx;
+
+/**
+ * Test that transactions and queries are recorded in the metrics registry.
+ *
+ * @author Christian Morgner
+ */
+public class MetricsTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(MetricsTest.class.getName());
+
+	public void test01TransactionAndQueryMetrics() {
+
+		try {
+
+			Metrics.reset();
+
+			createTestNodes(TestOne.class, 10);
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(10, app.nodeQuery(TestOne.class).getResult().size());
+			}
+
+			final Map<String, Object> snapshot = Metrics.getSnapshot();
+
+			assertTrue((Long)snapshot.get("tx.begin") >= 2);
+			assertTrue((Long)snapshot.get("tx.commit.count") >= 1);
+			assertTrue((Long)snapshot.get("tx.rollback.count") >= 1);
+			assertTrue((Long)snapshot.get("query.keyword.count") >= 1);
+			assertTrue((Long)snapshot.get("factory.node.instantiated") >= 10);
+			assertNotNull(snapshot.get("cache.entity.hitRatio"));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+}
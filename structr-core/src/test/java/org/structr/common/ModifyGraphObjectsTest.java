@@ -25,6 +25,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.GenericNode;
+import org.structr.core.entity.TestOne;
 import org.structr.core.entity.relationship.NodeHasLocation;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
@@ -163,4 +164,47 @@ public class ModifyGraphObjectsTest extends StructrTest {
 			fail("Unexpected exception");
 		}
 	}
+
+	public void test03ModifyIndexedProperty() {
+
+		try {
+
+			final TestOne testOne = createTestNode(TestOne.class);
+
+			try (final Tx tx = app.tx()) {
+
+				testOne.setProperty(TestOne.aString, "first");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// setting an unchanged value must not remove the index entry
+				testOne.setProperty(TestOne.aString, "first");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aString, "first").getResult().size());
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				testOne.setProperty(TestOne.aString, "second");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(0, app.nodeQuery(TestOne.class).and(TestOne.aString, "first").getResult().size());
+				assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aString, "second").getResult().size());
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
 }
@@ -22,16 +22,31 @@ import org.structr.common.error.FrameworkException;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.GenericNode;
+import org.structr.core.entity.TestOne;
 import org.structr.core.entity.relationship.NodeHasLocation;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.ConfigurationProvider;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -129,4 +144,255 @@ public class PerformanceTest extends StructrTest {
 
 	}
 
+	/**
+	 * Tests index queries with an increasing number of concurrent reader
+	 * threads.
+	 *
+	 * Since index queries are not synchronized any more, every query must
+	 * return the complete and correct result while other threads query the
+	 * same index. The resulting rates are logged for comparison only, since
+	 * the actual scaling depends on the number of available cores.
+	 */
+	public void test03QueryThroughputWithConcurrentReaders() {
+
+		try {
+
+			final int number           = 100;
+			final int queriesPerThread = 200;
+			final List<TestOne> nodes  = createTestNodes(TestOne.class, number);
+			final Set<String> uuids    = new HashSet<>();
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 0;
+				for (final TestOne node : nodes) {
+
+					node.setProperty(TestOne.name, "TestOne-" + i++);
+					uuids.add(node.getUuid());
+				}
+
+				tx.success();
+			}
+
+			DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+
+			for (int threadCount = 1; threadCount <= 8; threadCount *= 2) {
+
+				final ExecutorService executor     = Executors.newFixedThreadPool(threadCount);
+				final CountDownLatch latch         = new CountDownLatch(threadCount);
+				final AtomicInteger errors         = new AtomicInteger(0);
+				final AtomicInteger queries        = new AtomicInteger(0);
+				final long t0                      = System.nanoTime();
+
+				for (int i = 0; i < threadCount; i++) {
+
+					final int offset = i;
+
+					executor.submit(new Runnable() {
+
+						@Override
+						public void run() {
+
+							try (final Tx tx = app.tx()) {
+
+								for (int j = 0; j < queriesPerThread; j++) {
+
+									// all nodes of the type
+									final Set<String> result = new HashSet<>();
+									for (final TestOne node : app.nodeQuery(TestOne.class).getAsList()) {
+										result.add(node.getUuid());
+									}
+
+									if (!uuids.equals(result)) {
+										errors.incrementAndGet();
+									}
+
+									// a single node by name, different names in each thread
+									final String name           = "TestOne-" + ((offset + j) % number);
+									final List<TestOne> matches = app.nodeQuery(TestOne.class).andName(name).getAsList();
+
+									if (matches.size() != 1 || !name.equals(matches.get(0).getProperty(TestOne.name))) {
+										errors.incrementAndGet();
+									}
+
+									queries.addAndGet(2);
+								}
+
+								tx.success();
+
+							} catch (Throwable t) {
+
+								logger.log(Level.WARNING, "", t);
+								errors.incrementAndGet();
+
+							} finally {
+
+								latch.countDown();
+							}
+						}
+					});
+				}
+
+				latch.await();
+				executor.shutdown();
+
+				final long t1      = System.nanoTime();
+				final double time  = (t1 - t0) / 1000000000.0;
+				final double rate  = queries.get() / time;
+
+				logger.log(Level.INFO, "{0} threads executed {1} queries in {2} seconds ({3} per s)", new Object[] { threadCount, queries.get(), decimalFormat.format(time), decimalFormat.format(rate) });
+
+				assertEquals(0, errors.get());
+				assertEquals(threadCount * queriesPerThread * 2, queries.get());
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.SEVERE, t.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	/**
+	 * Tests node creation throughput with an increasing number of
+	 * concurrent writer threads.
+	 *
+	 * UUIDs are generated per thread without a shared queue, so the
+	 * creation of nodes must not be limited by UUID generation. The
+	 * resulting rates are logged for comparison only, since the actual
+	 * scaling depends on the hardware.
+	 */
+	public void test04NodeCreationThroughputWithConcurrentWriters() {
+
+		try {
+
+			final int nodesPerThread    = 100;
+			final Set<String> uuids     = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			int totalCount              = 0;
+
+			for (int threadCount = 1; threadCount <= 32; threadCount *= 2) {
+
+				final ExecutorService executor     = Executors.newFixedThreadPool(threadCount);
+				final CountDownLatch latch         = new CountDownLatch(threadCount);
+				final AtomicInteger errors         = new AtomicInteger(0);
+				final long t0                      = System.nanoTime();
+
+				for (int i = 0; i < threadCount; i++) {
+
+					executor.submit(new Runnable() {
+
+						@Override
+						public void run() {
+
+							try (final Tx tx = app.tx()) {
+
+								for (int j = 0; j < nodesPerThread; j++) {
+
+									uuids.add(app.create(TestOne.class).getUuid());
+								}
+
+								tx.success();
+
+							} catch (Throwable t) {
+
+								logger.log(Level.WARNING, "", t);
+								errors.incrementAndGet();
+
+							} finally {
+
+								latch.countDown();
+							}
+						}
+					});
+				}
+
+				latch.await();
+				executor.shutdown();
+
+				final long t1      = System.nanoTime();
+				final double time  = (t1 - t0) / 1000000000.0;
+				final double rate  = (threadCount * nodesPerThread) / time;
+
+				logger.log(Level.INFO, "{0} threads created {1} nodes in {2} seconds ({3} per s)", new Object[] { threadCount, threadCount * nodesPerThread, decimalFormat.format(time), decimalFormat.format(rate) });
+
+				assertEquals(0, errors.get());
+
+				totalCount += threadCount * nodesPerThread;
+			}
+
+			// all UUIDs must be unique and in the 32 hex digit format
+			assertEquals(totalCount, uuids.size());
+
+			for (final String uuid : uuids) {
+				assertTrue(uuid.matches("[0-9a-f]{32}"));
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(totalCount, app.nodeQuery(TestOne.class).getResult().size());
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.SEVERE, t.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	/**
+	 * Tests the allocation rate of the property metadata lookups that are
+	 * used for every serialized and validated entity.
+	 *
+	 * The metadata of a type is resolved once, so repeated lookups must
+	 * return the same instances and must not allocate any memory. The
+	 * allocation is only measured if the JVM supports it.
+	 */
+	public void test05AllocationOfPropertyMetadataLookups() {
+
+		final ConfigurationProvider config = StructrApp.getConfiguration();
+		final ThreadMXBean threadBean      = ManagementFactory.getThreadMXBean();
+		final long threadId                = Thread.currentThread().getId();
+		final int number                   = 1000000;
+
+		final Set<PropertyKey> view = config.getPropertySet(TestOne.class, PropertyView.Public);
+		final PropertyKey key       = config.getPropertyKeyForJSONName(TestOne.class, "aString");
+
+		assertSame(view, config.getPropertySet(TestOne.class, PropertyView.Public));
+		assertSame(TestOne.aString, key);
+
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+
+			logger.log(Level.INFO, "Thread allocation measurement not supported, skipping.");
+			return;
+		}
+
+		final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadBean;
+		final long t0                                        = System.nanoTime();
+		final long a0                                        = allocationBean.getThreadAllocatedBytes(threadId);
+		int count                                            = 0;
+
+		for (int i = 0; i < number; i++) {
+
+			count += config.getPropertySet(TestOne.class, PropertyView.Public).size();
+			count += config.getPropertyValidators(null, TestOne.class, key).size();
+
+			if (config.getPropertyKeyForJSONName(TestOne.class, "aString") == key) {
+				count++;
+			}
+		}
+
+		final long a1 = allocationBean.getThreadAllocatedBytes(threadId);
+		final long t1 = System.nanoTime();
+
+		DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		Double time                 = (t1 - t0) / 1000000000.0;
+
+		logger.log(Level.INFO, "{0} metadata lookups in {1} seconds, {2} bytes allocated", new Object[] { number * 3, decimalFormat.format(time), a1 - a0 });
+
+		assertTrue(count >= number);
+
+		// less than one byte per iteration leaves room for unrelated allocations
+		assertTrue(a1 - a0 < number);
+	}
 }
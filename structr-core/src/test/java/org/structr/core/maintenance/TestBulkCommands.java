@@ -1,5 +1,7 @@
 package org.structr.core.maintenance;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -12,14 +14,18 @@ import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.tooling.GlobalGraphOperations;
 import org.structr.common.StructrTest;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.Group;
+import org.structr.core.entity.SixOneManyToMany;
 import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.graph.BulkCreateLabelsCommand;
 import org.structr.core.graph.BulkRebuildIndexCommand;
 import org.structr.core.graph.BulkSetNodePropertiesCommand;
+import org.structr.core.graph.SyncCommand;
 import org.structr.core.graph.Tx;
 
 /**
@@ -208,4 +214,76 @@ public class TestBulkCommands extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	public void testSyncCommandBatchedImport() {
+		testSyncCommandRoundtrip(true);
+	}
+
+	public void testSyncCommandTextFormat() {
+		testSyncCommandRoundtrip(false);
+	}
+
+	// ----- private methods -----
+	private void testSyncCommandRoundtrip(final boolean binary) {
+
+		try {
+
+			final GraphDatabaseService graphDb = app.getGraphDatabaseService();
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			final Set<String> expectedIds      = new LinkedHashSet<>();
+			final TestSix testSix              = createTestNode(TestSix.class);
+
+			expectedIds.add(testSix.getUuid());
+
+			for (final TestOne testOne : createTestNodes(TestOne.class, 20)) {
+
+				createTestRelationship(testSix, testOne, SixOneManyToMany.class);
+				expectedIds.add(testOne.getUuid());
+			}
+
+			// export database
+			try (final Tx tx = app.tx()) {
+
+				final GlobalGraphOperations ggop = GlobalGraphOperations.at(graphDb);
+
+				SyncCommand.exportToStream(buffer, ggop.getAllNodes(), ggop.getAllRelationships(), null, false, binary);
+			}
+
+			// clear database
+			try (final Tx tx = app.tx()) {
+
+				for (final TestOne testOne : app.nodeQuery(TestOne.class).getAsList()) {
+					app.delete(testOne);
+				}
+
+				app.delete(app.get(TestSix.class, testSix.getUuid()));
+
+				tx.success();
+			}
+
+			// import again, using more than one transaction
+			SyncCommand.importFromStream(graphDb, securityContext, new ByteArrayInputStream(buffer.toByteArray()), true, 7);
+
+			try (final Tx tx = app.tx()) {
+
+				final Set<String> importedIds = new LinkedHashSet<>();
+
+				for (final TestOne testOne : app.nodeQuery(TestOne.class).getAsList()) {
+					importedIds.add(testOne.getUuid());
+				}
+
+				for (final TestSix six : app.nodeQuery(TestSix.class).getAsList()) {
+					importedIds.add(six.getUuid());
+				}
+
+				assertEquals(expectedIds, importedIds);
+				assertEquals(20, app.relationshipQuery(SixOneManyToMany.class).getAsList().size());
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
 }
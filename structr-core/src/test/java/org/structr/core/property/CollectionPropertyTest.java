@@ -109,6 +109,49 @@ public class CollectionPropertyTest extends StructrTest {
 		
 	}
 	
+	public void testAddAndRemoveSingleElement() throws Exception {
+
+		final RelationProperty<TestOne> instance = (RelationProperty<TestOne>)TestSix.manyToManyTestOnes;
+		final List<TestOne> testOnes             = createTestNodes(TestOne.class, 3);
+		final TestSix testSix                    = createTestNode(TestSix.class);
+
+		try (final Tx tx = app.tx()) {
+
+			instance.addSingleElement(securityContext, testSix, testOnes.get(0));
+			instance.addSingleElement(securityContext, testSix, testOnes.get(1));
+
+			// adding an element twice must not create a second relationship
+			instance.addSingleElement(securityContext, testSix, testOnes.get(1));
+
+			tx.success();
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(2, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+			assertTrue(instance.containsSingleElement(securityContext, testSix, testOnes.get(0)));
+			assertTrue(instance.containsSingleElement(securityContext, testSix, testOnes.get(1)));
+			assertFalse(instance.containsSingleElement(securityContext, testSix, testOnes.get(2)));
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			instance.removeSingleElement(securityContext, testSix, testOnes.get(0));
+			instance.removeSingleElement(securityContext, testSix, testOnes.get(2));
+
+			tx.success();
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> result = testSix.getProperty(TestSix.manyToManyTestOnes);
+
+			assertEquals(1, result.size());
+			assertEquals(testOnes.get(1), result.get(0));
+			assertFalse(instance.containsSingleElement(securityContext, testSix, testOnes.get(0)));
+		}
+	}
+
 	public void testCascadingDelete() {
 		
 		
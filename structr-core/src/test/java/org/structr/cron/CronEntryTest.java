@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cron;
+
+import java.text.SimpleDateFormat;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Christian Morgner
+ */
+public class CronEntryTest extends TestCase {
+
+	private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+	public void testNextExecutionTime() throws Exception {
+
+		assertNextExecutions("* * * * * *",    "2014-10-18 10:15:31", "2014-10-18 10:15:32");
+		assertNextExecutions("*/15 * * * * *", "2014-10-18 10:15:45", "2014-10-18 10:16:00");
+		assertNextExecutions("0 0 * * * *",    "2014-10-18 11:00:00", "2014-10-18 12:00:00");
+		assertNextExecutions("0 30 2 * * *",   "2014-10-19 02:30:00", "2014-10-20 02:30:00");
+		assertNextExecutions("0 0 0 1 * *",    "2014-11-01 00:00:00", "2014-12-01 00:00:00");
+		assertNextExecutions("0 0 0 * * 1",    "2014-10-20 00:00:00", "2014-10-27 00:00:00");
+		assertNextExecutions("0 0 12 29 2 *",  "2016-02-29 12:00:00", "2020-02-29 12:00:00");
+	}
+
+	public void testInvalidExpression() {
+
+		assertNull(CronEntry.parse("test", "* * * * *"));
+		assertNull(CronEntry.parse("test", "* 61 * * * *"));
+	}
+
+	public void testUnsatisfiableExpression() throws Exception {
+
+		final CronEntry entry = CronEntry.parse("test", "0 0 0 31 2 *");
+
+		assertNotNull(entry);
+
+		try {
+
+			entry.getNextExecutionTime(format.parse("2014-10-18 10:15:30").getTime());
+			fail("February 31st should never match");
+
+		} catch (IllegalArgumentException expected) { }
+	}
+
+	private void assertNextExecutions(final String expression, final String... expected) throws Exception {
+
+		final CronEntry entry = CronEntry.parse("test", expression);
+		long time             = format.parse("2014-10-18 10:15:30").getTime();
+
+		assertNotNull(entry);
+
+		for (final String next : expected) {
+
+			time = entry.getNextExecutionTime(time);
+			assertEquals(expression, next, format.format(time));
+		}
+	}
+}
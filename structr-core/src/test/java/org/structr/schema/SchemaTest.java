@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema;
+
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.graph.Tx;
+
+/**
+ *
+ * @author Christian Morgner
+ */
+public class SchemaTest extends StructrTest {
+
+	public void testIncrementalSchemaCompilation() {
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				app.create(SchemaNode.class, "TestType");
+				tx.success();
+			}
+
+			final Class testType = StructrApp.getConfiguration().getNodeEntityClass("TestType");
+			assertNotNull(testType);
+
+			try (final Tx tx = app.tx()) {
+
+				app.create(SchemaNode.class, "OtherType");
+				tx.success();
+			}
+
+			assertNotNull(StructrApp.getConfiguration().getNodeEntityClass("OtherType"));
+
+			// unrelated types must not be compiled again
+			assertEquals(testType, StructrApp.getConfiguration().getNodeEntityClass("TestType"));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+}
@@ -25,6 +25,8 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.fail;
@@ -47,6 +49,8 @@ import org.structr.core.property.ISO8601DateProperty;
 
 public class ActionContextTest extends StructrTest {
 
+	private static final Logger logger = Logger.getLogger(ActionContextTest.class.getName());
+
 	public void testVariableReplacement() {
 
 		final Date now                    = new Date();
@@ -700,6 +704,77 @@ public class ActionContextTest extends StructrTest {
 		// TODO: test find() and mutating functions
 
 	}
+
+	/**
+	 * Measures the evaluation rate of typical content templates and show
+	 * conditions. Templates are compiled once and then evaluated against
+	 * the action context, so repeated evaluation must yield identical
+	 * results.
+	 */
+	public void testTemplateEvaluationPerformance() {
+
+		final String[] templates = new String[] {
+			"<h1>${this.name}</h1><p>${upper(this.aString)} ${lower(this.aString)}</p>",
+			"${if(equal(this.anInt, 1), \"selected\", null)}",
+			"${titleize(this.name, '-')} - ${this.aDouble}",
+			"doc_sections/${this.id}/childSections?sort=pos"
+		};
+		final String condition = "${and(not(empty(this.aString)), equal(this.anInt, 1))}";
+		final int number       = 10000;
+		TestOne testOne        = null;
+
+		try (final Tx tx = app.tx()) {
+
+			testOne = createTestNode(TestOne.class);
+
+			testOne.setProperty(TestOne.name, "A-nice-little-name-for-my-test-object");
+			testOne.setProperty(TestOne.anInt, 1);
+			testOne.setProperty(TestOne.aString, "String");
+			testOne.setProperty(TestOne.aDouble, 2.234);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx   = new ActionContext(testOne, null);
+			final String[] expected   = new String[templates.length];
+
+			for (int i = 0; i < templates.length; i++) {
+				expected[i] = testOne.replaceVariables(securityContext, ctx, templates[i]);
+			}
+
+			assertEquals("Invalid condition result", "true", testOne.replaceVariables(securityContext, ctx, condition));
+
+			final long t0 = System.nanoTime();
+
+			for (int n = 0; n < number; n++) {
+
+				for (int i = 0; i < templates.length; i++) {
+
+					assertEquals("Compiled template yields different result", expected[i], testOne.replaceVariables(securityContext, ctx, templates[i]));
+				}
+
+				assertEquals("Compiled condition yields different result", "true", testOne.replaceVariables(securityContext, ctx, condition));
+			}
+
+			final long t1 = System.nanoTime();
+
+			final DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final double time                 = (t1 - t0) / 1000000000.0;
+			final double rate                 = (number * (templates.length + 1)) / time;
+
+			logger.log(Level.INFO, "Evaluated {0} templates in {1} seconds ({2} per s)", new Object[] { number * (templates.length + 1), decimalFormat.format(time), decimalFormat.format(rate) });
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+		}
+	}
 }
 
 
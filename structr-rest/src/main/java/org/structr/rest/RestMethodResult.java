@@ -118,6 +118,14 @@ public class RestMethodResult {
 	public Map<String, String> getHeaders() {
 		return headers;
 	}
+
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	public List<GraphObject> getContent() {
+		return content;
+	}
 	
 	public static String jsonError(final int code, final String message) {
 		
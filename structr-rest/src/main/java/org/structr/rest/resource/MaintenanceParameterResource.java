@@ -56,6 +56,8 @@ import org.structr.schema.importer.RDFImporter;
  */
 public class MaintenanceParameterResource extends Resource {
 
+	public static final String METRICS                            = "metrics";
+
 	private static final Map<String, Class> maintenanceCommandMap = new LinkedHashMap<>();
 
 	//~--- static initializers --------------------------------------------
@@ -90,7 +92,7 @@ public class MaintenanceParameterResource extends Resource {
 
 		this.securityContext = securityContext;
 
-		if (maintenanceCommandMap.containsKey(part)) {
+		if (maintenanceCommandMap.containsKey(part) || METRICS.equals(part)) {
 
 			this.uriPart = part;
 
@@ -137,6 +139,10 @@ public class MaintenanceParameterResource extends Resource {
 		return maintenanceCommandMap.get(uriPart);
 	}
 
+	public boolean isMetrics() {
+		return METRICS.equals(uriPart);
+	}
+
 	@Override
 	public String getUriPart() {
 		return uriPart;
@@ -154,7 +160,7 @@ public class MaintenanceParameterResource extends Resource {
 	
 	public static void registerMaintenanceTask(String key, Class<? extends Task> task) {
 		
-		if(maintenanceCommandMap.containsKey(key)) {
+		if(maintenanceCommandMap.containsKey(key) || METRICS.equals(key)) {
 			throw new IllegalStateException("Maintenance command for key " + key + " already registered!");
 		}
 		
@@ -163,7 +169,7 @@ public class MaintenanceParameterResource extends Resource {
 	
 	public static void registerMaintenanceCommand(String key, Class<? extends Command> command) {
 		
-		if(maintenanceCommandMap.containsKey(key)) {
+		if(maintenanceCommandMap.containsKey(key) || METRICS.equals(key)) {
 			throw new IllegalStateException("Maintenance command for key " + key + " already registered!");
 		}
 		
@@ -18,6 +18,8 @@
  */
 package org.structr.rest.resource;
 
+import org.structr.core.GraphObjectMap;
+import org.structr.core.Metrics;
 import org.structr.core.Result;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -29,6 +31,8 @@ import org.structr.rest.exception.SystemException;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,6 +41,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.MaintenanceCommand;
@@ -56,6 +61,7 @@ public class MaintenanceResource extends Resource {
 	//~--- fields ---------------------------------------------------------
 
 	private Class taskOrCommand = null;
+	private boolean metrics     = false;
 
 	//~--- methods --------------------------------------------------------
 
@@ -69,6 +75,22 @@ public class MaintenanceResource extends Resource {
 
 	@Override
 	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page, String offsetId) throws FrameworkException {
+
+		// only metrics can be read via GET
+		if (metrics && securityContext != null && securityContext.isSuperUser()) {
+
+			final List<GraphObjectMap> resultList = new LinkedList<>();
+			final GraphObjectMap snapshot         = new GraphObjectMap();
+
+			for (final Map.Entry<String, Object> entry : Metrics.getSnapshot().entrySet()) {
+				snapshot.setProperty(new GenericProperty(entry.getKey()), entry.getValue());
+			}
+
+			resultList.add(snapshot);
+
+			return new Result(resultList, resultList.size(), false, false);
+		}
+
 		throw new NotAllowedException();
 	}
 
@@ -82,7 +104,14 @@ public class MaintenanceResource extends Resource {
 
 		if ((securityContext != null) && securityContext.isSuperUser()) {
 
-			if (this.taskOrCommand != null) {
+			if (metrics) {
+
+				Metrics.reset();
+
+				// return 200 OK
+				return new RestMethodResult(HttpServletResponse.SC_OK);
+
+			} else if (this.taskOrCommand != null) {
 
 				try {
 
@@ -142,6 +171,7 @@ public class MaintenanceResource extends Resource {
 		if (next instanceof MaintenanceParameterResource) {
 
 			this.taskOrCommand = ((MaintenanceParameterResource) next).getMaintenanceCommand();
+			this.metrics       = ((MaintenanceParameterResource) next).isMetrics();
 
 			return this;
 
@@ -48,6 +48,7 @@ import org.structr.core.graph.search.SearchCommand;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.rest.RestMethodResult;
+import org.structr.rest.exception.IllegalMethodException;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NoResultsException;
 import org.structr.rest.exception.NotAllowedException;
@@ -161,6 +162,29 @@ public abstract class Resource {
 		throw new IllegalPathException();
 	}
 
+	/**
+	 * Applies a partial modification to this resource. Resources that do
+	 * not support partial modifications reject the request.
+	 *
+	 * @param propertySet
+	 * @return the result
+	 * @throws FrameworkException
+	 */
+	public RestMethodResult doPatch(final Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException();
+	}
+
+	/**
+	 * Returns the type resource that creates the entities of a bulk POST
+	 * request to this resource.
+	 *
+	 * @return the type resource, or null if this resource does not accept
+	 * bulk requests
+	 */
+	public TypeResource getBulkResource() {
+		return null;
+	}
+
 	/**
 	 *
 	 * @param propertyView
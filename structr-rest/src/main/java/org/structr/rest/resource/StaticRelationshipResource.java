@@ -21,6 +21,7 @@ import java.lang.reflect.InvocationTargetException;
 import org.structr.common.PagingHelper;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -53,6 +54,7 @@ import org.structr.core.notion.Notion;
 import org.structr.core.property.RelationProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.exception.NotFoundException;
 //~--- JDK imports ------------------------------------------------------------
 
 //~--- classes ----------------------------------------------------------------
@@ -210,6 +212,46 @@ public class StaticRelationshipResource extends SortableResource {
 		return new RestMethodResult(HttpServletResponse.SC_OK);
 	}
 
+	/**
+	 * Adds nodes to or removes nodes from a relationship collection without
+	 * rewriting it. The request body contains the ids of the nodes to add
+	 * and / or remove, e.g. <code>{ "add": [ id1, id2 ], "remove": [ id3 ] }</code>,
+	 * and only the relationships of these nodes are read and modified.
+	 *
+	 * @param propertySet
+	 * @return the result
+	 * @throws FrameworkException
+	 */
+	@Override
+	public RestMethodResult doPatch(final Map<String, Object> propertySet) throws FrameworkException {
+
+		final GraphObject sourceEntity = typedIdResource.getEntity();
+
+		if (sourceEntity != null && propertyKey != null && propertyKey instanceof RelationProperty) {
+
+			final RelationProperty relationProperty = (RelationProperty) propertyKey;
+
+			if (propertyKey.isReadOnly()) {
+
+				logger.log(Level.INFO, "Read-only property on {1}: {0}", new Object[]{sourceEntity.getClass(), typeResource.getRawType()});
+				return new RestMethodResult(HttpServletResponse.SC_FORBIDDEN);
+			}
+
+			// apply removals before additions
+			for (final GraphObject obj : getPatchElements(relationProperty, propertySet.get("remove"))) {
+				relationProperty.removeSingleElement(securityContext, sourceEntity, obj);
+			}
+
+			for (final GraphObject obj : getPatchElements(relationProperty, propertySet.get("add"))) {
+				relationProperty.addSingleElement(securityContext, sourceEntity, obj);
+			}
+
+			return new RestMethodResult(HttpServletResponse.SC_OK);
+		}
+
+		throw new IllegalPathException();
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -364,6 +406,43 @@ public class StaticRelationshipResource extends SortableResource {
 		throw new IllegalPathException();
 	}
 
+	private List<GraphObject> getPatchElements(final RelationProperty relationProperty, final Object source) throws FrameworkException {
+
+		final List<GraphObject> elements = new LinkedList<>();
+		final App app                    = StructrApp.getInstance(securityContext);
+		final Class targetType           = relationProperty.getTargetType();
+
+		if (source != null) {
+
+			final Iterable values = source instanceof Iterable ? (Iterable) source : Collections.singletonList(source);
+
+			for (final Object value : values) {
+
+				// accept plain ids as well as objects with an id
+				final Object id = value instanceof Map ? ((Map) value).get("id") : value;
+				if (id == null) {
+
+					throw new FrameworkException(HttpServletResponse.SC_BAD_REQUEST, "Missing id in " + value);
+				}
+
+				final GraphObject obj = app.get(id.toString());
+				if (obj == null) {
+
+					throw new NotFoundException();
+				}
+
+				if (targetType != null && !targetType.isAssignableFrom(obj.getClass())) {
+
+					throw new FrameworkException(HttpServletResponse.SC_BAD_REQUEST, "Node " + id + " is not of type " + targetType.getSimpleName());
+				}
+
+				elements.add(obj);
+			}
+		}
+
+		return elements;
+	}
+
 	@Override
 	public RestMethodResult doHead() throws FrameworkException {
 		throw new UnsupportedOperationException("Not supported yet.");
@@ -24,7 +24,9 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.search.SearchNodeCommand;
 import org.structr.rest.RestMethodResult;
+import org.structr.common.Permission;
 import org.structr.rest.exception.NotFoundException;
+import org.structr.rest.exception.NotAllowedException;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -37,6 +39,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.error.EmptyPropertyToken;
 import org.structr.common.error.ErrorBuffer;
+import org.structr.common.error.TypeToken;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.GraphObject;
 import org.structr.core.app.App;
@@ -78,6 +81,7 @@ public class TypeResource extends SortableResource {
 	protected HttpServletRequest request                       = null;
 	protected Query query                                      = null;
 	protected boolean isNode                                   = true;
+	protected boolean approximateCount                         = false;
 
 	//~--- methods --------------------------------------------------------
 
@@ -92,6 +96,7 @@ public class TypeResource extends SortableResource {
 		if (rawType != null) {
 
 			final boolean inexactSearch = parseInteger(request.getParameter(JsonRestServlet.REQUEST_PARAMETER_LOOSE_SEARCH)) == 1;
+			approximateCount            = parseInteger(request.getParameter(JsonRestServlet.REQUEST_PARAMETER_APPROXIMATE_COUNT)) == 1;
 			final App app               = StructrApp.getInstance(securityContext);
 			
 			// test if resource class exists
@@ -171,6 +176,7 @@ public class TypeResource extends SortableResource {
 				.pageSize(pageSize)
 				.page(page)
 				.offsetId(offsetId)
+				.approximateCount(approximateCount)
 				.getResult();
 			
 //			
@@ -285,6 +291,68 @@ public class TypeResource extends SortableResource {
 		throw new NotFoundException();
 	}
 
+	/**
+	 * Creates a node from the given property set, or updates the existing
+	 * node of this type if the property set contains its id. Updating a
+	 * node requires write permission.
+	 *
+	 * @param propertySet
+	 * @return a result with status 201 or 200 that contains the node
+	 * @throws FrameworkException
+	 */
+	public RestMethodResult createOrUpdateNode(final Map<String, Object> propertySet) throws FrameworkException {
+
+		final Object id = propertySet.get(GraphObject.id.jsonName());
+		if (id != null && entityClass != null) {
+
+			final App app = StructrApp.getInstance(securityContext);
+
+			// only visible nodes of this resource's type can be updated
+			final NodeInterface existingNode = (NodeInterface)app.nodeQuery(entityClass).uuid(id.toString()).getFirst();
+			if (existingNode != null) {
+
+				if (!securityContext.isAllowed(existingNode, Permission.write)) {
+
+					logger.log(Level.WARNING, "Could not update {0} because {1} has no write permission", new Object[]{existingNode, securityContext.getUser(true)});
+					throw new NotAllowedException();
+				}
+
+				final PropertyMap properties = PropertyMap.inputTypeToJavaType(securityContext, entityClass, propertySet);
+				properties.remove(GraphObject.id);
+
+				for (final Map.Entry<PropertyKey, Object> attr : properties.entrySet()) {
+
+					existingNode.setProperty(attr.getKey(), attr.getValue());
+				}
+
+				final RestMethodResult result = new RestMethodResult(HttpServletResponse.SC_OK);
+				result.addContent(existingNode);
+
+				return result;
+			}
+
+			// a visible node of another type must not be updated through this resource
+			if (app.nodeQuery().uuid(id.toString()).getFirst() != null) {
+
+				throw new FrameworkException(entityClass.getSimpleName(), new TypeToken(GraphObject.id, entityClass.getSimpleName()));
+			}
+		}
+
+		final NodeInterface newNode   = createNode(propertySet);
+		final RestMethodResult result = new RestMethodResult(HttpServletResponse.SC_CREATED);
+
+		result.addContent(newNode);
+
+		return result;
+	}
+
+	@Override
+	public TypeResource getBulkResource() {
+
+		// bulk requests create nodes only
+		return isNode ? this : null;
+	}
+
 	@Override
 	public Resource tryCombineWith(Resource next) throws FrameworkException {
 
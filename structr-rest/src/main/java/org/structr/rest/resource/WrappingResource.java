@@ -52,6 +52,18 @@ public abstract class WrappingResource extends Resource {
 		throw new IllegalPathException();
 	}
 
+	@Override
+	public RestMethodResult doPatch(Map<String, Object> propertySet) throws FrameworkException {
+
+		if (wrappedResource != null) {
+
+			return wrappedResource.doPatch(propertySet);
+
+		}
+
+		throw new IllegalPathException();
+	}
+
 	@Override
 	public RestMethodResult doHead() throws FrameworkException {
 
@@ -64,6 +76,17 @@ public abstract class WrappingResource extends Resource {
 		throw new IllegalPathException();
 	}
 
+	@Override
+	public TypeResource getBulkResource() {
+
+		if (wrappedResource != null) {
+
+			return wrappedResource.getBulkResource();
+		}
+
+		return null;
+	}
+
 	protected void wrapResource(Resource wrappedResource) {
 
 		this.idProperty      = wrappedResource.idProperty;
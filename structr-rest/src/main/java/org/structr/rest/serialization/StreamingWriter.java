@@ -23,6 +23,7 @@ import java.util.List;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Locale;
@@ -101,8 +102,11 @@ public abstract class StreamingWriter {
 			writer.setIndent("   ");
 		}
 		
+		// lazy collection results are instantiated and serialized one by one
+		boolean streamLazily = result.isLazy() && result.isCollection() && !result.isPrimitiveArray();
+
 		// result fields in alphabetical order
-		List<? extends GraphObject> results = result.getResults();
+		List<? extends GraphObject> results = streamLazily ? null : result.getResults();
 		Integer page = result.getPage();
 		Integer pageCount = result.getPageCount();
 		Integer pageSize = result.getPageSize();
@@ -141,7 +145,19 @@ public abstract class StreamingWriter {
 			writer.name("result_count").value(resultCount);
 		}
 
-		if (results != null) {
+		if (streamLazily) {
+
+			writer.name("result").beginArray();
+
+			final boolean truncated = serializeCollection(writer, result.getLazyResults(), flushSize);
+
+			writer.endArray();
+
+			if (truncated) {
+				writer.name("result_truncated").value(true);
+			}
+
+		} else if (results != null) {
 
 			if (results.isEmpty()) {
 
@@ -169,42 +185,23 @@ public abstract class StreamingWriter {
 					throw new IllegalStateException(result.getClass().getSimpleName() + " is not a collection resource, but result set has size " + results.size());
 				}
 
-				// keep track of serialization time
-				long startTime            = System.currentTimeMillis();
-				String localPropertyView  = propertyView.get(null);
-				int flushCounter          = 0;
-
 				if (result.isCollection()) {
 
 					writer.name("result").beginArray();
 
 					// serialize list of results
-					for (GraphObject graphObject : results) {
-						
-						root.serialize(writer, graphObject, localPropertyView, 0);
+					final boolean truncated = serializeCollection(writer, results, flushSize);
 
-						// flush every once in a while
-						if ((++flushCounter % flushSize) == 0) {
-							writer.flush();
-						}
-						
-						// check for timeout
-						if (System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME) {
+					writer.endArray();
 
-							logger.log(Level.SEVERE, "JSON serialization took more than {0} ms, aborted. Please review output view size or adjust timeout.", MAX_SERIALIZATION_TIME);
-							writer.flush();
-							
-							// TODO: create some output indicating that streaming was interrupted
-							break;
-						}
+					if (truncated) {
+						writer.name("result_truncated").value(true);
 					}
 
-					writer.endArray();
-
 				} else {
 
 					writer.name("result");
-					root.serialize(writer, results.get(0), localPropertyView, 0);
+					root.serialize(writer, results.get(0), propertyView.get(null), 0);
 				}
 			}
 		}
@@ -239,6 +236,41 @@ public abstract class StreamingWriter {
 		writer.flush();
 	}
 
+	/**
+	 * Serializes the given results until MAX_SERIALIZATION_TIME is exceeded.
+	 *
+	 * @return whether serialization was aborted before all results were written
+	 */
+	private boolean serializeCollection(final RestWriter writer, final Iterable<? extends GraphObject> results, final int flushSize) throws IOException {
+
+		// keep track of serialization time
+		long startTime            = System.currentTimeMillis();
+		String localPropertyView  = propertyView.get(null);
+		int flushCounter          = 0;
+
+		final Iterator<? extends GraphObject> iterator = results.iterator();
+		while (iterator.hasNext()) {
+
+			root.serialize(writer, iterator.next(), localPropertyView, 0);
+
+			// flush every once in a while
+			if ((++flushCounter % flushSize) == 0) {
+				writer.flush();
+			}
+
+			// check for timeout
+			if (System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME && iterator.hasNext()) {
+
+				logger.log(Level.SEVERE, "JSON serialization took more than {0} ms, aborted. Please review output view size or adjust timeout.", MAX_SERIALIZATION_TIME);
+				writer.flush();
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	private Serializer getSerializerForType(Class type) {
 
 		Class localType       = type;
@@ -23,6 +23,9 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 
 import org.structr.common.SecurityContext;
@@ -31,11 +34,13 @@ import org.structr.core.JsonInput;
 import org.structr.rest.RestMethodResult;
 import org.structr.common.PagingHelper;
 import org.structr.rest.resource.Resource;
+import org.structr.rest.resource.TypeResource;
 import org.structr.core.Result;
 
 //~--- JDK imports ------------------------------------------------------------
 
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Writer;
 
@@ -84,22 +89,29 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	public static final int DEFAULT_VALUE_PAGE_SIZE                     = 20;
 	public static final String DEFAULT_VALUE_SORT_ORDER                 = "asc";
 	public static final String REQUEST_PARAMETER_LOOSE_SEARCH           = "loose";
+	public static final String REQUEST_PARAMETER_APPROXIMATE_COUNT      = "approximateCount";
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_OFFSET_ID              = "pageStartId";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
+	public static final String REQUEST_PARAMETER_BATCH_SIZE             = "batchSize";
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
 	private static final Logger logger                                  = Logger.getLogger(JsonRestServlet.class.getName());
+	private static final long MIN_RETRY_DELAY                           = 100;
+	private static final long MAX_RETRY_DELAY                           = 5000;
+	private static final int PEEK_LIMIT                                 = 8192;
 
 	static {
 
 		commonRequestParameters.add(REQUEST_PARAMETER_LOOSE_SEARCH);
+		commonRequestParameters.add(REQUEST_PARAMETER_APPROXIMATE_COUNT);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
 		commonRequestParameters.add(REQUEST_PARAMETER_OFFSET_ID);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_ORDER);
+		commonRequestParameters.add(REQUEST_PARAMETER_BATCH_SIZE);
 
 		// cross reference here, but these need to be added as well..
 		commonRequestParameters.add(SearchCommand.DISTANCE_SEARCH_KEYWORD);
@@ -120,6 +132,9 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	private ThreadLocalJsonWriter jsonWriter                    = null;
 	private ThreadLocalHtmlWriter htmlWriter                    = null;
 	private Writer logWriter                                    = null;
+	private boolean indentJson                                  = true;
+	private int bulkBatchSize                                   = 1000;
+	private int bulkRetries                                     = 3;
 	private final StructrHttpServiceConfig config = new StructrHttpServiceConfig();
 
 	//~--- methods --------------------------------------------------------
@@ -132,8 +147,6 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	@Override
 	public void init() {
 
-		boolean indentJson = true;
-
 		try {
 			indentJson = Boolean.parseBoolean(StructrApp.getConfigurationValue(Services.JSON_INDENTATION, "true"));
 
@@ -142,6 +155,15 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			logger.log(Level.WARNING, "Unable to parse value for {0}: {1}", new Object[] { Services.JSON_INDENTATION, t.getMessage() } );
 		}
 
+		try {
+			bulkBatchSize = Math.max(1, Integer.parseInt(StructrApp.getConfigurationValue(Services.JSON_BULK_BATCH_SIZE, "1000")));
+			bulkRetries   = Math.max(0, Integer.parseInt(StructrApp.getConfigurationValue(Services.JSON_BULK_RETRIES, "3")));
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to parse bulk settings: {0}", t.getMessage());
+		}
+
 
 		// inject resources
 		resourceMap.putAll(config.getResourceProvider().getResources());
@@ -171,6 +193,20 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	@Override
+	protected void service(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+
+		// HttpServlet does not support PATCH
+		if ("PATCH".equals(request.getMethod())) {
+
+			doPatch(request, response);
+
+		} else {
+
+			super.service(request, response);
+		}
+	}
+
 	// <editor-fold defaultstate="collapsed" desc="DELETE">
 	@Override
 	protected void doDelete(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
@@ -695,22 +731,25 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 				tx.success();
 			}
 
-			final App app = StructrApp.getInstance(securityContext);
+			final App app               = StructrApp.getInstance(securityContext);
+			final BufferedReader reader = request.getReader();
+			final boolean isArray       = isJsonArray(reader);
 
-			// isolate input parsing (will include read and write operations)
-			try (final Tx tx = app.tx()) {
-				propertySet = gson.get().fromJson(request.getReader(), JsonInput.class);
-				tx.success();
+			if (!isArray) {
+
+				// isolate input parsing (will include read and write operations)
+				try (final Tx tx = app.tx()) {
+					propertySet = gson.get().fromJson(reader, JsonInput.class);
+					tx.success();
+				}
 			}
 
 			if (securityContext != null) {
 
-				// evaluate constraint chain
-				Map<String, Object> properties  = convertPropertySetToMap(propertySet);
-
 				// isolate resource authentication
 				try (final Tx tx = app.tx()) {
 
+					// evaluate constraint chain
 					resource = ResourceHelper.applyViewTransformation(request, securityContext,
 						ResourceHelper.optimizeNestedResourceChain(ResourceHelper.parsePath(securityContext, request, resourceMap, propertyView,
 							config.getDefaultIdProperty()), config.getDefaultIdProperty()), propertyView);
@@ -718,8 +757,31 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 					tx.success();
 				}
 
+				if (isArray) {
+
+					final TypeResource bulkResource = resource.getBulkResource();
+					if (bulkResource != null) {
+
+						// stream input and output, transactions are handled per batch
+						doBulkPost(securityContext, bulkResource, request, reader, response);
+
+						propertyView.set(securityContext, config.getDefaultPropertyView());
+						return;
+					}
+
+					// isolate input parsing (will include read and write operations)
+					try (final Tx tx = app.tx()) {
+						propertySet = gson.get().fromJson(reader, JsonInput.class);
+						tx.success();
+					}
+				}
+
+				final Map<String, Object> properties = convertPropertySetToMap(propertySet);
+
 				// isolate doPost
 				boolean retry = true;
+				int attempt   = 0;
+
 				while (retry) {
 
 					try (final Tx tx = app.tx()) {
@@ -729,7 +791,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 						retry = false;
 
 					} catch (DeadlockDetectedException ddex) {
-						retry = true;
+
+						waitBeforeRetry(ddex, ++attempt);
 					}
 				}
 
@@ -822,6 +885,24 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	// <editor-fold defaultstate="collapsed" desc="PUT">
 	@Override
 	protected void doPut(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+		doUpdate("PUT", request, response);
+	}
+
+	// </editor-fold>
+
+	// <editor-fold defaultstate="collapsed" desc="PATCH">
+	protected void doPatch(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+		doUpdate("PATCH", request, response);
+	}
+
+	// </editor-fold>
+
+	// <editor-fold defaultstate="collapsed" desc="PUT and PATCH">
+	/**
+	 * Handles PUT and PATCH requests, which differ only in the resource
+	 * method that is called.
+	 */
+	private void doUpdate(final String method, final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
 
 		SecurityContext securityContext = null;
 		Authenticator authenticator     = null;
@@ -866,17 +947,18 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 					tx.success();
 				}
 
-				// isolate doPut
+				// isolate doPut / doPatch
 				boolean retry = true;
+				int attempt   = 0;
 				while (retry) {
 
 					try (final Tx tx = app.tx()) {
-						result = resource.doPut(properties);
+						result = "PATCH".equals(method) ? resource.doPatch(properties) : resource.doPut(properties);
 						tx.success();
 						retry = false;
 
 					} catch (DeadlockDetectedException ddex) {
-						retry = true;
+						waitBeforeRetry(ddex, ++attempt);
 					}
 				}
 
@@ -906,30 +988,30 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 		} catch (JsonSyntaxException jsex) {
 
-			logger.log(Level.WARNING, "JsonSyntaxException in PUT", jsex);
+			logger.log(Level.WARNING, "JsonSyntaxException in " + method, jsex);
 
 			int code = HttpServletResponse.SC_BAD_REQUEST;
 
 			response.setStatus(code);
-			response.getWriter().append(RestMethodResult.jsonError(code, "JsonSyntaxException in PUT: " + jsex.getMessage()));
+			response.getWriter().append(RestMethodResult.jsonError(code, "JsonSyntaxException in " + method + ": " + jsex.getMessage()));
 
 		} catch (JsonParseException jpex) {
 
-			logger.log(Level.WARNING, "JsonParseException in PUT", jpex);
+			logger.log(Level.WARNING, "JsonParseException in " + method, jpex);
 
 			int code = HttpServletResponse.SC_BAD_REQUEST;
 
 			response.setStatus(code);
-			response.getWriter().append(RestMethodResult.jsonError(code, "JsonSyntaxException in PUT: " + jpex.getMessage()));
+			response.getWriter().append(RestMethodResult.jsonError(code, "JsonParseException in " + method + ": " + jpex.getMessage()));
 
 		} catch (Throwable t) {
 
-			logger.log(Level.WARNING, "Exception in PUT", t);
+			logger.log(Level.WARNING, "Exception in " + method, t);
 
 			int code = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 
 			response.setStatus(code);
-			response.getWriter().append(RestMethodResult.jsonError(code, "JsonSyntaxException in PUT: " + t.getMessage()));
+			response.getWriter().append(RestMethodResult.jsonError(code, "Exception in " + method + ": " + t.getMessage()));
 
 		} finally {
 
@@ -968,6 +1050,346 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 	// <editor-fold defaultstate="collapsed" desc="private methods">
 
+	// <editor-fold defaultstate="collapsed" desc="bulk POST">
+	/**
+	 * Creates or updates the entities of a JSON array in batches, each of
+	 * which is committed in its own transaction. The result of each item
+	 * is streamed back as soon as its batch is committed, followed by the
+	 * number of processed items and the throughput.
+	 *
+	 * A batch that fails is repeated item by item, so that an invalid item
+	 * does not prevent the other items of its batch from being stored. If
+	 * the input stream itself is broken, the items read so far are stored
+	 * and the parse error is reported in a trailing "error" field, so that
+	 * the response is always a complete JSON object.
+	 */
+	private void doBulkPost(final SecurityContext securityContext, final TypeResource resource, final HttpServletRequest request, final BufferedReader reader, final HttpServletResponse response) throws IOException {
+
+		final List<Map<String, Object>> batch = new ArrayList<>();
+		final DecimalFormat decimalFormat     = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		final App app                         = StructrApp.getInstance(securityContext);
+		final JsonReader input                = new JsonReader(reader);
+		final JsonWriter output               = new JsonWriter(response.getWriter());
+		final int batchSize                   = getBatchSize(request);
+		final int[] counts                    = new int[3];
+		final long t0                         = System.nanoTime();
+		String inputError                     = null;
+		boolean hasNext                       = true;
+		int count                             = 0;
+
+		input.setLenient(true);
+
+		if (indentJson) {
+			output.setIndent("\t");
+		}
+
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		output.beginObject();
+		output.name("result");
+		output.beginArray();
+
+		try {
+			input.beginArray();
+
+		} catch (IOException | JsonParseException | IllegalStateException ex) {
+
+			inputError = getInputError(ex, count);
+			hasNext    = false;
+		}
+
+		while (hasNext) {
+
+			try {
+				hasNext = readBatch(input, batch, batchSize);
+
+			} catch (IOException | JsonParseException | IllegalStateException ex) {
+
+				inputError = getInputError(ex, count + batch.size());
+				hasNext    = false;
+			}
+
+			if (!batch.isEmpty()) {
+
+				writeBulkResults(output, processBatch(app, resource, batch, count), counts);
+				count += batch.size();
+				batch.clear();
+
+				// the nodes of a committed batch are not needed any more
+				securityContext.cleanUp();
+			}
+		}
+
+		final double time = (System.nanoTime() - t0) / 1000000000.0;
+
+		output.endArray();
+		output.name("result_count").value(count);
+		output.name("created").value(counts[0]);
+		output.name("updated").value(counts[1]);
+		output.name("failed").value(counts[2]);
+		output.name("processing_time").value(decimalFormat.format(time));
+		output.name("items_per_second").value(decimalFormat.format(time > 0 ? count / time : 0.0));
+
+		if (inputError != null) {
+
+			output.name("error");
+			output.beginObject();
+			output.name("code").value(HttpServletResponse.SC_BAD_REQUEST);
+			output.name("message").value(inputError);
+			output.endObject();
+		}
+
+		output.endObject();
+		output.flush();
+
+		Metrics.counter("rest.bulk.items").addAndGet(count);
+
+		logger.log(Level.INFO, "Bulk POST to {0}: {1} items in {2} seconds ({3} created, {4} updated, {5} failed)", new Object[] { resource.getRawType(), count, decimalFormat.format(time), counts[0], counts[1], counts[2] });
+	}
+
+	/**
+	 * Reads items from the input array until the batch is full.
+	 *
+	 * @return whether the input array contains more items
+	 */
+	private boolean readBatch(final JsonReader input, final List<Map<String, Object>> batch, final int batchSize) throws IOException {
+
+		while (batch.size() < batchSize) {
+
+			if (!input.hasNext()) {
+
+				input.endArray();
+				return false;
+			}
+
+			if (input.peek() == JsonToken.BEGIN_OBJECT) {
+
+				batch.add(convertPropertySetToMap((JsonInput)gson.get().fromJson(input, JsonInput.class)));
+
+			} else {
+
+				// invalid item, reported when its batch is written
+				input.skipValue();
+				batch.add(null);
+			}
+		}
+
+		return true;
+	}
+
+	private String getInputError(final Exception ex, final int index) {
+
+		logger.log(Level.WARNING, "Invalid JSON input in bulk POST after {0} items: {1}", new Object[] { index, ex.getMessage() });
+
+		return "Invalid JSON input after " + index + " items: " + ex.getMessage();
+	}
+
+	private List<BulkItemResult> processBatch(final App app, final TypeResource resource, final List<Map<String, Object>> batch, final int offset) {
+
+		try {
+
+			return executeBatch(app, resource, batch, offset);
+
+		} catch (DeadlockDetectedException ddex) {
+
+			final List<BulkItemResult> results = new ArrayList<>(batch.size());
+
+			for (int i=0; i<batch.size(); i++) {
+				results.add(new BulkItemResult(offset + i, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ddex.getMessage()));
+			}
+
+			return results;
+
+		} catch (FrameworkException | RuntimeException ex) {
+
+			if (batch.size() == 1) {
+				return Collections.singletonList(getItemResult(offset, ex));
+			}
+
+			// isolate the failing items
+			final List<BulkItemResult> results = new ArrayList<>(batch.size());
+
+			for (int i=0; i<batch.size(); i++) {
+
+				try {
+
+					results.addAll(executeBatch(app, resource, batch.subList(i, i+1), offset + i));
+
+				} catch (DeadlockDetectedException ddex) {
+
+					results.add(new BulkItemResult(offset + i, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ddex.getMessage()));
+
+				} catch (FrameworkException | RuntimeException itemException) {
+
+					results.add(getItemResult(offset + i, itemException));
+				}
+			}
+
+			return results;
+		}
+	}
+
+	private BulkItemResult getItemResult(final int index, final Exception ex) {
+
+		if (ex instanceof FrameworkException) {
+			return new BulkItemResult(index, (FrameworkException)ex);
+		}
+
+		logger.log(Level.WARNING, "Unable to store item " + index + " of bulk POST", ex);
+
+		return new BulkItemResult(index, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+	}
+
+	private List<BulkItemResult> executeBatch(final App app, final TypeResource resource, final List<Map<String, Object>> batch, final int offset) throws FrameworkException {
+
+		int attempt = 0;
+
+		while (true) {
+
+			final List<BulkItemResult> results = new ArrayList<>(batch.size());
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<batch.size(); i++) {
+
+					final Map<String, Object> item = batch.get(i);
+					if (item != null) {
+
+						final RestMethodResult result = resource.createOrUpdateNode(item);
+						final GraphObject node        = result.getContent().get(0);
+
+						results.add(new BulkItemResult(offset + i, result.getResponseCode(), node.getUuid()));
+
+					} else {
+
+						results.add(new BulkItemResult(offset + i, HttpServletResponse.SC_BAD_REQUEST, "Item is not a JSON object"));
+					}
+				}
+
+				tx.success();
+
+				return results;
+
+			} catch (DeadlockDetectedException ddex) {
+
+				waitBeforeRetry(ddex, ++attempt);
+			}
+		}
+	}
+
+	private void writeBulkResults(final JsonWriter output, final List<BulkItemResult> results, final int[] counts) throws IOException {
+
+		for (final BulkItemResult result : results) {
+
+			output.beginObject();
+			output.name("index").value(result.index);
+			output.name("code").value(result.code);
+
+			switch (result.code) {
+
+				case HttpServletResponse.SC_CREATED:
+					output.name("id").value(result.id);
+					counts[0]++;
+					break;
+
+				case HttpServletResponse.SC_OK:
+					output.name("id").value(result.id);
+					counts[1]++;
+					break;
+
+				default:
+					if (result.exception != null) {
+
+						output.name("error");
+						gson.get().toJson(result.exception, FrameworkException.class, output);
+
+					} else {
+
+						output.name("error").value(result.message);
+					}
+					counts[2]++;
+					break;
+			}
+
+			output.endObject();
+		}
+
+		// send results of this batch to the client
+		output.flush();
+	}
+
+	private int getBatchSize(final HttpServletRequest request) {
+
+		final String value = request.getParameter(REQUEST_PARAMETER_BATCH_SIZE);
+		if (value != null) {
+
+			try {
+				return Math.max(1, Integer.parseInt(value));
+
+			} catch (NumberFormatException nfex) {
+
+				logger.log(Level.WARNING, "Invalid batch size {0}, using default of {1}", new Object[] { value, bulkBatchSize });
+			}
+		}
+
+		return bulkBatchSize;
+	}
+
+	/**
+	 * Waits before a transaction is retried after a deadlock, with an
+	 * exponentially increasing delay.
+	 *
+	 * @throws DeadlockDetectedException if the number of retries is exceeded
+	 */
+	private void waitBeforeRetry(final DeadlockDetectedException ddex, final int attempt) {
+
+		if (attempt > bulkRetries) {
+			throw ddex;
+		}
+
+		logger.log(Level.INFO, "Deadlock detected, retrying transaction ({0}/{1})", new Object[] { attempt, bulkRetries });
+
+		try {
+			Thread.sleep(Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << (attempt - 1)) + (long)(Math.random() * MIN_RETRY_DELAY));
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+			throw ddex;
+		}
+	}
+
+	/**
+	 * Tests whether the request body starts with a JSON array, without
+	 * consuming any input.
+	 */
+	private boolean isJsonArray(final BufferedReader reader) throws IOException {
+
+		reader.mark(PEEK_LIMIT);
+
+		try {
+
+			for (int i=0; i<PEEK_LIMIT; i++) {
+
+				final int c = reader.read();
+				if (c == -1) {
+					return false;
+				}
+
+				if (!Character.isWhitespace(c)) {
+					return c == '[';
+				}
+			}
+
+		} finally {
+
+			reader.reset();
+		}
+
+		return false;
+	}
+	// </editor-fold>
+
 	private Map<String, Object> convertPropertySetToMap(JsonInput propertySet) {
 
 		if (propertySet != null) {
@@ -979,6 +1401,37 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	// </editor-fold>
 
 	// <editor-fold defaultstate="collapsed" desc="nested classes">
+	private static class BulkItemResult {
+
+		private FrameworkException exception = null;
+		private String message               = null;
+		private String id                    = null;
+		private int index                    = 0;
+		private int code                     = 0;
+
+		public BulkItemResult(final int index, final int code, final String idOrMessage) {
+
+			this.index = index;
+			this.code  = code;
+
+			if (code == HttpServletResponse.SC_OK || code == HttpServletResponse.SC_CREATED) {
+
+				this.id = idOrMessage;
+
+			} else {
+
+				this.message = idOrMessage;
+			}
+		}
+
+		public BulkItemResult(final int index, final FrameworkException exception) {
+
+			this.index     = index;
+			this.code      = exception.getStatus();
+			this.exception = exception;
+		}
+	}
+
 	private class ThreadLocalPropertyView extends ThreadLocal<String> implements Value<String> {
 
 		@Override
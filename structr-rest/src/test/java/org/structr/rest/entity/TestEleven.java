@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.entity;
+
+import org.structr.common.PropertyView;
+import org.structr.common.ValidationHelper;
+import org.structr.common.View;
+import org.structr.common.error.ErrorBuffer;
+import org.structr.core.entity.AbstractNode;
+
+/**
+ * An entity that requires a name, for testing validation errors.
+ *
+ * @author Christian Morgner
+ */
+public class TestEleven extends AbstractNode {
+
+	public static final View defaultView = new View(TestEleven.class, PropertyView.Public, name);
+
+	@Override
+	public boolean isValid(final ErrorBuffer errorBuffer) {
+
+		boolean error = false;
+
+		error |= ValidationHelper.checkStringNotBlank(this, name, errorBuffer);
+
+		return !error && super.isValid(errorBuffer);
+	}
+}
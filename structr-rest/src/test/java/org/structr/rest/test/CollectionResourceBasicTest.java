@@ -150,4 +150,126 @@ public class CollectionResourceBasicTest extends StructrRestTest {
 		    
 	}
 
+	/**
+	 * Test the creation and update of multiple entities with a single
+	 * POST request, committed in batches.
+	 */
+	public void test030BulkCreateAndUpdateTestObjects() {
+
+		// create five objects in batches of two, one item is invalid
+		String uuid = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.body(" [ { 'name' : 'a' }, { 'name' : 'b' }, 'invalid', { 'name' : 'c' }, { 'name' : 'd' }, { 'name' : 'e' } ] ")
+			.expect()
+				.statusCode(200)
+				.body("result_count",       equalTo(6))
+				.body("created",            equalTo(5))
+				.body("updated",            equalTo(0))
+				.body("failed",             equalTo(1))
+				.body("result[0].code",     equalTo(201))
+				.body("result[2].index",    equalTo(2))
+				.body("result[2].code",     equalTo(400))
+				.body("items_per_second",   notNullValue())
+			.when()
+				.post("/test_objects?batchSize=2")
+				.jsonPath().get("result[0].id");
+
+		assertNotNull(uuid);
+
+		// items with the id of an existing object update that object
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.body(" [ { 'id' : '" + uuid + "', 'name' : 'x' } ] ")
+			.expect()
+				.statusCode(200)
+				.body("updated",            equalTo(1))
+				.body("result[0].code",     equalTo(200))
+				.body("result[0].id",       equalTo(uuid))
+			.when()
+				.post("/test_objects");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result_count",       equalTo(5))
+			.when()
+				.get("/test_objects");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result.name",        equalTo("x"))
+			.when()
+				.get("/test_objects/" + uuid);
+
+		// an item that fails validation does not affect the other items of its batch
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.body(" [ { 'name' : 'a' }, { 'name' : '' }, { 'name' : 'c' } ] ")
+			.expect()
+				.statusCode(200)
+				.body("result_count",       equalTo(3))
+				.body("created",            equalTo(2))
+				.body("failed",             equalTo(1))
+				.body("result[0].code",     equalTo(201))
+				.body("result[1].code",     equalTo(422))
+				.body("result[1].error",    notNullValue())
+				.body("result[2].code",     equalTo(201))
+			.when()
+				.post("/test_elevens?batchSize=3");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result_count",       equalTo(2))
+			.when()
+				.get("/test_elevens");
+
+		// objects of another type are not updated
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.body(" [ { 'id' : '" + uuid + "', 'name' : 'y' } ] ")
+			.expect()
+				.statusCode(200)
+				.body("updated",            equalTo(0))
+				.body("failed",             equalTo(1))
+			.when()
+				.post("/test_elevens");
+	}
+
+	public void test031BulkCreateWithMalformedInput() {
+
+		// the items before the syntax error are stored, and the error is
+		// reported at the end of a complete response object
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.body(" [ { 'name' : 'a' }, { 'name' : } ] ")
+			.expect()
+				.statusCode(200)
+				.body("result_count",       equalTo(1))
+				.body("created",            equalTo(1))
+				.body("result[0].code",     equalTo(201))
+				.body("error.code",         equalTo(400))
+			.when()
+				.post("/test_objects");
+	}
 }
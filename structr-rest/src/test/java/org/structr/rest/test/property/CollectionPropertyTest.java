@@ -75,6 +75,83 @@ public class CollectionPropertyTest extends StructrRestTest {
 				
 	}
 
+	public void testPatchManyToMany() throws Exception {
+
+		String[] testOneIds = new String[3];
+
+		for (int i=0; i<3; i++) {
+
+			String location = RestAssured.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(201)
+			.when()
+				.post("/test_ones")
+				.getHeader("Location");
+
+			testOneIds[i] = getUuidFromLocation(location);
+		}
+
+		// POST to create a TestFive object with relationships to the first two TestOnes
+		String location = RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.body(" { 'manyToManyTestOnes' : ['" + testOneIds[0] + "', '" + testOneIds[1] + "'] } ")
+		.expect()
+			.statusCode(201)
+		.when()
+			.post("/test_fives")
+			.getHeader("Location");
+
+		String testFiveId = getUuidFromLocation(location);
+
+		// PATCH adds and removes single elements without replacing the collection
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.body(" { 'add' : ['" + testOneIds[2] + "'], 'remove' : ['" + testOneIds[0] + "'] } ")
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+		.expect()
+			.statusCode(200)
+		.when()
+			.patch("/test_fives/" + testFiveId + "/manyToManyTestOnes");
+
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+		.expect()
+			.statusCode(200)
+			.body("result.manyToManyTestOnes", hasSize(2))
+			.body("result.manyToManyTestOnes", hasItems(testOneIds[1], testOneIds[2]))
+			.body("result.manyToManyTestOnes", not(hasItem(testOneIds[0])))
+		.when()
+			.get("/test_fives/" + testFiveId);
+
+		// adding an existing element is a no-op
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.body(" { 'add' : ['" + testOneIds[1] + "'] } ")
+		.expect()
+			.statusCode(200)
+		.when()
+			.patch("/test_fives/" + testFiveId + "/manyToManyTestOnes");
+
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+		.expect()
+			.statusCode(200)
+			.body("result.manyToManyTestOnes", hasSize(2))
+		.when()
+			.get("/test_fives/" + testFiveId);
+
+		// unknown ids are rejected
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.body(" { 'add' : ['abcdef'] } ")
+		.expect()
+			.statusCode(404)
+		.when()
+			.patch("/test_fives/" + testFiveId + "/manyToManyTestOnes");
+	}
+
 	public void testOneToMany() throws Exception {
 		
 
@@ -72,6 +72,9 @@ public class UiAuthenticator implements Authenticator {
 		methods.put("DELETE", Method.DELETE);
 		methods.put("OPTIONS", Method.OPTIONS);
 
+		// partial modifications share the grants of PUT
+		methods.put("PATCH", Method.PUT);
+
 	}
 
 	// access flags
@@ -149,7 +152,7 @@ public class UiAuthenticator implements Authenticator {
 
 			 // allow cross site resource sharing (read only)
 			response.setHeader("Access-Control-Allow-Origin", origin);
-			response.setHeader("Access-Control-Allow-Methods", "GET,PUT,POST");
+			response.setHeader("Access-Control-Allow-Methods", "GET,PUT,POST,PATCH");
 			response.setHeader("Access-Control-Allow-Headers", "Content-Type");
 
 		 }
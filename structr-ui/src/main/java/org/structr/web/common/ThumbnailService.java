@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.StructrConf;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Command;
+import org.structr.core.Metrics;
+import org.structr.core.Service;
+import org.structr.core.Services;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.web.entity.Image;
+
+/**
+ * Creates thumbnails of images in the background, using a bounded pool of
+ * worker threads.
+ *
+ * Requests are deduplicated by image, image checksum and target size, so
+ * that concurrent reads of the same thumbnail property do not scale the
+ * same image more than once. Requests that do not fit into the queue are
+ * dropped and will be repeated on the next access. If this service is not
+ * configured, thumbnails are created synchronously when they are read.
+ *
+ * @author Axel Morgner
+ */
+public class ThumbnailService implements Service {
+
+	private static final Logger logger                 = Logger.getLogger(ThumbnailService.class.getName());
+
+	public static final String THUMBNAIL_WORKERS       = "thumbnails.workers";
+	public static final String THUMBNAIL_QUEUE_SIZE    = "thumbnails.queue.size";
+
+	private final Set<String> pendingTasks             = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private ThreadPoolExecutor executor                = null;
+	private boolean isRunning                          = false;
+
+	@Override
+	public void injectArguments(final Command command) {
+	}
+
+	@Override
+	public void initialize(final StructrConf config) {
+
+		final StructrConf finalConfig = new StructrConf();
+
+		// Default config
+		finalConfig.setProperty(THUMBNAIL_WORKERS,    "2");
+		finalConfig.setProperty(THUMBNAIL_QUEUE_SIZE, "1000");
+
+		Services.mergeConfiguration(finalConfig, config);
+
+		final int workers   = parseInt(finalConfig.getProperty(THUMBNAIL_WORKERS), 2);
+		final int queueSize = parseInt(finalConfig.getProperty(THUMBNAIL_QUEUE_SIZE), 1000);
+
+		executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+				final Thread thread = new Thread(runnable, "ThumbnailService-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+
+				return thread;
+			}
+		});
+
+		Metrics.gauge("thumbnails.queued", new Metrics.Gauge() {
+
+			@Override
+			public Object getValue() {
+				return getQueueSize();
+			}
+		});
+
+		logger.log(Level.INFO, "Thumbnail service started with {0} worker(s)", workers);
+
+		isRunning = true;
+	}
+
+	@Override
+	public void shutdown() {
+
+		isRunning = false;
+
+		if (executor != null) {
+
+			executor.shutdownNow();
+
+			try {
+				executor.awaitTermination(10, TimeUnit.SECONDS);
+
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		pendingTasks.clear();
+	}
+
+	@Override
+	public String getName() {
+		return ThumbnailService.class.getSimpleName();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	/**
+	 * Queues the creation of a thumbnail of the given image.
+	 *
+	 * @param image
+	 * @param checksum the current checksum of the image data
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param cropToFit
+	 *
+	 * @return true if a new task was queued, false if an identical task is
+	 * already pending or the queue is full
+	 */
+	public boolean enqueue(final Image image, final Long checksum, final int maxWidth, final int maxHeight, final boolean cropToFit) {
+
+		if (!isRunning) {
+			return false;
+		}
+
+		final String uuid = image.getUuid();
+		final String key  = uuid + ":" + checksum + ":" + maxWidth + "x" + maxHeight + (cropToFit ? ":crop" : "");
+
+		if (!pendingTasks.add(key)) {
+			return false;
+		}
+
+		try {
+
+			executor.execute(new ThumbnailTask(key, uuid, maxWidth, maxHeight, cropToFit));
+
+			return true;
+
+		} catch (RejectedExecutionException rex) {
+
+			pendingTasks.remove(key);
+			Metrics.counter("thumbnails.rejected").incrementAndGet();
+
+			logger.log(Level.FINE, "Thumbnail queue full, not creating thumbnail for image {0}", uuid);
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the number of thumbnails that are queued or being created
+	 */
+	public int getQueueSize() {
+		return pendingTasks.size();
+	}
+
+	// ----- private methods -----
+	private int parseInt(final String value, final int defaultValue) {
+
+		try {
+			return Integer.parseInt(value);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to parse value {0}, using default of {1}", new Object[] { value, defaultValue });
+		}
+
+		return defaultValue;
+	}
+
+	// ----- nested classes -----
+	private class ThumbnailTask implements Runnable {
+
+		private String key      = null;
+		private String uuid     = null;
+		private int maxWidth    = 0;
+		private int maxHeight   = 0;
+		private boolean crop    = false;
+
+		public ThumbnailTask(final String key, final String uuid, final int maxWidth, final int maxHeight, final boolean crop) {
+
+			this.key       = key;
+			this.uuid      = uuid;
+			this.maxWidth  = maxWidth;
+			this.maxHeight = maxHeight;
+			this.crop      = crop;
+		}
+
+		@Override
+		public void run() {
+
+			final long t0 = System.nanoTime();
+
+			try (final Tx tx = StructrApp.getInstance().tx()) {
+
+				final Image image = StructrApp.getInstance().get(Image.class, uuid);
+				if (image != null) {
+
+					// create inline, we are the background worker
+					image.getScaledImage(maxWidth, maxHeight, crop, null);
+				}
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				logger.log(Level.WARNING, "Unable to create thumbnail for image " + uuid, fex);
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unexpected exception while creating thumbnail for image " + uuid, t);
+
+			} finally {
+
+				pendingTasks.remove(key);
+
+				Metrics.timer("thumbnails.create").updateSince(t0);
+			}
+		}
+	}
+}
@@ -177,6 +177,20 @@ public class File extends AbstractFile implements Linkable {
 	public String getPath() {
 		return FileHelper.getFolderPath(this);
 	}
+
+	/**
+	 * @return the file that stores the content of this node, or null
+	 */
+	public java.io.File getFileOnDisk() {
+
+		final String path = getRelativeFilePath();
+		if (path != null) {
+
+			return new java.io.File(FileHelper.getFilePath(path));
+		}
+
+		return null;
+	}
 	
 	public InputStream getInputStream() {
 
@@ -22,7 +22,9 @@ import org.structr.web.common.FileHelper;
 
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailService;
 import org.structr.common.PropertyView;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.property.IntProperty;
 import org.structr.core.property.Property;
@@ -37,6 +39,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.common.ThumbnailParameters;
 import org.structr.core.app.App;
+import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
@@ -71,6 +74,8 @@ public class Image extends File {
 	public static final org.structr.common.View uiView              = new org.structr.common.View(Image.class, PropertyView.Ui, type, name, contentType, size, relativeFilePath, width, height, tnSmall, tnMid, isThumbnail, owner, parent, path);
 	public static final org.structr.common.View publicView          = new org.structr.common.View(Image.class, PropertyView.Public, type, name, width, height, tnSmall, tnMid, isThumbnail, owner, parent, path);
 
+	private boolean contentModified = false;
+
 //	@Override
 //	public boolean isValid(ErrorBuffer errorBuffer) {
 //		
@@ -100,10 +105,69 @@ public class Image extends File {
 
 		}
 
+		// remember new image data for the thumbnail service
+		if (File.checksum.equals(key) && value != null && !value.equals(getProperty(File.checksum))) {
+			contentModified = true;
+		}
+
 		super.setProperty(key, value);
 		
 	}
 	
+	@Override
+	public void afterCreation(SecurityContext securityContext) {
+
+		super.afterCreation(securityContext);
+
+		// image data may already have been written in the creating transaction
+		enqueueThumbnails();
+	}
+
+	@Override
+	public void afterModification(SecurityContext securityContext) {
+
+		super.afterModification(securityContext);
+
+		// create thumbnails at upload time instead of on first access
+		enqueueThumbnails();
+	}
+
+	/**
+	 * Queue creation of all thumbnails of this image once the image data
+	 * has been written. Called after commit, so the worker can see the
+	 * stored content and checksum.
+	 */
+	private void enqueueThumbnails() {
+
+		if (!contentModified) {
+			return;
+		}
+
+		contentModified = false;
+
+		final Long checksum = getProperty(Image.checksum);
+		final Long fileSize = getProperty(Image.size);
+
+		// no data written yet
+		if (checksum == null || fileSize == null || fileSize == 0) {
+			return;
+		}
+
+		final ThumbnailService thumbnailService = Services.getInstance().getService(ThumbnailService.class);
+		if (thumbnailService != null && thumbnailService.isRunning() && !getProperty(Image.isThumbnail)) {
+
+			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(getClass(), PropertyView.All)) {
+
+				if (key instanceof ThumbnailProperty) {
+
+					final ThumbnailParameters parameters = ((ThumbnailProperty)key).getThumbnailParameters();
+
+					thumbnailService.enqueue(this, checksum, parameters.getMaxWidth(), parameters.getMaxHeight(), parameters.getCropToFit());
+				}
+			}
+		}
+	}
+
 	//~--- get methods ----------------------------------------------------
 
 	public Integer getWidth() {
@@ -184,6 +248,26 @@ public class Image extends File {
 	 */
 	public Image getScaledImage(final int maxWidth, final int maxHeight, final boolean cropToFit) {
 
+		return getScaledImage(maxWidth, maxHeight, cropToFit, Services.getInstance().getService(ThumbnailService.class));
+	}
+
+	/**
+	 * Get (down-)scaled image of this image
+	 *
+	 * If a running {@link ThumbnailService} is given, a missing or outdated
+	 * thumbnail is created in the background and this image is returned
+	 * until the thumbnail is available. Otherwise, the thumbnail is created
+	 * inline.
+	 *
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param cropToFit
+	 * @param thumbnailService the service to create the thumbnail with, or null
+	 *
+	 * @return
+	 */
+	public Image getScaledImage(final int maxWidth, final int maxHeight, final boolean cropToFit, final ThumbnailService thumbnailService) {
+
 		Iterable<Thumbnails> thumbnailRelationships = getThumbnailRelationships();
 		final List<Image> oldThumbnails             = new LinkedList();
 		Image thumbnail                             = null;
@@ -236,6 +320,15 @@ public class Image extends File {
 
 		}
 
+		// No thumbnail exists, or thumbnail was too old, so let the service
+		// create a new one and serve the original image in the meantime
+		if (thumbnailService != null && thumbnailService.isRunning()) {
+
+			thumbnailService.enqueue(originalImage, newChecksum, maxWidth, maxHeight, cropToFit);
+
+			return originalImage;
+		}
+
 		// No thumbnail exists, or thumbnail was too old, so let's create a new one
 		logger.log(Level.FINE, "Creating thumbnail for {0}", getName());
 
@@ -0,0 +1,361 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Writes byte ranges of a file to a servlet response without copying the
+ * content through heap buffers.
+ *
+ * When running in Jetty, the file is mapped into memory in chunks that are
+ * handed to the connector asynchronously, so the data goes from the page
+ * cache to the socket directly. In other containers, the content is copied
+ * with {@link FileChannel#transferTo}. The file channel is closed when the
+ * response is complete.
+ *
+ * @author Axel Morgner
+ */
+public class ByteRangeWriter implements Callback {
+
+	private static final Logger logger         = Logger.getLogger(ByteRangeWriter.class.getName());
+	private static final Charset ISO_8859_1    = Charset.forName("ISO-8859-1");
+	private static final int MAX_CHUNK_SIZE    = 16 * 1024 * 1024;
+	private static final int MAX_RANGES        = 16;
+
+	private final LinkedList<Object> segments  = new LinkedList<>();
+	private FileChannel channel                = null;
+	private AsyncContext async                 = null;
+	private HttpOutput out                     = null;
+	private long contentLength                 = 0L;
+	private long position                      = 0L;
+	private long remaining                     = 0L;
+
+	public ByteRangeWriter(final FileChannel channel) {
+		this.channel = channel;
+	}
+
+	public void addBytes(final String data) {
+
+		final byte[] bytes = data.getBytes(ISO_8859_1);
+
+		segments.add(ByteBuffer.wrap(bytes));
+		contentLength += bytes.length;
+	}
+
+	public void addRange(final Range range) {
+
+		segments.add(range);
+		contentLength += range.getLength();
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * Sends all segments asynchronously and completes the given async
+	 * context when finished.
+	 *
+	 * @param async
+	 * @param out
+	 */
+	public void start(final AsyncContext async, final HttpOutput out) {
+
+		this.async = async;
+		this.out   = out;
+
+		succeeded();
+	}
+
+	/**
+	 * Writes all segments to the given stream, blocking.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+
+		final WritableByteChannel target = Channels.newChannel(out);
+
+		try {
+
+			for (final Object segment : segments) {
+
+				if (segment instanceof ByteBuffer) {
+
+					target.write((ByteBuffer)segment);
+
+				} else {
+
+					final Range range = (Range)segment;
+					long offset       = range.getStart();
+					long count        = range.getLength();
+
+					while (count > 0) {
+
+						final long transferred = channel.transferTo(offset, count, target);
+						if (transferred <= 0) {
+							break;
+						}
+
+						offset += transferred;
+						count  -= transferred;
+					}
+				}
+			}
+
+			out.flush();
+
+		} finally {
+
+			channel.close();
+		}
+	}
+
+	// ----- interface Callback -----
+	@Override
+	public void succeeded() {
+
+		try {
+
+			final ByteBuffer next = nextBuffer();
+			if (next != null) {
+
+				out.sendContent(next, this);
+
+			} else {
+
+				close();
+			}
+
+		} catch (Throwable t) {
+
+			failed(t);
+		}
+	}
+
+	@Override
+	public void failed(final Throwable t) {
+
+		// most likely the client closed the connection
+		logger.log(Level.FINE, "Unable to send file content: {0}", t.getMessage());
+
+		close();
+	}
+
+	// ----- public static methods -----
+	/**
+	 * Parses the value of a Range header.
+	 *
+	 * Overlapping and adjacent ranges are merged.
+	 *
+	 * @param header
+	 * @param size the size of the file
+	 *
+	 * @return the list of ranges, an empty list if no range can be
+	 * satisfied, or null if the header is invalid and must be ignored
+	 */
+	public static List<Range> parseRanges(final String header, final long size) {
+
+		if (header == null || !header.startsWith("bytes=")) {
+			return null;
+		}
+
+		final String[] specs = header.substring(6).split(",");
+		final List<Range> ranges = new ArrayList<>();
+
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		for (final String part : specs) {
+
+			final String spec = part.trim();
+			final int dash    = spec.indexOf('-');
+
+			if (dash < 0) {
+				return null;
+			}
+
+			try {
+
+				final String first = spec.substring(0, dash).trim();
+				final String last  = spec.substring(dash + 1).trim();
+
+				if (first.isEmpty()) {
+
+					// suffix range: last n bytes
+					final long length = Long.parseLong(last);
+					if (length > 0 && size > 0) {
+
+						ranges.add(new Range(Math.max(0, size - length), size - 1));
+					}
+
+				} else {
+
+					final long start = Long.parseLong(first);
+					final long end   = last.isEmpty() ? size - 1 : Long.parseLong(last);
+
+					if (start > end) {
+						return null;
+					}
+
+					if (start < size) {
+
+						ranges.add(new Range(start, Math.min(end, size - 1)));
+					}
+				}
+
+			} catch (NumberFormatException nfex) {
+
+				return null;
+			}
+		}
+
+		return merge(ranges);
+	}
+
+	// ----- private methods -----
+	private ByteBuffer nextBuffer() throws IOException {
+
+		if (remaining == 0) {
+
+			final Object segment = segments.poll();
+			if (segment == null) {
+
+				return null;
+			}
+
+			if (segment instanceof ByteBuffer) {
+
+				return (ByteBuffer)segment;
+			}
+
+			final Range range = (Range)segment;
+
+			position  = range.getStart();
+			remaining = range.getLength();
+		}
+
+		final int length = (int)Math.min(remaining, MAX_CHUNK_SIZE);
+		final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+		position  += length;
+		remaining -= length;
+
+		return buffer;
+	}
+
+	private void close() {
+
+		try {
+			channel.close();
+
+		} catch (IOException ignore) {}
+
+		async.complete();
+	}
+
+	private static List<Range> merge(final List<Range> ranges) {
+
+		if (ranges.size() < 2) {
+			return ranges;
+		}
+
+		Collections.sort(ranges, new Comparator<Range>() {
+
+			@Override
+			public int compare(final Range o1, final Range o2) {
+				return Long.compare(o1.getStart(), o2.getStart());
+			}
+		});
+
+		final List<Range> merged = new ArrayList<>();
+		Range current            = ranges.get(0);
+
+		for (int i=1; i<ranges.size(); i++) {
+
+			final Range next = ranges.get(i);
+
+			if (next.getStart() <= current.getEnd() + 1) {
+
+				current = new Range(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+
+			} else {
+
+				merged.add(current);
+				current = next;
+			}
+		}
+
+		merged.add(current);
+
+		return merged;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A byte range with inclusive start and end position.
+	 */
+	public static class Range {
+
+		private long start = 0L;
+		private long end   = 0L;
+
+		public Range(final long start, final long end) {
+
+			this.start = start;
+			this.end   = end;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getEnd() {
+			return end;
+		}
+
+		public long getLength() {
+			return end - start + 1;
+		}
+
+		@Override
+		public String toString() {
+			return start + "-" + end;
+		}
+	}
+}
@@ -18,7 +18,8 @@
 package org.structr.web.servlet;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
@@ -31,6 +32,7 @@ import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -43,6 +45,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.eclipse.jetty.server.HttpOutput;
 import org.structr.common.AccessMode;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.PathHelper;
@@ -784,60 +787,178 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 		}
 
+		final java.io.File fileOnDisk = file.getFileOnDisk();
+		if (fileOnDisk == null || !fileOnDisk.isFile()) {
+
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		final long size   = fileOnDisk.length();
+		final String etag = getETag(file, size);
+
+		if (etag != null) {
+			response.setHeader("ETag", etag);
+		}
+
+		response.setHeader("Accept-Ranges", "bytes");
+
 		ServletOutputStream out = response.getOutputStream();
 
-		if (!EditMode.DATA.equals(edit) && notModifiedSince(request, response, file, false)) {
+		if (!EditMode.DATA.equals(edit) && notModified(request, response, file, etag)) {
 
 			out.flush();
 			out.close();
 
 		} else {
 
-			// 2b: stream file to response
-			InputStream in = file.getInputStream();
 			String contentType = file.getContentType();
 
-			if (contentType != null) {
+			if (contentType == null) {
+
+				// Default
+				contentType = "application/octet-stream";
+			}
+
+			// Range requests are only served if the If-Range validator matches
+			List<ByteRangeWriter.Range> ranges = null;
+			final String rangeHeader = request.getHeader("Range");
+
+			if (rangeHeader != null && ifRangeMatches(request, file, etag)) {
+
+				ranges = ByteRangeWriter.parseRanges(rangeHeader, size);
+				if (ranges != null && ranges.isEmpty()) {
+
+					response.setHeader("Content-Range", "bytes */" + size);
+					response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					response.setContentLength(0);
+
+					return;
+				}
+			}
+
+			// 2b: stream file to response
+			final ByteRangeWriter writer = new ByteRangeWriter(FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ));
+
+			if (ranges == null) {
+
+				if (size > 0) {
+					writer.addRange(new ByteRangeWriter.Range(0, size - 1));
+				}
+
+				response.setContentType(contentType);
+				response.setStatus(HttpServletResponse.SC_OK);
+
+			} else if (ranges.size() == 1) {
+
+				final ByteRangeWriter.Range range = ranges.get(0);
+
+				writer.addRange(range);
 
 				response.setContentType(contentType);
+				response.setHeader("Content-Range", "bytes " + range + "/" + size);
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
 
 			} else {
 
-				// Default
-				response.setContentType("application/octet-stream");
+				final String boundary = UUID.randomUUID().toString().replace("-", "");
+
+				for (final ByteRangeWriter.Range range : ranges) {
+
+					writer.addBytes("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: bytes " + range + "/" + size + "\r\n\r\n");
+					writer.addRange(range);
+				}
+
+				writer.addBytes("\r\n--" + boundary + "--\r\n");
+
+				response.setContentType("multipart/byteranges; boundary=" + boundary);
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
 			}
 
-			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentLengthLong(writer.getContentLength());
 
-			AsyncContext async = request.startAsync();
-			out.setWriteListener(new StructrWriteListener(in, async, out));
+			if (out instanceof HttpOutput) {
 
-//			try {
-//
-//				IOUtils.copy(in, out);
-//
-//			} catch (Throwable t) {
-//
-//			} finally {
-//
-//				if (out != null) {
-//
-//					try {
-//						// 3: output content
-//						out.flush();
-//						out.close();
-//
-//					} catch (Throwable t) {
-//					}
-//				}
-//
-//				if (in != null) {
-//					in.close();
-//				}
-//
-//				response.setStatus(HttpServletResponse.SC_OK);
-//			}
+				writer.start(request.startAsync(), (HttpOutput)out);
+
+			} else {
+
+				writer.writeTo(out);
+			}
+		}
+	}
+
+	/**
+	 * Checks the If-None-Match and If-Modified-Since headers of the given
+	 * request, If-None-Match takes precedence.
+	 */
+	private static boolean notModified(final HttpServletRequest request, final HttpServletResponse response, final AbstractNode node, final String etag) {
+
+		// sets caching headers, too
+		final boolean notModifiedSince = notModifiedSince(request, response, node, false);
+		final String ifNoneMatch       = request.getHeader("If-None-Match");
+
+		if (ifNoneMatch != null) {
+
+			if (etag != null && ("*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(etag))) {
+
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return true;
+			}
+
+			return false;
+		}
+
+		return notModifiedSince;
+	}
+
+	/**
+	 * Checks whether the If-Range header of the given request, if present,
+	 * matches the current ETag or modification date of the given file.
+	 */
+	private static boolean ifRangeMatches(final HttpServletRequest request, final org.structr.web.entity.File file, final String etag) {
+
+		final String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+
+			return true;
 		}
+
+		if (ifRange.startsWith("\"")) {
+
+			return ifRange.equals(etag);
+		}
+
+		final Date lastModified = file.getLastModifiedDate();
+		if (lastModified != null) {
+
+			try {
+
+				DateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+				httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+				return DateUtils.round(lastModified, Calendar.SECOND).equals(httpDateFormat.parse(ifRange));
+
+			} catch (ParseException ex) {
+				logger.log(Level.FINE, "Could not parse If-Range header", ex);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Strong ETag from the CRC32 checksum and the size of the given file.
+	 */
+	private static String getETag(final org.structr.web.entity.File file, final long size) {
+
+		final Long checksum = file.getChecksum();
+		if (checksum != null) {
+
+			return "\"" + Long.toHexString(checksum) + "-" + Long.toHexString(size) + "\"";
+		}
+
+		return null;
 	}
 
 	/**
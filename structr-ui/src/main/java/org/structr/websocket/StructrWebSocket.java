@@ -21,11 +21,16 @@ import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -57,6 +62,7 @@ public class StructrWebSocket implements WebSocketListener {
 
 	private static final Logger logger = Logger.getLogger(StructrWebSocket.class.getName());
 	private static final Map<String, Class> commandSet = new LinkedHashMap<>();
+	private static final int MAX_OUTBOUND_MESSAGES     = 1000;
 
 	//~--- fields ---------------------------------------------------------
 	private String callback = null;
@@ -70,6 +76,9 @@ public class StructrWebSocket implements WebSocketListener {
 	private Map<String, FileUploadHandler> uploads = null;
 	private Authenticator authenticator = null;
 	private String pagePath = null;
+	private final Queue<String> outboundQueue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger outboundQueueSize = new AtomicInteger();
+	private final AtomicBoolean sending = new AtomicBoolean(false);
 
 	//~--- constructors ---------------------------------------------------
 
@@ -239,17 +248,113 @@ public class StructrWebSocket implements WebSocketListener {
 
 			logger.log(Level.FINE, "############################################################ SENDING \n{0}", msg);
 
+			// replies to commands are never dropped
+			enqueue(msg);
+
+		} else {
+
+			logger.log(Level.WARNING, "NOT sending message to unauthenticated client.");
+		}
+	}
+
+	/**
+	 * Enqueues the given broadcast message for sending. Messages are sent
+	 * in order, one at a time, without blocking the calling thread. If the
+	 * client does not keep up and the outbound queue is full, the message
+	 * is dropped.
+	 *
+	 * @param message the serialized message
+	 */
+	public void sendAsync(final String message) {
+
+		if (outboundQueueSize.get() >= MAX_OUTBOUND_MESSAGES) {
+
+			logger.log(Level.WARNING, "Outbound queue of websocket client is full, dropping message.");
+			return;
+		}
+
+		enqueue(message);
+	}
+
+	private void enqueue(final String message) {
+
+		outboundQueueSize.incrementAndGet();
+		outboundQueue.add(message);
+
+		drainQueue();
+	}
+
+	/**
+	 * Sends the queued messages until the queue is empty or a write is
+	 * still in progress. A write that completes later continues draining
+	 * from its callback. Writes that complete immediately are handled in
+	 * the loop, so the stack does not grow with the number of messages.
+	 */
+	private void drainQueue() {
+
+		// only one message can be in flight at a time
+		while (!outboundQueue.isEmpty() && sending.compareAndSet(false, true)) {
+
+			final String message = outboundQueue.poll();
+			if (message == null) {
+
+				sending.set(false);
+				continue;
+			}
+
+			outboundQueueSize.decrementAndGet();
+
+			final Session currentSession = session;
+			if (currentSession == null) {
+
+				// connection closed, discard pending messages
+				outboundQueue.clear();
+				outboundQueueSize.set(0);
+				sending.set(false);
+
+				return;
+			}
+
+			// the second of (this loop, the write callback) to arrive here continues draining
+			final AtomicBoolean handOver = new AtomicBoolean(false);
+
 			try {
 
-				session.getRemote().sendString(msg);
+				currentSession.getRemote().sendString(message, new WriteCallback() {
+
+					@Override
+					public void writeFailed(final Throwable t) {
+
+						logger.log(Level.FINE, "Unable to send websocket message to remote client", t);
+						writeComplete();
+					}
+
+					@Override
+					public void writeSuccess() {
+						writeComplete();
+					}
+
+					private void writeComplete() {
+
+						sending.set(false);
+
+						if (!handOver.compareAndSet(false, true)) {
+							drainQueue();
+						}
+					}
+				});
+
+				if (handOver.compareAndSet(false, true)) {
+
+					// next message is sent from the callback
+					return;
+				}
 
 			} catch (Throwable t) {
+
 				logger.log(Level.WARNING, "Unable to send websocket message to remote client");
+				sending.set(false);
 			}
-
-		} else {
-
-			logger.log(Level.WARNING, "NOT sending message to unauthenticated client.");
 		}
 	}
 
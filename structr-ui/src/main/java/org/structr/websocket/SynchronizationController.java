@@ -19,7 +19,9 @@
 package org.structr.websocket;
 
 import com.google.gson.Gson;
-import java.io.IOException;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 
 import org.structr.common.SecurityContext;
 import org.structr.core.GraphObject;
@@ -27,15 +29,19 @@ import org.structr.core.StructrTransactionListener;
 import org.structr.core.entity.AbstractNode;
 import org.structr.websocket.message.WebSocketMessage;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.eclipse.jetty.util.URIUtil;
-import org.eclipse.jetty.websocket.api.Session;
 import org.neo4j.graphdb.RelationshipType;
 import org.structr.common.AccessMode;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
@@ -51,36 +57,140 @@ import org.structr.web.entity.dom.DOMNode;
  */
 public class SynchronizationController implements StructrTransactionListener {
 
-	private static final Logger logger          = Logger.getLogger(SynchronizationController.class.getName());
+	private static final Logger logger                   = Logger.getLogger(SynchronizationController.class.getName());
+	private static final long COALESCING_WINDOW          = 50;
 
-	private final Set<StructrWebSocket> clients = new ConcurrentHashSet<>();
-	private Gson gson                           = null;
+	private final Set<StructrWebSocket> clients          = new ConcurrentHashSet<>();
+	private final List<WebSocketMessage> pendingMessages = new ArrayList<>();
+	private final Map<String, WebSocketMessage> pendingUpdates = new HashMap<>();
+	private ScheduledExecutorService flushExecutor       = null;
+	private boolean flushScheduled                       = false;
+	private Gson gson                                    = null;
 
 	public SynchronizationController(final Gson gson) {
 
-		this.gson = gson;
+		this.gson          = gson;
+		this.flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
 
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+				final Thread thread = new Thread(runnable, "SynchronizationController");
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
 	}
 
 	public void registerClient(final StructrWebSocket client) {
 
-		synchronized (clients) {
+		clients.add(client);
+	}
 
-			clients.add(client);
-		}
+	public void unregisterClient(final StructrWebSocket client) {
 
+		clients.remove(client);
 	}
 
-	public void unregisterClient(final StructrWebSocket client) {
+	/**
+	 * Stops the flush thread after the pending messages have been sent,
+	 * messages that are enqueued afterwards are dropped.
+	 */
+	public void shutdown() {
+
+		flushExecutor.shutdown();
+	}
+
+	// ----- private methods -----
+	/**
+	 * Adds the given message to the list of messages that are broadcast at
+	 * the end of the current coalescing window. UPDATE messages for a node
+	 * that already has a pending UPDATE are merged into the pending one,
+	 * unless another message for the same node was enqueued in between.
+	 */
+	private void enqueue(final WebSocketMessage message) {
+
+		synchronized (pendingMessages) {
+
+			if (flushExecutor.isShutdown()) {
+				return;
+			}
+
+			final String id = message.getId();
+
+			if ("UPDATE".equals(message.getCommand()) && id != null) {
+
+				final WebSocketMessage pending = pendingUpdates.get(id);
+				if (pending != null) {
+
+					pending.setGraphObject(message.getGraphObject());
+					pending.setResult(message.getResult());
+					pending.getModifiedProperties().addAll(message.getModifiedProperties());
+					pending.getRemovedProperties().addAll(message.getRemovedProperties());
+					pending.getNodeData().putAll(message.getNodeData());
+					pending.setRelData(message.getRelData());
+
+					return;
+				}
+
+				pendingUpdates.put(id, message);
+
+			} else if (id != null) {
+
+				// keep updates in order with other messages for the same node
+				pendingUpdates.remove(id);
+			}
+
+			pendingMessages.add(message);
+
+			if (!flushScheduled) {
+
+				flushScheduled = true;
+
+				flushExecutor.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						flush();
+					}
+
+				}, COALESCING_WINDOW, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private void flush() {
+
+		final List<WebSocketMessage> messages;
+
+		synchronized (pendingMessages) {
 
-		synchronized (clients) {
+			messages = new ArrayList<>(pendingMessages);
 
-			clients.remove(client);
+			pendingMessages.clear();
+			pendingUpdates.clear();
+			flushScheduled = false;
 		}
 
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final WebSocketMessage message : messages) {
+
+				try {
+					broadcast(message);
+
+				} catch (Throwable t) {
+
+					logger.log(Level.WARNING, "Unable to broadcast message", t);
+				}
+			}
+
+		} catch (FrameworkException ex) {
+			logger.log(Level.WARNING, "Unable to broadcast messages", ex);
+		}
 	}
 
-	// ----- private methods -----
 	private void broadcast(final WebSocketMessage webSocketData) {
 
 		//logger.log(Level.FINE, "Broadcasting message to {0} clients..", clients.size());
@@ -88,76 +198,107 @@ public class SynchronizationController implements StructrTransactionListener {
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
 
-		String message;
-		String pagePath = (String) webSocketData.getNodeData().get("pagePath");
+		final Map<String, List<? extends GraphObject>> filteredResults = new HashMap<>();
+		final Map<String, JsonObject> messageTrees                     = new HashMap<>();
+		final List<? extends GraphObject> result                       = webSocketData.getResult();
+		final String pagePath                                          = URIUtil.encodePath((String) webSocketData.getNodeData().get("pagePath"));
+		final String command                                           = webSocketData.getCommand();
+		final boolean filterResult                                     = (result != null) && (result.size() > 0)
+			&& ("UPDATE".equals(command) || "ADD".equals(command) || "CREATE".equals(command));
 
-		synchronized (clients) {
+		for (StructrWebSocket socket : clients) {
 
-			// create message
-			for (StructrWebSocket socket : clients) {
+			String clientPagePath = socket.getPagePath();
+			if (clientPagePath != null && !clientPagePath.equals(pagePath)) {
+				continue;
+			}
 
-				String clientPagePath = socket.getPagePath();
-				if (clientPagePath != null && !clientPagePath.equals(URIUtil.encodePath(pagePath))) {
-					continue;
-				}
+			if (socket.getSession() == null) { //&& socket.isAuthenticated()) {
+				continue;
+			}
+
+			final String callback = socket.getCallback();
+			String viewKey        = "";
 
-				Session session = socket.getSession();
+			if (filterResult) {
 
-				webSocketData.setCallback(socket.getCallback());
+				SecurityContext securityContext = socket.getSecurityContext();
 
-				if ((session != null)) { //&& socket.isAuthenticated()) {
+				// For non-authenticated clients, construct a security context without user
+				if (securityContext == null) {
+
+					try {
 
-					List<? extends GraphObject> result = webSocketData.getResult();
+						securityContext = SecurityContext.getInstance(null, AccessMode.Frontend);
 
-					if ((result != null) && (result.size() > 0)
-						&& (webSocketData.getCommand().equals("UPDATE") || webSocketData.getCommand().equals("ADD") || webSocketData.getCommand().equals("CREATE"))) {
+					} catch (FrameworkException ex) {
 
-						WebSocketMessage clientData     = webSocketData.copy();
-						SecurityContext securityContext = socket.getSecurityContext();
+						continue;
+					}
+				}
 
-						// For non-authenticated clients, construct a security context without user
-						if (securityContext == null) {
+				viewKey = getViewKey(securityContext);
 
-							try {
+				// filter the result only once per security view
+				if (!filteredResults.containsKey(viewKey)) {
+					filteredResults.put(viewKey, filter(securityContext, result));
+				}
+			}
 
-								securityContext = SecurityContext.getInstance(null, AccessMode.Frontend);
+			// convert the message to a JSON tree only once per security
+			// view, the callback of each client is added to a copy of it
+			JsonObject tree = messageTrees.get(viewKey);
 
-							} catch (FrameworkException ex) {
+			if (tree == null) {
 
-								continue;
-							}
-						}
+				final WebSocketMessage clientData = webSocketData.copy();
 
-						clientData.setResult(filter(securityContext, result));
+				clientData.setCallback(null);
 
-						message = gson.toJson(clientData, WebSocketMessage.class);
+				if (filterResult) {
+					clientData.setResult(filteredResults.get(viewKey));
+				}
 
-					} else {
+				tree = gson.toJsonTree(clientData, WebSocketMessage.class).getAsJsonObject();
+				messageTrees.put(viewKey, tree);
+			}
 
-						message = gson.toJson(webSocketData, WebSocketMessage.class);
-					}
+			final String message = gson.toJson(withCallback(tree, callback));
 
-					// logger.log(Level.INFO, "############################################################ SENDING \n{0}", message);
+			// logger.log(Level.INFO, "############################################################ SENDING \n{0}", message);
 
-					try {
+			// does not block, slow clients do not delay other clients
+			socket.sendAsync(message);
+		}
+	}
 
-						session.getRemote().sendString(message);
+	/**
+	 * Returns a shallow copy of the given message object with the
+	 * given callback, or the message object itself if there is no
+	 * callback.
+	 */
+	private JsonObject withCallback(final JsonObject tree, final String callback) {
 
-					} catch (org.eclipse.jetty.io.EofException eof) {
+		if (callback == null) {
+			return tree;
+		}
 
-						logger.log(Level.FINE, "EofException irgnored, may occour on SSL connections.", eof);
+		final JsonObject copy = new JsonObject();
 
-					} catch (IOException e) {
+		for (final Map.Entry<String, JsonElement> entry : tree.entrySet()) {
+			copy.add(entry.getKey(), entry.getValue());
+		}
 
-						logger.log(Level.WARNING, "Error sending message to client.", e);
+		copy.add("callback", new JsonPrimitive(callback));
 
-					}
+		return copy;
+	}
 
-				}
+	private String getViewKey(final SecurityContext securityContext) {
 
-			}
-		}
+		final Principal user = securityContext.getUser(false);
 
+		return securityContext.getAccessMode().name().concat(":").concat(user != null ? user.getUuid() : "anonymous");
 	}
 
 	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
@@ -186,14 +327,14 @@ public class SynchronizationController implements StructrTransactionListener {
 				try {
 					final WebSocketMessage message = getMessageForEvent(securityContext, event);
 					if (message != null) {
-						broadcast(message);
+						enqueue(message);
 					}
 
 				} catch (FrameworkException ignore) {}
 			}
 
 		} catch (FrameworkException ex) {
-			ex.printStackTrace();
+			logger.log(Level.WARNING, "Unable to create messages for transaction", ex);
 		}
 	}
 
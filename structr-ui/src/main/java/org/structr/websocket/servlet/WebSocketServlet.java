@@ -44,7 +44,8 @@ public class WebSocketServlet extends org.eclipse.jetty.websocket.servlet.WebSoc
 	
 	private static final int MAX_TEXT_MESSAGE_SIZE = 1024 * 1024;
 	
-	private final StructrHttpServiceConfig config = new StructrHttpServiceConfig();
+	private final StructrHttpServiceConfig config     = new StructrHttpServiceConfig();
+	private SynchronizationController syncController = null;
 
 	@Override
 	public StructrHttpServiceConfig getConfig() {
@@ -60,7 +61,7 @@ public class WebSocketServlet extends org.eclipse.jetty.websocket.servlet.WebSoc
 			.registerTypeAdapter(WebSocketMessage.class, new WebSocketDataGSONAdapter(config.getDefaultIdProperty(), config.getOutputNestingDepth()))
 			.create();
 		
-		final SynchronizationController syncController = new SynchronizationController(gson);
+		syncController = new SynchronizationController(gson);
 		
 		// register (Structr) transaction listener
 		TransactionCommand.registerTransactionListener(syncController);
@@ -76,4 +77,16 @@ public class WebSocketServlet extends org.eclipse.jetty.websocket.servlet.WebSoc
 		factory.getPolicy().setMaxTextMessageSize(MAX_TEXT_MESSAGE_SIZE);
 
 	}
+
+	@Override
+	public void destroy() {
+
+		if (syncController != null) {
+
+			TransactionCommand.removeTransactionListener(syncController);
+			syncController.shutdown();
+		}
+
+		super.destroy();
+	}
 }
@@ -21,6 +21,7 @@ package org.structr.web.common;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.structr.core.Services;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.Tx;
 import org.structr.web.common.ImageHelper.Thumbnail;
@@ -77,4 +78,65 @@ public class ThumbnailTest extends StructrTest {
 			fail("Unexpected exception");
 		}
 	}
+
+	public void test02CreateThumbnailInBackground() {
+
+		final ThumbnailService thumbnailService = new ThumbnailService();
+		String uuid                             = null;
+
+		thumbnailService.initialize(Services.getInstance().getCurrentConfig());
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				TestImage img = (TestImage) ImageHelper.createFileBase64(securityContext, base64Image, TestImage.class);
+
+				img.setProperty(AbstractNode.name, "test-image.png");
+
+				uuid = img.getUuid();
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final TestImage img = app.get(TestImage.class, uuid);
+
+				// the original image is served until the thumbnail is created
+				assertEquals(img, img.getScaledImage(200, 100, false, thumbnailService));
+
+				tx.success();
+			}
+
+			// wait for the background worker
+			for (int i=0; i<100 && thumbnailService.getQueueSize() > 0; i++) {
+				Thread.sleep(100);
+			}
+
+			assertEquals(0, thumbnailService.getQueueSize());
+
+			try (final Tx tx = app.tx()) {
+
+				final TestImage img = app.get(TestImage.class, uuid);
+				final Image tn      = img.getScaledImage(200, 100, false, thumbnailService);
+
+				assertNotNull(tn);
+				assertFalse(img.equals(tn));
+				assertEquals(new Integer(200), tn.getWidth());
+				assertEquals(new Integer(48), tn.getHeight());
+
+				tx.success();
+			}
+
+		} catch (Exception ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		} finally {
+
+			thumbnailService.shutdown();
+		}
+	}
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.test;
+
+import com.jayway.restassured.RestAssured;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import org.structr.core.GraphObject;
+import org.structr.core.graph.Tx;
+import org.structr.web.common.FileHelper;
+import org.structr.web.common.StructrUiTest;
+import org.structr.web.entity.File;
+
+/**
+ * Test conditional and byte range requests for files in HtmlServlet.
+ *
+ * @author Axel Morgner
+ */
+public class FileRangeTest extends StructrUiTest {
+
+	private static final Logger logger = Logger.getLogger(FileRangeTest.class.getName());
+
+	public void test01RangeRequests() {
+
+		String etag = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = FileHelper.createFile(securityContext, "0123456789".getBytes(), "text/plain", File.class, "range.txt");
+			file.setProperty(GraphObject.visibleToPublicUsers, true);
+
+			etag = "\"" + Long.toHexString(file.getChecksum()) + "-" + Long.toHexString(10) + "\"";
+
+			tx.success();
+
+		} catch (Exception ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+
+		// full content with validators
+		RestAssured.given().expect().statusCode(200).header("ETag", etag).header("Accept-Ranges", "bytes").body(equalTo("0123456789")).when().get(baseUri + "range.txt");
+
+		// matching ETag
+		RestAssured.given().header("If-None-Match", etag).expect().statusCode(304).when().get(baseUri + "range.txt");
+
+		// single range
+		RestAssured.given().header("Range", "bytes=2-4").expect().statusCode(206).header("Content-Range", "bytes 2-4/10").body(equalTo("234")).when().get(baseUri + "range.txt");
+
+		// suffix range
+		RestAssured.given().header("Range", "bytes=-3").expect().statusCode(206).header("Content-Range", "bytes 7-9/10").body(equalTo("789")).when().get(baseUri + "range.txt");
+
+		// multiple ranges
+		RestAssured.given().header("Range", "bytes=0-1,5-6").expect().statusCode(206).contentType(containsString("multipart/byteranges")).body(containsString("Content-Range: bytes 5-6/10")).when().get(baseUri + "range.txt");
+
+		// unsatisfiable range
+		RestAssured.given().header("Range", "bytes=20-30").expect().statusCode(416).header("Content-Range", "bytes */10").when().get(baseUri + "range.txt");
+
+		// If-Range with outdated ETag returns the full content
+		RestAssured.given().header("Range", "bytes=2-4").header("If-Range", "\"0-0\"").expect().statusCode(200).body(equalTo("0123456789")).when().get(baseUri + "range.txt");
+	}
+}